@@ -0,0 +1,106 @@
+package org.flechaamarilla.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flechaamarilla.config.JacksonConfig;
+import org.flechaamarilla.mapping.MappingPlan;
+import org.flechaamarilla.mapping.TreeTicketTransformer;
+import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.model.ConceptTable;
+import org.flechaamarilla.model.FieldMapping;
+import org.flechaamarilla.utils.SyntheticFixtures;
+import org.flechaamarilla.utils.SyntheticTickets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of transform expressions over plain renames. {@code transforms} pads the product code,
+ * translates the unit and recomputes the amount with compiled expressions; {@code handWritten}
+ * applies the same rules in plain Java after the renames, as they would be if hardcoded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldTransformBenchmark {
+
+    private static final Map<String, String> UNIT_CODES =
+            Map.of("Servicio", "E48", "Pieza", "H87", "Hora", "HUR", "Kilogramo", "KGM");
+
+    @Param({"10", "1000"})
+    int lines;
+
+    private JsonNode parsedTicket;
+    private MappingPlan renamePlan;
+    private MappingPlan transformPlan;
+    private TreeTicketTransformer treeTransformer;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = new JacksonConfig(true).objectMapper();
+        parsedTicket = objectMapper.readTree(SyntheticTickets.ticket(SyntheticTickets.Style.ENGLISH, lines, 42));
+        renamePlan = SyntheticFixtures.plan(SyntheticTickets.Style.ENGLISH, 1);
+
+        List<FieldMapping> mappings = SyntheticFixtures.mappings(SyntheticTickets.Style.ENGLISH);
+        for (FieldMapping mapping : mappings) {
+            switch (mapping.getStandardFieldName()) {
+                case "claveProdServ" -> mapping.setTransform("lpad(trim(value), 10, '0')");
+                case "unidad" -> mapping.setTransform(
+                        "map(value, 'Servicio', 'E48', 'Pieza', 'H87', 'Hora', 'HUR', 'Kilogramo', 'KGM')");
+                case "importe" -> mapping.setTransform("round(cantidad * valorUnitario, 2)");
+                default -> {
+                }
+            }
+        }
+        BusinessUnit businessUnit = SyntheticFixtures.businessUnit(SyntheticTickets.Style.ENGLISH, "Transforms", "T");
+        businessUnit.id = 2L;
+        transformPlan = MappingPlan.compile(businessUnit, mappings);
+        treeTransformer = new TreeTicketTransformer(objectMapper);
+    }
+
+    @Benchmark
+    public ConceptTable renames() {
+        return treeTransformer.processTicketConcepts(parsedTicket, renamePlan);
+    }
+
+    @Benchmark
+    public ConceptTable transforms() {
+        return treeTransformer.processTicketConcepts(parsedTicket, transformPlan);
+    }
+
+    @Benchmark
+    public ConceptTable handWritten() {
+        ConceptTable concepts = treeTransformer.processTicketConcepts(parsedTicket, renamePlan);
+        for (int row = 0; row < concepts.size(); row++) {
+            String clave = concepts.getClaveProdServ(row).trim();
+            StringBuilder padded = new StringBuilder(10);
+            for (int i = clave.length(); i < 10; i++) {
+                padded.append('0');
+            }
+            concepts.setClaveProdServ(row, padded.append(clave).toString());
+
+            String unidad = concepts.getUnidad(row);
+            concepts.setUnidad(row, UNIT_CODES.getOrDefault(unidad, unidad));
+
+            concepts.setImporteCents(row, ConceptTable.lineAmountCents(
+                    concepts.getCantidadMicros(row), concepts.getValorUnitarioMicros(row)));
+        }
+        return concepts;
+    }
+}
@@ -0,0 +1,110 @@
+package org.flechaamarilla.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.flechaamarilla.config.JacksonConfig;
+import org.flechaamarilla.mapping.TreeTicketTransformer;
+import org.flechaamarilla.model.InvoiceRequest;
+import org.flechaamarilla.model.StandardInvoice;
+import org.flechaamarilla.utils.SyntheticFixtures;
+import org.flechaamarilla.utils.SyntheticTickets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wire (de)serialization done by the consumer: {@code StandardInvoice} with the
+ * application's pretty-printing mapper, as compact JSON and in the binary wire formats,
+ * and {@code InvoiceRequest} deserialization
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvoiceSerializationBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int lines;
+
+    private ObjectMapper indentingMapper;
+    private ObjectMapper compactMapper;
+    private ObjectMapper cborMapper;
+    private ObjectMapper smileMapper;
+    private StandardInvoice invoice;
+    private String requestJson;
+
+    @Setup
+    public void setup() throws IOException {
+        indentingMapper = new JacksonConfig(true).objectMapper();
+        compactMapper = indentingMapper.copy().disable(SerializationFeature.INDENT_OUTPUT);
+        cborMapper = new ObjectMapper(new CBORFactory());
+        smileMapper = new ObjectMapper(new SmileFactory());
+
+        invoice = new StandardInvoice();
+        invoice.setRfcEmisor("XAXX010101000");
+        invoice.setNombreEmisor("Empresa Sintética S.A. de C.V.");
+        invoice.setRfcReceptor("XEXX010101000");
+        invoice.setNombreReceptor("Cliente de Prueba");
+        invoice.setUsoCfdi("G03");
+        invoice.setFormaPago("01");
+        invoice.setMetodoPago("PUE");
+        invoice.setMoneda("MXN");
+        invoice.setSerie("S");
+        invoice.setFolio("1");
+        new TreeTicketTransformer(compactMapper).transform(
+                SyntheticTickets.ticket(SyntheticTickets.Style.STANDARD, lines, 42),
+                SyntheticFixtures.plan(SyntheticTickets.Style.STANDARD, 1), invoice);
+
+        InvoiceRequest request = new InvoiceRequest();
+        request.setRfc("XEXX010101000");
+        request.setNombre("Cliente de Prueba");
+        request.setCorreo("cliente@example.com");
+        request.setCp("20000");
+        request.setFormaPago("01");
+        request.setTokenTicket("ticket-123");
+        request.setRegimenFiscal("616");
+        request.setUsoCfdi("G03");
+        request.setUnidadNegocio(1L);
+        requestJson = compactMapper.writeValueAsString(request);
+    }
+
+    @Benchmark
+    public String serializeIndented() throws IOException {
+        return indentingMapper.writeValueAsString(invoice);
+    }
+
+    @Benchmark
+    public String serializeCompact() throws IOException {
+        return compactMapper.writeValueAsString(invoice);
+    }
+
+    @Benchmark
+    public byte[] serializeCbor() throws IOException {
+        return cborMapper.writeValueAsBytes(invoice);
+    }
+
+    @Benchmark
+    public byte[] serializeSmile() throws IOException {
+        return smileMapper.writeValueAsBytes(invoice);
+    }
+
+    @Benchmark
+    public InvoiceRequest deserializeRequest() throws IOException {
+        return indentingMapper.readValue(requestJson, InvoiceRequest.class);
+    }
+}
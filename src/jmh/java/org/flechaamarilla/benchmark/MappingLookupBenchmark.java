@@ -0,0 +1,110 @@
+package org.flechaamarilla.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flechaamarilla.config.JacksonConfig;
+import org.flechaamarilla.mapping.MappingPlan;
+import org.flechaamarilla.mapping.TreeTicketTransformer;
+import org.flechaamarilla.model.ConceptTable;
+import org.flechaamarilla.model.FieldMapping;
+import org.flechaamarilla.utils.SyntheticFixtures;
+import org.flechaamarilla.utils.SyntheticTickets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Per-request mapping lookup and application. {@code perRequestMappings} reproduces the
+ * original path (mapping map rebuilt per request, string switch per field) minus the
+ * database round trips, as a reference for the cached, compiled plan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingLookupBenchmark {
+
+    private static final long BUSINESS_UNIT_ID = 2L;
+
+    @Param({"1", "10", "100"})
+    int lines;
+
+    private JsonNode parsedTicket;
+    private List<FieldMapping> fieldMappings;
+    private Map<Long, MappingPlan> plans;
+    private TreeTicketTransformer treeTransformer;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = new JacksonConfig(true).objectMapper();
+        parsedTicket = objectMapper.readTree(SyntheticTickets.ticket(SyntheticTickets.Style.ENGLISH, lines, 42));
+        fieldMappings = SyntheticFixtures.mappings(SyntheticTickets.Style.ENGLISH);
+        plans = new ConcurrentHashMap<>();
+        plans.put(BUSINESS_UNIT_ID, SyntheticFixtures.plan(SyntheticTickets.Style.ENGLISH, BUSINESS_UNIT_ID));
+        treeTransformer = new TreeTicketTransformer(objectMapper);
+    }
+
+    @Benchmark
+    public ConceptTable compiledPlan() {
+        return treeTransformer.processTicketConcepts(parsedTicket, plans.get(BUSINESS_UNIT_ID));
+    }
+
+    @Benchmark
+    public ConceptTable perRequestMappings() {
+        Map<String, String> mappings = fieldMappings.stream()
+                .collect(Collectors.toMap(FieldMapping::getSourceFieldName, FieldMapping::getStandardFieldName));
+
+        ConceptTable concepts = new ConceptTable();
+        for (JsonNode item : parsedTicket.path(SyntheticTickets.Style.ENGLISH.getItemsField())) {
+            int row = concepts.addRow();
+            for (Map.Entry<String, String> entry : mappings.entrySet()) {
+                if (item.has(entry.getKey())) {
+                    setConceptField(concepts, row, entry.getValue(), item.get(entry.getKey()));
+                }
+            }
+        }
+        return concepts;
+    }
+
+    private static void setConceptField(ConceptTable concepts, int row, String standardField, JsonNode value) {
+        switch (standardField) {
+            case "claveProdServ":
+                concepts.setClaveProdServ(row, value.asText());
+                break;
+            case "descripcion":
+                concepts.setDescripcion(row, value.asText());
+                break;
+            case "cantidad":
+                concepts.setCantidadMicros(row, ConceptTable.toMicros(value.asDouble()));
+                break;
+            case "unidad":
+                concepts.setUnidad(row, value.asText());
+                break;
+            case "valorUnitario":
+                concepts.setValorUnitarioMicros(row, ConceptTable.toMicros(value.asDouble()));
+                break;
+            case "importe":
+                concepts.setImporteCents(row, ConceptTable.toCents(value.asDouble()));
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.flechaamarilla.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.flechaamarilla.config.JacksonConfig;
+import org.flechaamarilla.mapping.MappingPlan;
+import org.flechaamarilla.mapping.MappingScope;
+import org.flechaamarilla.mapping.StreamingTicketTransformer;
+import org.flechaamarilla.mapping.TreeTicketTransformer;
+import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.model.FieldMapping;
+import org.flechaamarilla.model.StandardInvoice;
+import org.flechaamarilla.utils.SyntheticFixtures;
+import org.flechaamarilla.utils.SyntheticTickets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping tickets whose items nest their values ({@code product.code}, {@code price.amount}),
+ * with a header mapping, as the unit's mapping catalog grows with paths its tickets lack.
+ * The cost per ticket should stay flat in {@code catalog}: each item is walked once along
+ * the plan's path trie.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NestedMappingBenchmark {
+
+    @Param({"100"})
+    int lines;
+
+    @Param({"0", "100", "1000"})
+    int catalog;
+
+    private byte[] ticket;
+    private JsonNode parsedTicket;
+    private MappingPlan plan;
+    private TreeTicketTransformer treeTransformer;
+    private StreamingTicketTransformer streamingTransformer;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = new JacksonConfig(true).objectMapper();
+        ticket = objectMapper.writeValueAsBytes(nestedTicket(objectMapper, lines));
+        parsedTicket = objectMapper.readTree(ticket);
+
+        List<FieldMapping> mappings = new ArrayList<>();
+        mappings.add(mapping("product.code", "claveProdServ", null));
+        mappings.add(mapping("product.name", "descripcion", null));
+        mappings.add(mapping("qty", "cantidad", null));
+        mappings.add(mapping("unit", "unidad", null));
+        mappings.add(mapping("/price/amount", "valorUnitario", null));
+        mappings.add(mapping("price.total", "importe", null));
+        mappings.add(mapping("store.branch", "sucursal", MappingScope.HEADER));
+        for (int i = 0; i < catalog; i++) {
+            // Other units' field names, absent from these tickets
+            mappings.add(mapping(i % 2 == 0 ? "extra" + i : "details.extra" + i, "descripcion", null));
+        }
+
+        BusinessUnit businessUnit = SyntheticFixtures.businessUnit(SyntheticTickets.Style.STANDARD, "Nested", "N");
+        businessUnit.id = 1L;
+        businessUnit.setItemsPath("/data/lines");
+        plan = MappingPlan.compile(businessUnit, mappings);
+        treeTransformer = new TreeTicketTransformer(objectMapper);
+        streamingTransformer = new StreamingTicketTransformer(objectMapper.getFactory());
+    }
+
+    private static FieldMapping mapping(String source, String standard, MappingScope scope) {
+        FieldMapping mapping = new FieldMapping();
+        mapping.setSourceFieldName(source);
+        mapping.setStandardFieldName(standard);
+        mapping.setScope(scope);
+        return mapping;
+    }
+
+    private static ObjectNode nestedTicket(ObjectMapper objectMapper, int lines) {
+        SplittableRandom random = new SplittableRandom(42);
+        ObjectNode ticket = objectMapper.createObjectNode();
+        ticket.putObject("store").put("branch", "Sucursal " + random.nextInt(100));
+        ArrayNode items = ticket.putObject("data").putArray("lines");
+        for (int i = 0; i < lines; i++) {
+            int quantity = 1 + random.nextInt(5);
+            double price = (100 + random.nextInt(500_000)) / 100.0;
+            ObjectNode item = items.addObject();
+            item.putObject("product")
+                    .put("code", Integer.toString(78111800 + random.nextInt(100)))
+                    .put("name", "Producto " + random.nextInt(1000));
+            item.put("qty", quantity);
+            item.put("unit", "Pieza");
+            item.putObject("price")
+                    .put("amount", price)
+                    .put("total", Math.round(quantity * price * 100) / 100.0);
+        }
+        return ticket;
+    }
+
+    @Benchmark
+    public StandardInvoice tree() {
+        StandardInvoice invoice = new StandardInvoice();
+        treeTransformer.map(parsedTicket, plan, invoice);
+        return invoice;
+    }
+
+    @Benchmark
+    public StandardInvoice streaming() throws IOException {
+        StandardInvoice invoice = new StandardInvoice();
+        streamingTransformer.transform(ticket, plan, invoice);
+        return invoice;
+    }
+}
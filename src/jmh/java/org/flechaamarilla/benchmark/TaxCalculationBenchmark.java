@@ -0,0 +1,72 @@
+package org.flechaamarilla.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flechaamarilla.config.JacksonConfig;
+import org.flechaamarilla.mapping.MappingPlan;
+import org.flechaamarilla.mapping.TreeTicketTransformer;
+import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.model.ConceptTable;
+import org.flechaamarilla.tax.InvoiceTotals;
+import org.flechaamarilla.tax.TaxCalculator;
+import org.flechaamarilla.utils.SyntheticFixtures;
+import org.flechaamarilla.utils.SyntheticTickets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tax and totals stage on already mapped concepts, with IVA only and with IEPS plus IVA;
+ * run with {@code -prof gc} to confirm it allocates nothing but the result per invoice
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaxCalculationBenchmark {
+
+    @Param({"10", "1000", "5000"})
+    int lines;
+
+    private ConceptTable concepts;
+    private MappingPlan ivaPlan;
+    private MappingPlan iepsPlan;
+    private TaxCalculator calculator;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = new JacksonConfig(true).objectMapper();
+        String ticket = SyntheticTickets.ticket(SyntheticTickets.Style.STANDARD, lines, 42);
+        ivaPlan = SyntheticFixtures.plan(SyntheticTickets.Style.STANDARD, 1);
+        concepts = new TreeTicketTransformer(objectMapper).processTicketConcepts(objectMapper.readTree(ticket), ivaPlan);
+
+        BusinessUnit iepsUnit = SyntheticFixtures.businessUnit(SyntheticTickets.Style.STANDARD, "IEPS", "E");
+        iepsUnit.id = 2L;
+        iepsUnit.setIepsRate(new BigDecimal("0.08"));
+        iepsPlan = MappingPlan.compile(iepsUnit, SyntheticFixtures.mappings(SyntheticTickets.Style.STANDARD));
+        calculator = new TaxCalculator(new BigDecimal("0.16"));
+    }
+
+    @Benchmark
+    public InvoiceTotals iva() {
+        return calculator.calculate(concepts, ivaPlan);
+    }
+
+    @Benchmark
+    public InvoiceTotals iepsAndIva() {
+        return calculator.calculate(concepts, iepsPlan);
+    }
+}
@@ -0,0 +1,80 @@
+package org.flechaamarilla.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flechaamarilla.config.JacksonConfig;
+import org.flechaamarilla.mapping.MappingPlan;
+import org.flechaamarilla.mapping.StreamingTicketTransformer;
+import org.flechaamarilla.mapping.TreeTicketTransformer;
+import org.flechaamarilla.model.ConceptTable;
+import org.flechaamarilla.model.StandardInvoice;
+import org.flechaamarilla.utils.SyntheticFixtures;
+import org.flechaamarilla.utils.SyntheticTickets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ticket-to-concept transformation: full tree and streaming paths from the raw ticket,
+ * and the mapping step alone on an already parsed ticket
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicketTransformBenchmark {
+
+    @Param({"STANDARD", "ENGLISH", "SPANISH"})
+    SyntheticTickets.Style style;
+
+    @Param({"1", "10", "100", "1000"})
+    int lines;
+
+    private String ticket;
+    private JsonNode parsedTicket;
+    private MappingPlan plan;
+    private TreeTicketTransformer treeTransformer;
+    private StreamingTicketTransformer streamingTransformer;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = new JacksonConfig(true).objectMapper();
+        ticket = SyntheticTickets.ticket(style, lines, 42);
+        parsedTicket = objectMapper.readTree(ticket);
+        plan = SyntheticFixtures.plan(style, 1);
+        treeTransformer = new TreeTicketTransformer(objectMapper);
+        streamingTransformer = new StreamingTicketTransformer(objectMapper.getFactory());
+    }
+
+    @Benchmark
+    public StandardInvoice treeTransform() throws IOException {
+        StandardInvoice invoice = new StandardInvoice();
+        treeTransformer.transform(ticket, plan, invoice);
+        return invoice;
+    }
+
+    @Benchmark
+    public StandardInvoice streamingTransform() throws IOException {
+        StandardInvoice invoice = new StandardInvoice();
+        streamingTransformer.transform(ticket, plan, invoice);
+        return invoice;
+    }
+
+    @Benchmark
+    public ConceptTable processTicketConcepts() {
+        return treeTransformer.processTicketConcepts(parsedTicket, plan);
+    }
+}
@@ -5,7 +5,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 /**
  * Configuration for Jackson JSON processing
@@ -13,6 +15,22 @@ import jakarta.inject.Singleton;
 @ApplicationScoped
 public class JacksonConfig {
 
+    @Inject
+    @ConfigProperty(name = "invoice.json.pretty-print", defaultValue = "true")
+    boolean prettyPrint;
+
+    public JacksonConfig() {
+    }
+
+    /**
+     * Creates the configuration outside the application, e.g. in benchmarks
+     *
+     * @param prettyPrint Whether the produced mapper indents its output
+     */
+    public JacksonConfig(boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
     /**
      * Configure ObjectMapper with custom settings
      *
@@ -26,8 +44,11 @@ public class JacksonConfig {
         // Prevent default datetime serialization as timestamps
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
 
-        // Set up indentation for pretty printing
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        // Set up indentation for pretty printing on the REST endpoints;
+        // broker channels always serialize compactly (see MessagingCodec)
+        if (prettyPrint) {
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        }
 
         // Configure higher nesting level limit (if needed)
         // Default is 1000, we can increase it but it's better to fix the circular reference
@@ -0,0 +1,31 @@
+package org.flechaamarilla.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.flechaamarilla.model.StandardInvoice;
+
+/**
+ * One line of a batch processing response: the invoice of a request, or why there is none
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchInvoiceResultDTO {
+
+    // Position of the request in the submitted batch, starting at 0
+    private int index;
+    private String tokenTicket;
+    private StandardInvoice invoice;
+    private String error;
+
+    public static BatchInvoiceResultDTO success(int index, String tokenTicket, StandardInvoice invoice) {
+        return new BatchInvoiceResultDTO(index, tokenTicket, invoice, null);
+    }
+
+    public static BatchInvoiceResultDTO failure(int index, String tokenTicket, String error) {
+        return new BatchInvoiceResultDTO(index, tokenTicket, null, error);
+    }
+}
@@ -1,7 +1,10 @@
 package org.flechaamarilla.dto;
 
 import lombok.Data;
+import org.flechaamarilla.mapping.MappingScope;
+import org.flechaamarilla.mapping.TicketParsingMode;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,6 +21,12 @@ public class BusinessUnitDTO {
     private String emitterName;
     private String defaultCurrency;
     private String series;
+    private TicketParsingMode ticketParsingMode;
+    private String itemsPath;
+    private String ticketIdPath;
+    private String ticketDatePath;
+    private BigDecimal ivaRate;
+    private BigDecimal iepsRate;
 
     // Field mappings to be created with the business unit
     private List<FieldMappingDTO> fieldMappings = new ArrayList<>();
@@ -29,5 +38,7 @@ public class BusinessUnitDTO {
     public static class FieldMappingDTO {
         private String sourceFieldName;
         private String standardFieldName;
+        private String transform;
+        private MappingScope scope;
     }
 }
\ No newline at end of file
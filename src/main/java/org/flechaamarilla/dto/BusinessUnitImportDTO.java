@@ -0,0 +1,41 @@
+package org.flechaamarilla.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Progress or result of a bulk business unit import
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BusinessUnitImportDTO {
+
+    /**
+     * RUNNING, COMPLETED, or FAILED when the input could not be read or a chunk could not be
+     * committed; the chunks committed before the failure stay imported
+     */
+    private String status;
+    private String format;
+    private Instant startedAt;
+    private long elapsedMillis;
+    private int unitsRead;
+    private int unitsImported;
+
+    /**
+     * Units whose name already exists, in the database or earlier in the input
+     */
+    private int unitsSkipped;
+    private int unitsRejected;
+    private int mappingsImported;
+    private int chunksCommitted;
+
+    /**
+     * The first errors, one per rejected unit or failed chunk
+     */
+    private List<String> errors;
+}
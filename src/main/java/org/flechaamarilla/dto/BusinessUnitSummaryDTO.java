@@ -0,0 +1,33 @@
+package org.flechaamarilla.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.flechaamarilla.mapping.TicketParsingMode;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * A business unit as listed by the paginated listing: its columns only, read by a
+ * projection query rather than as a managed entity
+ */
+@Data
+public class BusinessUnitSummaryDTO {
+    private Long id;
+    private String name;
+    private String description;
+    private String rfcEmitter;
+    private String emitterName;
+    private String defaultCurrency;
+    private String series;
+    private TicketParsingMode ticketParsingMode;
+    private String itemsPath;
+    private String ticketIdPath;
+    private String ticketDatePath;
+    private BigDecimal ivaRate;
+    private BigDecimal iepsRate;
+
+    // Present only with include=mappings, in creation order
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<BusinessUnitDTO.FieldMappingDTO> fieldMappings;
+}
@@ -0,0 +1,45 @@
+package org.flechaamarilla.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hibernate second-level and query cache statistics since startup or the last reset
+ */
+@Data
+public class CacheStatisticsDTO {
+
+    // False when quarkus.hibernate-orm.statistics is off; counters are then all zero
+    private boolean statisticsEnabled;
+
+    private long secondLevelCacheHits;
+    private long secondLevelCacheMisses;
+    private long secondLevelCachePuts;
+
+    private long queryCacheHits;
+    private long queryCacheMisses;
+    private long queryCachePuts;
+
+    // Statements actually sent to the database, for comparison
+    private long queryExecutions;
+    private long entityLoads;
+
+    // Business units held by the in-memory mapping registry
+    private int mappingPlans;
+
+    private List<RegionStatisticsDTO> regions = new ArrayList<>();
+
+    /**
+     * Counters of a single cache region
+     */
+    @Data
+    public static class RegionStatisticsDTO {
+        private String region;
+        private long hits;
+        private long misses;
+        private long puts;
+        private long elementsInMemory;
+    }
+}
@@ -0,0 +1,19 @@
+package org.flechaamarilla.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A dead-letter queue and the number of invoice requests waiting in it
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterQueueDTO {
+
+    // Null for the channel's own dead-letter queue, which holds messages rejected by the broker
+    private String errorCode;
+    private String queue;
+    private long messages;
+}
@@ -0,0 +1,32 @@
+package org.flechaamarilla.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Progress or result of replaying a dead-letter queue
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterReplayDTO {
+
+    /**
+     * RUNNING, COMPLETED, or FAILED when the broker could not be reached; the requests
+     * replayed before the failure stay replayed
+     */
+    private String status;
+    private String queue;
+    private Instant startedAt;
+    private long elapsedMillis;
+    private int replayed;
+
+    /**
+     * Requests left in the queue, known once the replay has ended
+     */
+    private Long remaining;
+    private String error;
+}
@@ -0,0 +1,42 @@
+package org.flechaamarilla.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A range of folios that was reserved but may never have been issued
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FolioGapDTO {
+    private String series;
+    private long fromFolio;
+    private long toFolio;
+    private String nodeId;
+
+    /**
+     * When the block was reserved, null for a voided folio
+     */
+    private Instant reservedAt;
+
+    /**
+     * RELEASED when the range is known to be unused, ACTIVE when the owning node
+     * stopped without releasing its block and usage is unknown, VOIDED for a single
+     * folio taken for an invoice that was not produced
+     */
+    private String status;
+
+    /**
+     * Why a voided folio was not issued, null otherwise
+     */
+    private String reason;
+
+    /**
+     * When the folio was voided, or the block's node was last heard from; null if never
+     */
+    private Instant lastSeenAt;
+}
@@ -0,0 +1,31 @@
+package org.flechaamarilla.exception;
+
+import lombok.Getter;
+import org.flechaamarilla.metrics.FailureReason;
+
+/**
+ * An invoice request that produced no invoice, with the reason. By the time it is thrown
+ * the failure has been logged and counted.
+ */
+@Getter
+public class InvoiceProcessingException extends RuntimeException {
+
+    private final FailureReason reason;
+
+    public InvoiceProcessingException(FailureReason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public InvoiceProcessingException(FailureReason reason, String message, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+    }
+
+    /**
+     * @return True if the failure is transient and the request worth retrying
+     */
+    public boolean isRetryable() {
+        return reason.isRetryable();
+    }
+}
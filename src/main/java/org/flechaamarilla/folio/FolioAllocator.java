@@ -0,0 +1,283 @@
+package org.flechaamarilla.folio;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.flechaamarilla.model.FolioReservation;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out sequential folios per invoice series from blocks reserved in the database.
+ * Issuing a folio is a single atomic increment on the current block; the database is only
+ * touched to reserve a block (hi/lo style, one statement) and to record when it is used up.
+ * The next block is reserved in the background once the current one passes
+ * {@code invoice.folio.prefetch-threshold}, so the hot path rarely waits on a reservation.
+ * <p>
+ * Replicas reserve disjoint blocks, so folios are unique cluster-wide and sequential within a
+ * block. Unused folios left by a shutdown or crash show up in the reservation audit trail, and
+ * folios taken for an invoice that was then discarded are recorded with {@link #voidFolio}.
+ * Every {@code invoice.folio.heartbeat-interval} the replica records how far it has issued
+ * from each of its blocks, which tells the gap audit its blocks are still in use.
+ */
+@ApplicationScoped
+@Slf4j
+public class FolioAllocator {
+
+    @Inject
+    FolioReservationService reservationService;
+
+    @Inject
+    @ConfigProperty(name = "invoice.folio.block-size", defaultValue = "1000")
+    int blockSize;
+
+    @Inject
+    @ConfigProperty(name = "invoice.folio.prefetch-threshold", defaultValue = "0.8")
+    double prefetchThreshold;
+
+    @Inject
+    @ConfigProperty(name = "invoice.folio.node-id")
+    Optional<String> configuredNodeId;
+
+    @Inject
+    @ConfigProperty(name = "invoice.folio.heartbeat-interval", defaultValue = "PT1M")
+    Duration heartbeatInterval;
+
+    private final ConcurrentHashMap<String, SeriesState> seriesStates = new ConcurrentHashMap<>();
+    private String nodeId;
+    private Cancellable heartbeats;
+
+    @PostConstruct
+    void init() {
+        nodeId = configuredNodeId.map(String::trim).orElseGet(FolioAllocator::defaultNodeId);
+        heartbeats = Multi.createFrom().ticks().every(heartbeatInterval)
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .subscribe().with(tick -> heartbeat(), failure -> log.error("Folio heartbeats stopped", failure));
+        log.info("Folio allocator on node {} with blocks of {}", nodeId, blockSize);
+    }
+
+    /**
+     * Issues the next folio of a series
+     *
+     * @param series The invoice series
+     * @return The folio
+     */
+    public String nextFolio(String series) {
+        SeriesState state = seriesStates.computeIfAbsent(series, SeriesState::new);
+
+        while (true) {
+            FolioBlock block = state.current;
+            String folio = claim(state, block);
+            if (folio != null) {
+                return folio;
+            }
+            state.advance(block);
+        }
+    }
+
+    /**
+     * Issues the next folio of a series without blocking the caller: the folio is issued
+     * in place when the current block has one left, otherwise the block is replaced on
+     * a worker thread
+     *
+     * @param series The invoice series
+     * @return The folio
+     */
+    public Uni<String> nextFolioAsync(String series) {
+        SeriesState state = seriesStates.computeIfAbsent(series, SeriesState::new);
+
+        String folio = claim(state, state.current);
+        if (folio != null) {
+            return Uni.createFrom().item(folio);
+        }
+        return Uni.createFrom().item(() -> nextFolio(series))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    /**
+     * Records in the background that a folio issued by {@link #nextFolio} will not be used,
+     * so that the gap it leaves in its series is audited
+     *
+     * @param series The invoice series
+     * @param folio The folio
+     * @param reason Why it was not used
+     */
+    public void voidFolio(String series, String folio, String reason) {
+        Infrastructure.getDefaultWorkerPool().execute(() -> {
+            try {
+                reservationService.voidFolio(series, Long.parseLong(folio), nodeId, reason);
+                log.info("Voided folio {} of series {}: {}", folio, series, reason);
+            } catch (Exception e) {
+                log.error("Folio {} of series {} was not issued and could not be recorded as voided ({})",
+                        folio, series, reason, e);
+            }
+        });
+    }
+
+    /**
+     * @return The identifier this replica records on its reservations
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Releases the blocks held by this replica, recording the unused folios
+     */
+    @PreDestroy
+    void releaseBlocks() {
+        heartbeats.cancel();
+        for (SeriesState state : seriesStates.values()) {
+            synchronized (state) {
+                FolioBlock current = state.current;
+                if (current != null && current.lastIssued() < current.last) {
+                    release(current);
+                }
+                if (state.standby != null) {
+                    release(state.standby);
+                }
+            }
+        }
+    }
+
+    private void heartbeat() {
+        for (SeriesState state : seriesStates.values()) {
+            FolioBlock current;
+            FolioBlock standby;
+            synchronized (state) {
+                current = state.current;
+                standby = state.standby;
+            }
+            for (FolioBlock block : new FolioBlock[]{current, standby}) {
+                if (block == null) {
+                    continue;
+                }
+                try {
+                    reservationService.heartbeat(block.series, block.first, block.lastIssued());
+                } catch (Exception e) {
+                    log.warn("Could not record the heartbeat of folio block {} of series {}", block.first, block.series, e);
+                }
+            }
+        }
+    }
+
+    private String claim(SeriesState state, FolioBlock block) {
+        if (block == null) {
+            return null;
+        }
+        long folio = block.claim();
+        if (folio > block.last) {
+            return null;
+        }
+        if (folio == block.prefetchAt) {
+            prefetch(state);
+        }
+        if (folio == block.last) {
+            close(block, FolioReservation.Status.EXHAUSTED, block.last);
+        }
+        return Long.toString(folio);
+    }
+
+    private void release(FolioBlock block) {
+        try {
+            reservationService.closeBlock(block.series, block.first, FolioReservation.Status.RELEASED, block.lastIssued());
+            if (block.lastIssued() < block.last) {
+                log.info("Released folios {}-{} of series {} unused", block.lastIssued() + 1, block.last, block.series);
+            }
+        } catch (Exception e) {
+            log.error("Could not release folio block {} of series {}", block.first, block.series, e);
+        }
+    }
+
+    private FolioBlock reserve(String series) {
+        long first = reservationService.reserveBlock(series, blockSize, nodeId);
+        log.debug("Reserved folios {}-{} of series {}", first, first + blockSize - 1, series);
+        return new FolioBlock(series, first, first + blockSize - 1, prefetchThreshold);
+    }
+
+    private void prefetch(SeriesState state) {
+        Infrastructure.getDefaultWorkerPool().execute(() -> {
+            synchronized (state) {
+                if (state.standby != null || state.prefetching) {
+                    return;
+                }
+                state.prefetching = true;
+            }
+            FolioBlock block = null;
+            try {
+                block = reserve(state.series);
+            } catch (Exception e) {
+                log.warn("Background folio reservation failed for series {}", state.series, e);
+            } finally {
+                synchronized (state) {
+                    state.standby = block;
+                    state.prefetching = false;
+                }
+            }
+        });
+    }
+
+    private void close(FolioBlock block, FolioReservation.Status status, long lastIssued) {
+        Infrastructure.getDefaultWorkerPool().execute(() -> {
+            try {
+                reservationService.closeBlock(block.series, block.first, status, lastIssued);
+            } catch (Exception e) {
+                log.warn("Could not mark folio block {} of series {} as {}", block.first, block.series, status, e);
+            }
+        });
+    }
+
+    private static String defaultNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    /**
+     * Blocks of one series on this replica
+     */
+    private final class SeriesState {
+
+        final String series;
+        volatile FolioBlock current;
+
+        // Guarded by this
+        FolioBlock standby;
+        boolean prefetching;
+
+        SeriesState(String series) {
+            this.series = series;
+        }
+
+        /**
+         * Replaces a used-up block, unless another thread already did
+         *
+         * @param exhausted The block the caller found used up, or null
+         */
+        synchronized void advance(FolioBlock exhausted) {
+            if (current != exhausted) {
+                return;
+            }
+            if (standby != null) {
+                current = standby;
+                standby = null;
+            } else {
+                current = reserve(series);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.flechaamarilla.folio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A contiguous range of folios reserved by this replica, issued lock-free
+ */
+final class FolioBlock {
+
+    final String series;
+    final long first;
+    final long last;
+
+    /**
+     * Folio at which the next block is reserved in the background
+     */
+    final long prefetchAt;
+
+    private final AtomicLong next;
+
+    FolioBlock(String series, long first, long last, double prefetchThreshold) {
+        this.series = series;
+        this.first = first;
+        this.last = last;
+        this.prefetchAt = first + (long) ((last - first) * prefetchThreshold);
+        this.next = new AtomicLong(first);
+    }
+
+    /**
+     * Claims the next folio of the block
+     *
+     * @return The folio, or a value above {@link #last} if the block is used up
+     */
+    long claim() {
+        return next.getAndIncrement();
+    }
+
+    /**
+     * @return The last folio handed out, or {@code first - 1} if none was
+     */
+    long lastIssued() {
+        return Math.min(next.get() - 1, last);
+    }
+}
@@ -0,0 +1,98 @@
+package org.flechaamarilla.folio;
+
+import io.quarkus.hibernate.orm.panache.Panache;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.transaction.Transactional;
+import org.flechaamarilla.model.FolioReservation;
+import org.flechaamarilla.model.VoidedFolio;
+
+import java.time.Instant;
+
+/**
+ * Database side of folio allocation: claims blocks from the shared per-series counter and
+ * keeps the reservation audit trail. Every method runs in its own transaction so that a
+ * claimed block is committed independently of the invoice that triggered the claim.
+ */
+@ApplicationScoped
+public class FolioReservationService {
+
+    // Advances the series counter and records the reservation in one round trip.
+    // The upsert row lock is held only for this statement, not for the block's lifetime.
+    private static final String RESERVE_BLOCK_SQL = """
+            WITH claimed AS (
+                INSERT INTO folio_series_counters AS c (series, next_value)
+                VALUES (:series, 1 + :size)
+                ON CONFLICT (series) DO UPDATE SET next_value = c.next_value + :size
+                RETURNING c.next_value
+            )
+            INSERT INTO folio_reservations (series, first_folio, last_folio, node_id, status, reserved_at)
+            SELECT :series, next_value - :size, next_value - 1, :nodeId, 'ACTIVE', now()
+            FROM claimed
+            RETURNING first_folio
+            """;
+
+    /**
+     * Reserves the next block of folios for a series
+     *
+     * @param series The invoice series
+     * @param size Number of folios in the block
+     * @param nodeId The replica reserving the block
+     * @return The first folio of the block; the block ends at {@code first + size - 1}
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public long reserveBlock(String series, int size, String nodeId) {
+        Object first = Panache.getEntityManager()
+                .createNativeQuery(RESERVE_BLOCK_SQL)
+                .setParameter("series", series)
+                .setParameter("size", (long) size)
+                .setParameter("nodeId", nodeId)
+                .getSingleResult();
+        return ((Number) first).longValue();
+    }
+
+    /**
+     * Closes a reservation
+     *
+     * @param series The invoice series
+     * @param firstFolio The first folio of the block
+     * @param status EXHAUSTED or RELEASED
+     * @param lastIssued The last folio issued from the block
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void closeBlock(String series, long firstFolio, FolioReservation.Status status, long lastIssued) {
+        FolioReservation.update("status = ?1, lastIssued = ?2, closedAt = ?3 where series = ?4 and firstFolio = ?5",
+                status, lastIssued, Instant.now(), series, firstFolio);
+    }
+
+    /**
+     * Records that an active block's node is alive, and how far it has issued from the block
+     *
+     * @param series The invoice series
+     * @param firstFolio The first folio of the block
+     * @param lastIssued The last folio issued from the block, {@code firstFolio - 1} if none was
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void heartbeat(String series, long firstFolio, long lastIssued) {
+        FolioReservation.update("lastIssued = ?1, heartbeatAt = ?2 where series = ?3 and firstFolio = ?4 and status = ?5",
+                lastIssued, Instant.now(), series, firstFolio, FolioReservation.Status.ACTIVE);
+    }
+
+    /**
+     * Records a folio that was taken but will never be issued
+     *
+     * @param series The invoice series
+     * @param folio The folio
+     * @param nodeId The replica that took it
+     * @param reason Why it was not issued
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void voidFolio(String series, long folio, String nodeId, String reason) {
+        VoidedFolio voided = new VoidedFolio();
+        voided.setSeries(series);
+        voided.setFolio(folio);
+        voided.setNodeId(nodeId);
+        voided.setReason(reason);
+        voided.setVoidedAt(Instant.now());
+        voided.persist();
+    }
+}
@@ -0,0 +1,212 @@
+package org.flechaamarilla.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.flechaamarilla.folio.FolioAllocator;
+import org.flechaamarilla.model.StandardInvoice;
+import org.flechaamarilla.ticket.TicketKey;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the invoice produced for each (business unit, ticket token) so repeated
+ * requests for a ticket, from broker redeliveries or client retries, get the original
+ * invoice back instead of being processed again with a new folio.
+ * <p>
+ * Recently produced invoices are answered from an LRU cache; every other lookup goes to the
+ * {@code processed_invoices} table. That table is the source of truth across replicas, since
+ * a ticket may be retried on a replica other than the one that invoiced it, and its primary
+ * key makes the first recorded invoice win when two replicas process the same ticket concurrently.
+ * <p>
+ * Within a replica a ticket is {@linkplain #claim claimed} before it is looked up, so concurrent
+ * requests for it wait for the first one's invoice instead of taking folios of their own. A folio
+ * that still loses the race, to another replica, is recorded as voided.
+ */
+@ApplicationScoped
+@Slf4j
+public class ProcessedInvoiceCache {
+
+    @Inject
+    ProcessedInvoiceService processedInvoiceService;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    FolioAllocator folioAllocator;
+
+    @Inject
+    @ConfigProperty(name = "invoice.idempotency.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "invoice.idempotency.cache.maximum-size", defaultValue = "100000")
+    long cacheMaximumSize;
+
+    private Cache<TicketKey, StandardInvoice> recent;
+    private final ConcurrentHashMap<TicketKey, CompletableFuture<StandardInvoice>> inFlight = new ConcurrentHashMap<>();
+    private ObjectReader invoiceReader;
+    private ObjectWriter invoiceWriter;
+
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong databaseLookups = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        recent = Caffeine.newBuilder().maximumSize(cacheMaximumSize).build();
+        invoiceReader = objectMapper.readerFor(StandardInvoice.class);
+        invoiceWriter = objectMapper.writerFor(StandardInvoice.class).without(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    /**
+     * Gets the invoice previously produced for a ticket
+     *
+     * @param businessUnitId The business unit ID
+     * @param tokenTicket The ticket token
+     * @return The invoice, or null if the ticket was not processed before
+     */
+    public StandardInvoice find(Long businessUnitId, String tokenTicket) {
+        if (!enabled || tokenTicket == null) {
+            return null;
+        }
+
+        TicketKey key = new TicketKey(businessUnitId, tokenTicket);
+        StandardInvoice invoice = recent.getIfPresent(key);
+        if (invoice == null) {
+            databaseLookups.incrementAndGet();
+            invoice = decode(processedInvoiceService.findInvoice(key));
+            if (invoice == null) {
+                return null;
+            }
+            recent.put(key, invoice);
+        }
+
+        duplicates.incrementAndGet();
+        log.debug("Duplicate request for ticket {} of business unit {}: returning invoice {}-{}",
+                tokenTicket, businessUnitId, invoice.getSerie(), invoice.getFolio());
+        return invoice;
+    }
+
+    /**
+     * Claims a ticket for the calling request on this replica, until it calls {@link #release}
+     *
+     * @param businessUnitId The business unit ID
+     * @param tokenTicket The ticket token
+     * @return Null if the caller now holds the claim; otherwise the result of the request
+     *         holding it, completed with its invoice, or with null if it produced none
+     */
+    public CompletableFuture<StandardInvoice> claim(Long businessUnitId, String tokenTicket) {
+        if (!enabled || tokenTicket == null) {
+            return null;
+        }
+        return inFlight.putIfAbsent(new TicketKey(businessUnitId, tokenTicket), new CompletableFuture<>());
+    }
+
+    /**
+     * Releases a ticket claimed with {@link #claim}, handing its result to the requests waiting for it
+     *
+     * @param businessUnitId The business unit ID
+     * @param tokenTicket The ticket token
+     * @param invoice The invoice produced for the ticket, or null if the request failed
+     */
+    public void release(Long businessUnitId, String tokenTicket, StandardInvoice invoice) {
+        if (!enabled || tokenTicket == null) {
+            return;
+        }
+        CompletableFuture<StandardInvoice> claimed = inFlight.remove(new TicketKey(businessUnitId, tokenTicket));
+        if (claimed != null) {
+            claimed.complete(invoice);
+        }
+    }
+
+    /**
+     * Whether a lookup for a ticket can be answered without the database
+     *
+     * @param businessUnitId The business unit ID
+     * @param tokenTicket The ticket token
+     * @return True if {@link #find} will not block on a query
+     */
+    public boolean isAnsweredInMemory(Long businessUnitId, String tokenTicket) {
+        if (!enabled || tokenTicket == null) {
+            return true;
+        }
+        return recent.getIfPresent(new TicketKey(businessUnitId, tokenTicket)) != null;
+    }
+
+    /**
+     * Records the invoice produced for a ticket. If another invoice was recorded for the
+     * ticket in the meantime, by another replica, that one wins and this one's folio is voided
+     *
+     * @param businessUnitId The business unit ID
+     * @param tokenTicket The ticket token
+     * @param invoice The invoice just produced
+     * @return The invoice to return for the ticket
+     */
+    public StandardInvoice record(Long businessUnitId, String tokenTicket, StandardInvoice invoice) {
+        if (!enabled || tokenTicket == null) {
+            return invoice;
+        }
+
+        TicketKey key = new TicketKey(businessUnitId, tokenTicket);
+        try {
+            boolean recorded = processedInvoiceService.record(key, invoice.getSerie(), invoice.getFolio(),
+                    invoiceWriter.writeValueAsString(invoice));
+            if (!recorded) {
+                StandardInvoice original = decode(processedInvoiceService.findInvoice(key));
+                if (original != null) {
+                    log.warn("Ticket {} of business unit {} was processed concurrently: folio {} voided for {}",
+                            tokenTicket, businessUnitId, invoice.getFolio(), original.getFolio());
+                    folioAllocator.voidFolio(invoice.getSerie(), invoice.getFolio(),
+                            "ticket " + tokenTicket + " of business unit " + businessUnitId
+                                    + " was invoiced concurrently with folio " + original.getFolio());
+                    duplicates.incrementAndGet();
+                    recent.put(key, original);
+                    return original;
+                }
+            }
+            recent.put(key, invoice);
+        } catch (Exception e) {
+            // The invoice is still valid; only its deduplication record is missing
+            log.error("Could not record processed invoice for ticket {}", tokenTicket, e);
+        }
+        return invoice;
+    }
+
+    /**
+     * @return Requests answered with a previously produced invoice since startup
+     */
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    /**
+     * @return Lookups that had to query the database since startup
+     */
+    public long getDatabaseLookupCount() {
+        return databaseLookups.get();
+    }
+
+    private StandardInvoice decode(String invoiceJson) {
+        if (invoiceJson == null) {
+            return null;
+        }
+        try {
+            return invoiceReader.readValue(invoiceJson);
+        } catch (IOException e) {
+            log.error("Unreadable processed invoice record", e);
+            return null;
+        }
+    }
+}
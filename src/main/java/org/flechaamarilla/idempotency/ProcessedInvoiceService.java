@@ -0,0 +1,57 @@
+package org.flechaamarilla.idempotency;
+
+import io.quarkus.hibernate.orm.panache.Panache;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.transaction.Transactional;
+import org.flechaamarilla.model.ProcessedInvoice;
+import org.flechaamarilla.ticket.TicketKey;
+
+/**
+ * Database side of request deduplication. Every method runs in its own transaction so a
+ * recorded invoice is committed independently of the caller.
+ */
+@ApplicationScoped
+public class ProcessedInvoiceService {
+
+    // First writer wins; a concurrent or earlier record for the same ticket is left untouched
+    private static final String RECORD_SQL = """
+            INSERT INTO processed_invoices (business_unit_id, token_ticket, serie, folio, invoice, processed_at)
+            VALUES (:businessUnitId, :tokenTicket, :serie, :folio, :invoice, now())
+            ON CONFLICT (business_unit_id, token_ticket) DO NOTHING
+            """;
+
+    /**
+     * Gets the invoice recorded for a ticket
+     *
+     * @param key The business unit and ticket token
+     * @return The invoice JSON, or null if the ticket was never processed
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public String findInvoice(TicketKey key) {
+        ProcessedInvoice processed = ProcessedInvoice.findById(
+                new ProcessedInvoice.Key(key.businessUnitId(), key.tokenTicket()));
+        return processed == null ? null : processed.getInvoice();
+    }
+
+    /**
+     * Records the invoice of a ticket unless one is already recorded
+     *
+     * @param key The business unit and ticket token
+     * @param serie The invoice series
+     * @param folio The invoice folio
+     * @param invoiceJson The invoice as JSON
+     * @return True if this invoice was recorded, false if another one already was
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public boolean record(TicketKey key, String serie, String folio, String invoiceJson) {
+        int inserted = Panache.getEntityManager()
+                .createNativeQuery(RECORD_SQL)
+                .setParameter("businessUnitId", key.businessUnitId())
+                .setParameter("tokenTicket", key.tokenTicket())
+                .setParameter("serie", serie)
+                .setParameter("folio", folio)
+                .setParameter("invoice", invoiceJson)
+                .executeUpdate();
+        return inserted == 1;
+    }
+}
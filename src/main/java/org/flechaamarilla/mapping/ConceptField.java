@@ -0,0 +1,183 @@
+package org.flechaamarilla.mapping;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.flechaamarilla.model.ConceptTable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Standard concept fields that a business unit field mapping can target.
+ * Each constant writes straight to its column of a {@link ConceptTable},
+ * so a compiled {@link MappingPlan} never dispatches on the field name per ticket line.
+ */
+public enum ConceptField {
+
+    CLAVE_PROD_SERV("claveProdServ") {
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonNode value) {
+            concepts.setClaveProdServ(row, value.asText());
+        }
+
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonParser parser) throws IOException {
+            concepts.setClaveProdServ(row, JsonTokenValues.asText(parser));
+        }
+
+        @Override
+        public FieldTransform bind(TransformExpression expression) {
+            TransformExpression.TextForm form = expression.textForm();
+            return (concepts, row, value) -> concepts.setClaveProdServ(row, form.evaluate(concepts, row, value));
+        }
+    },
+    DESCRIPCION("descripcion") {
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonNode value) {
+            concepts.setDescripcion(row, value.asText());
+        }
+
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonParser parser) throws IOException {
+            concepts.setDescripcion(row, JsonTokenValues.asText(parser));
+        }
+
+        @Override
+        public FieldTransform bind(TransformExpression expression) {
+            TransformExpression.TextForm form = expression.textForm();
+            return (concepts, row, value) -> concepts.setDescripcion(row, form.evaluate(concepts, row, value));
+        }
+    },
+    CANTIDAD("cantidad") {
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonNode value) {
+            concepts.setCantidadMicros(row, ConceptTable.toMicros(value.asDouble()));
+        }
+
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonParser parser) throws IOException {
+            concepts.setCantidadMicros(row, ConceptTable.toMicros(JsonTokenValues.asDouble(parser)));
+        }
+
+        @Override
+        public FieldTransform bind(TransformExpression expression) {
+            TransformExpression.NumberForm form = expression.numberForm();
+            return (concepts, row, value) -> concepts.setCantidadMicros(row,
+                    TransformExpression.toMicros(form.evaluate(concepts, row, value)));
+        }
+    },
+    UNIDAD("unidad") {
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonNode value) {
+            concepts.setUnidad(row, value.asText());
+        }
+
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonParser parser) throws IOException {
+            concepts.setUnidad(row, JsonTokenValues.asText(parser));
+        }
+
+        @Override
+        public FieldTransform bind(TransformExpression expression) {
+            TransformExpression.TextForm form = expression.textForm();
+            return (concepts, row, value) -> concepts.setUnidad(row, form.evaluate(concepts, row, value));
+        }
+    },
+    VALOR_UNITARIO("valorUnitario") {
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonNode value) {
+            concepts.setValorUnitarioMicros(row, ConceptTable.toMicros(value.asDouble()));
+        }
+
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonParser parser) throws IOException {
+            concepts.setValorUnitarioMicros(row, ConceptTable.toMicros(JsonTokenValues.asDouble(parser)));
+        }
+
+        @Override
+        public FieldTransform bind(TransformExpression expression) {
+            TransformExpression.NumberForm form = expression.numberForm();
+            return (concepts, row, value) -> concepts.setValorUnitarioMicros(row,
+                    TransformExpression.toMicros(form.evaluate(concepts, row, value)));
+        }
+    },
+    IMPORTE("importe") {
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonNode value) {
+            concepts.setImporteCents(row, ConceptTable.toCents(value.asDouble()));
+        }
+
+        @Override
+        public void apply(ConceptTable concepts, int row, JsonParser parser) throws IOException {
+            concepts.setImporteCents(row, ConceptTable.toCents(JsonTokenValues.asDouble(parser)));
+        }
+
+        @Override
+        public FieldTransform bind(TransformExpression expression) {
+            TransformExpression.NumberForm form = expression.numberForm();
+            return (concepts, row, value) -> concepts.setImporteCents(row,
+                    TransformExpression.toCents(form.evaluate(concepts, row, value)));
+        }
+    };
+
+    private static final Map<String, ConceptField> BY_STANDARD_NAME = new HashMap<>();
+
+    static {
+        for (ConceptField field : values()) {
+            BY_STANDARD_NAME.put(field.standardName, field);
+        }
+    }
+
+    private final String standardName;
+
+    ConceptField(String standardName) {
+        this.standardName = standardName;
+    }
+
+    /**
+     * @return The standard field name as stored in {@code FieldMapping.standardFieldName}
+     */
+    public String getStandardName() {
+        return standardName;
+    }
+
+    /**
+     * Sets this field on a concept from a ticket value
+     *
+     * @param concepts The concepts being mapped
+     * @param row The concept to update
+     * @param value The ticket value
+     */
+    public abstract void apply(ConceptTable concepts, int row, JsonNode value);
+
+    /**
+     * Sets this field on a concept from the parser's current value token,
+     * coercing it exactly as {@link #apply(ConceptTable, int, JsonNode)} would
+     *
+     * @param concepts The concepts being mapped
+     * @param row The concept to update
+     * @param parser The parser positioned on the value
+     * @throws IOException If the value cannot be read
+     */
+    public abstract void apply(ConceptTable concepts, int row, JsonParser parser) throws IOException;
+
+    /**
+     * Binds a compiled transform to this field; the result is converted to the field's type
+     * (quantities and unit prices are rounded to millionths, amounts to cents)
+     *
+     * @param expression The compiled transform
+     * @return Setter that evaluates the transform into this field
+     */
+    public abstract FieldTransform bind(TransformExpression expression);
+
+    /**
+     * Resolves a standard field name
+     *
+     * @param standardName The standard field name
+     * @return The matching field or null if the name is unknown
+     */
+    public static ConceptField fromStandardName(String standardName) {
+        return standardName == null ? null : BY_STANDARD_NAME.get(standardName);
+    }
+}
@@ -0,0 +1,18 @@
+package org.flechaamarilla.mapping;
+
+import org.flechaamarilla.model.ConceptTable;
+
+/**
+ * A transform expression bound to its target field: evaluates the expression for a concept
+ * and writes the result to the target's column
+ */
+@FunctionalInterface
+public interface FieldTransform {
+
+    /**
+     * @param concepts The concepts being mapped
+     * @param row The concept to update
+     * @param value The raw value of the mapping's source field
+     */
+    void apply(ConceptTable concepts, int row, String value);
+}
@@ -0,0 +1,40 @@
+package org.flechaamarilla.mapping;
+
+import java.util.Arrays;
+
+/**
+ * Per-ticket scratch space for mapping items with a {@link MappingPlan}, reset for every item
+ */
+final class ItemScratch {
+
+    // Highest plan index applied so far per target field
+    private final int[] lastApplied = new int[ConceptField.values().length];
+
+    // Source value per transform of the plan, for the current item
+    final String[] transformValues;
+
+    ItemScratch(MappingPlan plan) {
+        this.transformValues = new String[plan.transformCount()];
+    }
+
+    void reset() {
+        Arrays.fill(lastApplied, -1);
+        Arrays.fill(transformValues, null);
+    }
+
+    /**
+     * Decides whether a rename may write its target. Mappings apply in plan order, so a later
+     * mapping to the same target wins regardless of where its source appears in the item.
+     *
+     * @param index The rename's plan index
+     * @param target Its target field
+     * @return True if the rename should be applied
+     */
+    boolean claim(int index, ConceptField target) {
+        if (index < lastApplied[target.ordinal()]) {
+            return false;
+        }
+        lastApplied[target.ordinal()] = index;
+        return true;
+    }
+}
@@ -0,0 +1,68 @@
+package org.flechaamarilla.mapping;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.io.NumberInput;
+import com.fasterxml.jackson.core.io.NumberOutput;
+
+import java.io.IOException;
+
+/**
+ * Reads the value at the parser's current token with the same coercion rules as
+ * {@code JsonNode.asText()} and {@code asDouble()} on the node that
+ * {@code ObjectMapper.readTree} would have built for it. Keeps the streaming
+ * transformer's output identical to the tree path.
+ * Container values read as empty/zero; callers skip their children afterwards.
+ */
+final class JsonTokenValues {
+
+    private JsonTokenValues() {
+    }
+
+    static String asText(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                switch (parser.getNumberType()) {
+                    case INT:
+                        return NumberOutput.toString(parser.getIntValue());
+                    case LONG:
+                        return NumberOutput.toString(parser.getLongValue());
+                    default:
+                        return parser.getBigIntegerValue().toString();
+                }
+            case VALUE_NUMBER_FLOAT:
+                return NumberOutput.toString(parser.getDoubleValue());
+            case VALUE_TRUE:
+                return "true";
+            case VALUE_FALSE:
+                return "false";
+            case VALUE_NULL:
+                return "null";
+            default:
+                return "";
+        }
+    }
+
+    static double asDouble(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_STRING:
+                return NumberInput.parseAsDouble(parser.getText(), 0.0, false);
+            case VALUE_NUMBER_INT:
+                switch (parser.getNumberType()) {
+                    case INT:
+                        return parser.getIntValue();
+                    case LONG:
+                        return parser.getLongValue();
+                    default:
+                        return parser.getBigIntegerValue().doubleValue();
+                }
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return 1.0;
+            default:
+                return 0.0;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.flechaamarilla.mapping;
+
+/**
+ * Broadcast to every replica once a change to a business unit or its field mappings has committed
+ *
+ * @param businessUnitId The affected business unit ID, or null if business units were added in bulk
+ * @param version The unit's version after the change, {@code Long.MAX_VALUE} if it was deleted,
+ *                {@link #UNKNOWN_VERSION} if the replica that made the change could not reload it
+ * @param origin Instance ID of the replica that made the change
+ */
+public record MappingChangeNotice(Long businessUnitId, long version, String origin) {
+
+    /**
+     * Version of a change whose result is not known; receivers always reload the unit
+     */
+    public static final long UNKNOWN_VERSION = -1;
+}
@@ -0,0 +1,358 @@
+package org.flechaamarilla.mapping;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.model.ConceptTable;
+import org.flechaamarilla.model.FieldMapping;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, precompiled form of a business unit's field mappings.
+ * Holds the emitter data needed to build an invoice and a pair of parallel arrays
+ * (source path, target setter) so that mapping a ticket line is a plain walk with
+ * no switch on field names.
+ * <p>
+ * Source paths are compiled into a {@link PathTrie} over the item, whose value slots are
+ * plan indices, so a line is mapped in one pass that visits each needed value once however
+ * many mappings read it, nested ones included. Mappings with a transform expression are
+ * compiled into their own pair of arrays (source path, {@link FieldTransform}) and applied
+ * after the plain renames of each line, in plan order, so they can read the concept's
+ * mapped fields. Header mappings are compiled into the ticket's {@link TicketLayout}.
+ */
+@Slf4j
+public final class MappingPlan {
+
+    private final Long businessUnitId;
+    private final long version;
+    private final String rfcEmitter;
+    private final String emitterName;
+    private final String defaultCurrency;
+    private final String series;
+    private final TicketParsingMode parsingMode;
+    private final TicketLayout layout;
+
+    // Tax rates in millionths; -1 IVA means the global default
+    private final long ivaRateMicros;
+    private final long iepsRateMicros;
+
+    private final String[] sourceFields;
+    private final ConceptField[] targets;
+
+    private final String[] transformSources;
+    private final FieldTransform[] transforms;
+
+    // Item paths; slot i < targets.length is rename i, any other slot is transform i - targets.length
+    private final PathTrie itemTrie;
+    private final int headerMappings;
+
+    private MappingPlan(BusinessUnit businessUnit, TicketLayout layout, int headerMappings,
+                        String[] sourceFields, ConceptField[] targets,
+                        String[] transformSources, FieldTransform[] transforms) {
+        this.businessUnitId = businessUnit.getId();
+        this.version = businessUnit.getVersion();
+        this.rfcEmitter = businessUnit.getRfcEmitter();
+        this.emitterName = businessUnit.getEmitterName();
+        this.defaultCurrency = businessUnit.getDefaultCurrency();
+        this.series = businessUnit.getSeries();
+        this.parsingMode = businessUnit.getTicketParsingMode();
+        this.layout = layout;
+        this.headerMappings = headerMappings;
+        this.ivaRateMicros = businessUnit.getIvaRate() == null ? -1 : toMicros(businessUnit.getIvaRate());
+        this.iepsRateMicros = businessUnit.getIepsRate() == null ? 0 : toMicros(businessUnit.getIepsRate());
+        this.sourceFields = sourceFields;
+        this.targets = targets;
+        this.transformSources = transformSources;
+        this.transforms = transforms;
+
+        PathTrie paths = new PathTrie();
+        for (int i = 0; i < sourceFields.length; i++) {
+            paths.addValueSlot(TicketLayout.toPointer(sourceFields[i]), i);
+        }
+        for (int i = 0; i < transformSources.length; i++) {
+            paths.addValueSlot(TicketLayout.toPointer(transformSources[i]), sourceFields.length + i);
+        }
+        this.itemTrie = paths.seal();
+    }
+
+    private static long toMicros(BigDecimal rate) {
+        return rate.setScale(6, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Compiles the mappings of a business unit into a plan.
+     * Mappings that target an unknown standard field, whose source path is not valid or
+     * whose transform does not compile are dropped with a warning. Dotted sources are read
+     * as nested paths, so one saved as a plain key containing dots, as keys were before
+     * nested paths, is logged to be rewritten.
+     *
+     * @param businessUnit The business unit
+     * @param mappings The business unit's field mappings, in application order
+     * @return The compiled plan
+     */
+    public static MappingPlan compile(BusinessUnit businessUnit, List<FieldMapping> mappings) {
+        List<String> sources = new ArrayList<>(mappings.size());
+        List<ConceptField> fields = new ArrayList<>(mappings.size());
+        List<String> transformSources = new ArrayList<>();
+        List<FieldTransform> transforms = new ArrayList<>();
+
+        // Header mappings override the unit's header paths; the last one for a value wins
+        Map<TicketHeaderField, String> headerPaths = new EnumMap<>(TicketHeaderField.class);
+        putIfPresent(headerPaths, TicketHeaderField.TICKET_ID, businessUnit.getTicketIdPath());
+        putIfPresent(headerPaths, TicketHeaderField.TICKET_DATE, businessUnit.getTicketDatePath());
+        int headerMappings = 0;
+
+        for (FieldMapping mapping : mappings) {
+            try {
+                TicketLayout.toPointer(mapping.getSourceFieldName());
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid source path '{}' in mapping for business unit {}",
+                        mapping.getSourceFieldName(), businessUnit.getId());
+                continue;
+            }
+            warnIfDotted(businessUnit, mapping.getSourceFieldName());
+
+            String transform = mapping.getTransform();
+            boolean transformed = transform != null && !transform.isBlank();
+
+            if (mapping.getScope() == MappingScope.HEADER) {
+                TicketHeaderField header = TicketHeaderField.fromStandardName(mapping.getStandardFieldName());
+                if (header == null || transformed) {
+                    log.warn("Dropping header mapping of '{}' to '{}' for business unit {}: {}",
+                            mapping.getSourceFieldName(), mapping.getStandardFieldName(), businessUnit.getId(),
+                            header == null ? "unknown header field" : "header mappings take no transform");
+                    continue;
+                }
+                headerPaths.put(header, mapping.getSourceFieldName());
+                headerMappings++;
+                continue;
+            }
+
+            ConceptField field = ConceptField.fromStandardName(mapping.getStandardFieldName());
+            if (field == null) {
+                log.warn("Unknown standard field '{}' in mapping for business unit {}",
+                        mapping.getStandardFieldName(), businessUnit.getId());
+                continue;
+            }
+
+            if (!transformed) {
+                sources.add(mapping.getSourceFieldName());
+                fields.add(field);
+                continue;
+            }
+            try {
+                transforms.add(field.bind(TransformExpression.compile(transform)));
+                transformSources.add(mapping.getSourceFieldName());
+            } catch (IllegalArgumentException e) {
+                log.warn("Dropping mapping of '{}' for business unit {}: {}",
+                        mapping.getSourceFieldName(), businessUnit.getId(), e.getMessage());
+            }
+        }
+
+        return new MappingPlan(businessUnit,
+                TicketLayout.compile(businessUnit.getItemsPath(), headerPaths),
+                headerMappings,
+                sources.toArray(new String[0]),
+                fields.toArray(new ConceptField[0]),
+                transformSources.toArray(new String[0]),
+                transforms.toArray(new FieldTransform[0]));
+    }
+
+    private static void warnIfDotted(BusinessUnit businessUnit, String source) {
+        if (!source.startsWith("/") && source.indexOf('.') >= 0) {
+            JsonPointer pointer = TicketLayout.toPointer(source);
+            log.warn("Mapping source '{}' of business unit {} is read as the nested path {}; save it as '/{}' "
+                            + "if it names a key containing dots, or as '{}' to silence this warning",
+                    source, businessUnit.getId(), pointer, source.replace("~", "~0").replace("/", "~1"), pointer);
+        }
+    }
+
+    private static void putIfPresent(Map<TicketHeaderField, String> paths, TicketHeaderField field, String path) {
+        if (path != null && !path.isBlank()) {
+            paths.put(field, path);
+        }
+    }
+
+    /**
+     * Copies the mapped fields of a ticket item into a concept, visiting the item along the item trie
+     *
+     * @param concepts The concepts being mapped
+     * @param row The concept to fill
+     * @param item The ticket item
+     * @param scratch The ticket's scratch space
+     */
+    void applyTo(ConceptTable concepts, int row, JsonNode item, ItemScratch scratch) {
+        scratch.reset();
+        visit(itemTrie.root(), item, concepts, row, scratch);
+        completeItem(concepts, row, scratch);
+    }
+
+    private void visit(PathTrie.Node node, JsonNode container, ConceptTable concepts, int row, ItemScratch scratch) {
+        if (container.isObject()) {
+            // Walk whichever side is smaller, so a large mapping catalog costs nothing on small items
+            if (node.fieldCount() <= container.size()) {
+                for (int i = 0; i < node.fieldCount(); i++) {
+                    JsonNode value = container.get(node.fieldName(i));
+                    if (value != null) {
+                        reach(node.fieldNode(i), value, concepts, row, scratch);
+                    }
+                }
+            } else {
+                for (Map.Entry<String, JsonNode> field : container.properties()) {
+                    PathTrie.Node child = node.field(field.getKey());
+                    if (child != null) {
+                        reach(child, field.getValue(), concepts, row, scratch);
+                    }
+                }
+            }
+        } else if (container.isArray()) {
+            for (int i = 0; i < node.indexCount(); i++) {
+                JsonNode value = container.get(node.indexKey(i));
+                if (value != null) {
+                    reach(node.indexNode(i), value, concepts, row, scratch);
+                }
+            }
+        }
+    }
+
+    private void reach(PathTrie.Node node, JsonNode value, ConceptTable concepts, int row, ItemScratch scratch) {
+        if (node.valueSlots.length > 0) {
+            String text = null;
+            for (int slot : node.valueSlots) {
+                if (slot >= targets.length) {
+                    // Transforms may read any mapped field, so they run once the whole item is read
+                    text = text == null ? value.asText() : text;
+                    scratch.transformValues[slot - targets.length] = text;
+                } else if (scratch.claim(slot, targets[slot])) {
+                    targets[slot].apply(concepts, row, value);
+                }
+            }
+        }
+        if (value.isContainerNode() && (node.hasFields() || node.hasIndices())) {
+            visit(node, value, concepts, row, scratch);
+        }
+    }
+
+    /**
+     * Applies the mappings that read the value at the parser's current token
+     *
+     * @param slots The value slots of the item trie node the parser is on
+     * @param concepts The concepts being mapped
+     * @param row The concept to fill
+     * @param parser The parser positioned on the value
+     * @param scratch The ticket's scratch space
+     * @throws IOException If the value cannot be read
+     */
+    void applyValue(int[] slots, ConceptTable concepts, int row, JsonParser parser, ItemScratch scratch) throws IOException {
+        String text = null;
+        for (int slot : slots) {
+            if (slot >= targets.length) {
+                text = text == null ? JsonTokenValues.asText(parser) : text;
+                scratch.transformValues[slot - targets.length] = text;
+            } else if (scratch.claim(slot, targets[slot])) {
+                targets[slot].apply(concepts, row, parser);
+            }
+        }
+    }
+
+    /**
+     * Applies the transforms to a concept once all of its item has been read
+     *
+     * @param concepts The concepts being mapped
+     * @param row The concept to update
+     * @param scratch The ticket's scratch space, holding the transforms' source values
+     */
+    void completeItem(ConceptTable concepts, int row, ItemScratch scratch) {
+        String[] values = scratch.transformValues;
+        for (int i = 0; i < transforms.length; i++) {
+            if (values[i] != null) {
+                transforms[i].apply(concepts, row, values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The trie of the item paths this plan reads
+     */
+    PathTrie getItemTrie() {
+        return itemTrie;
+    }
+
+    /**
+     * @return Number of compiled transforms
+     */
+    int transformCount() {
+        return transforms.length;
+    }
+
+    public Long getBusinessUnitId() {
+        return businessUnitId;
+    }
+
+    /**
+     * @return The version of the business unit this plan was compiled from
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public String getRfcEmitter() {
+        return rfcEmitter;
+    }
+
+    public String getEmitterName() {
+        return emitterName;
+    }
+
+    public String getDefaultCurrency() {
+        return defaultCurrency;
+    }
+
+    public String getSeries() {
+        return series;
+    }
+
+    /**
+     * @return The business unit's parsing mode, or null to use the global default
+     */
+    public TicketParsingMode getParsingMode() {
+        return parsingMode;
+    }
+
+    /**
+     * @return Where this unit's tickets keep their items and header values
+     */
+    public TicketLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return The unit's IVA rate in millionths, or -1 to use the global default
+     */
+    public long getIvaRateMicros() {
+        return ivaRateMicros;
+    }
+
+    /**
+     * @return The unit's IEPS rate in millionths, 0 if it charges no IEPS
+     */
+    public long getIepsRateMicros() {
+        return iepsRateMicros;
+    }
+
+    /**
+     * @return Number of compiled field mappings, transforms and header mappings included
+     */
+    public int size() {
+        return sourceFields.length + transforms.length + headerMappings;
+    }
+}
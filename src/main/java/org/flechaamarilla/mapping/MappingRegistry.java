@@ -0,0 +1,323 @@
+package org.flechaamarilla.mapping;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.model.FieldMapping;
+import org.flechaamarilla.repository.ReactiveBusinessUnitRepository;
+import org.flechaamarilla.repository.ReactiveFieldMappingRepository;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory registry of every business unit's compiled {@link MappingPlan}, kept current across replicas.
+ * <p>
+ * Readers see an immutable snapshot through a single volatile read: they never lock, and once a
+ * unit is registered they never query the database. Writers are rare (a mapping change) and
+ * replace the snapshot with an updated copy.
+ * <p>
+ * Each plan carries its business unit's version, which every committed change increments. After a
+ * change commits, the unit is reloaded in the background and a {@link MappingChangeNotice} is
+ * broadcast on the {@code mapping-changes-out} fanout exchange, whether or not the reload succeeded;
+ * every other replica receiving it evicts its cached master data and reloads the unit the same way,
+ * skipping only the reload if it already holds that version. A failed reload is retried with
+ * backoff, and if it keeps failing the unit's plan is dropped so that the next request loads it
+ * rather than keep using the plan from before the change. A plan only ever replaces an
+ * older version, so reloads that complete out of order cannot roll a unit back. Business units
+ * added in bulk are announced too, with no unit ID, so that every replica evicts its cached
+ * master-data queries and listing version.
+ */
+@ApplicationScoped
+@Slf4j
+public class MappingRegistry {
+
+    // Registered for a deleted unit, so it is neither reloaded nor resurrected by a stale reload
+    private static final Entry DELETED = new Entry(null, Long.MAX_VALUE);
+
+    private static final int RELOAD_RETRIES = 5;
+    private static final Duration RELOAD_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_RELOAD_BACKOFF = Duration.ofSeconds(30);
+
+    @Inject
+    ReactiveBusinessUnitRepository reactiveBusinessUnits;
+
+    @Inject
+    ReactiveFieldMappingRepository reactiveFieldMappings;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    Event<MappingsChangedEvent> mappingsChanged;
+
+    @Inject
+    @Channel("mapping-changes-out")
+    Emitter<String> changeEmitter;
+
+    @Inject
+    @ConfigProperty(name = "quarkus.uuid")
+    String instanceId;
+
+    private volatile Map<Long, Entry> entries = Map.of();
+
+    /**
+     * Gets the compiled plan for a business unit, loading it on the first request for the unit
+     *
+     * @param businessUnitId The business unit ID
+     * @return The plan or null if the business unit does not exist
+     */
+    public MappingPlan getPlan(Long businessUnitId) {
+        if (businessUnitId == null) {
+            return null;
+        }
+
+        Entry entry = entries.get(businessUnitId);
+        if (entry != null) {
+            return entry.plan();
+        }
+
+        MappingPlan compiled = QuarkusTransaction.joiningExisting().call(() -> compile(businessUnitId));
+        return compiled == null ? null : register(businessUnitId, compiled);
+    }
+
+    /**
+     * Gets the compiled plan for a business unit without blocking, loading it over the
+     * reactive client on the first request for the unit
+     *
+     * @param businessUnitId The business unit ID
+     * @return The plan, or null if the business unit does not exist
+     */
+    public Uni<MappingPlan> getPlanReactive(Long businessUnitId) {
+        if (businessUnitId == null) {
+            return Uni.createFrom().nullItem();
+        }
+
+        Entry entry = entries.get(businessUnitId);
+        if (entry != null) {
+            return Uni.createFrom().item(entry.plan());
+        }
+
+        return load(businessUnitId)
+                .map(compiled -> compiled == null ? null : register(businessUnitId, compiled));
+    }
+
+    /**
+     * Gets the registered version of a business unit's mappings
+     *
+     * @param businessUnitId The business unit ID
+     * @return The version, or -1 if the unit is not registered or was deleted
+     */
+    public long getVersion(Long businessUnitId) {
+        Entry entry = entries.get(businessUnitId);
+        return entry == null || entry.plan() == null ? -1 : entry.version();
+    }
+
+    /**
+     * @return Number of registered business units
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops every registered plan; they are loaded again on next use
+     */
+    public synchronized void invalidateAll() {
+        entries = Map.of();
+    }
+
+    void onMappingsChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) MappingsChangedEvent event) {
+        Long businessUnitId = event.businessUnitId();
+        if (businessUnitId == null) {
+            // New units only; their plans are loaded on first use
+            if (!event.remote()) {
+                broadcast(new MappingChangeNotice(null, 0, instanceId));
+            }
+            return;
+        }
+        if (event.planCurrent()) {
+            return;
+        }
+
+        refresh(businessUnitId).subscribe().with(
+                version -> {
+                    if (!event.remote()) {
+                        broadcast(new MappingChangeNotice(businessUnitId, version, instanceId));
+                    }
+                },
+                failure -> {
+                    log.warn("Could not reload the mappings of business unit {}, retrying", businessUnitId, failure);
+                    // The change is committed: the other replicas reload it whatever happens here
+                    if (!event.remote()) {
+                        broadcast(new MappingChangeNotice(businessUnitId, MappingChangeNotice.UNKNOWN_VERSION, instanceId));
+                    }
+                    retryRefresh(businessUnitId);
+                });
+    }
+
+    private void retryRefresh(Long businessUnitId) {
+        refresh(businessUnitId)
+                .onFailure().retry().withBackOff(RELOAD_BACKOFF, MAX_RELOAD_BACKOFF).atMost(RELOAD_RETRIES)
+                .subscribe().with(
+                        version -> log.info("Reloaded the mappings of business unit {} at version {}", businessUnitId, version),
+                        failure -> {
+                            // Rather than keep the plan from before the change, let the next request load the unit
+                            forget(businessUnitId);
+                            log.error("Could not reload the mappings of business unit {}; dropped its plan",
+                                    businessUnitId, failure);
+                        });
+    }
+
+    /**
+     * Receives the changes committed by other replicas
+     *
+     * @param payload A {@link MappingChangeNotice} as JSON
+     */
+    @Incoming("mapping-changes-in")
+    public void onRemoteChange(String payload) {
+        MappingChangeNotice notice;
+        try {
+            notice = objectMapper.readValue(payload, MappingChangeNotice.class);
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable mapping change notice: {}", payload, e);
+            return;
+        }
+
+        if (instanceId.equals(notice.origin())) {
+            return;
+        }
+        if (notice.businessUnitId() == null) {
+            log.debug("Business units added on replica {}", notice.origin());
+            mappingsChanged.fire(MappingsChangedEvent.remote(null, false));
+            return;
+        }
+        // The plan may already be current, loaded over the reactive client, while the
+        // second-level cache that client bypasses still holds the old unit
+        Entry entry = entries.get(notice.businessUnitId());
+        boolean planCurrent = entry != null && notice.version() != MappingChangeNotice.UNKNOWN_VERSION
+                && entry.version() >= notice.version();
+
+        log.debug("Business unit {} changed to version {} on replica {}",
+                notice.businessUnitId(), notice.version(), notice.origin());
+        // Outside a transaction, so observers run now: cached master data is evicted and, unless
+        // the plan is current, the unit reloaded
+        mappingsChanged.fire(MappingsChangedEvent.remote(notice.businessUnitId(), planCurrent));
+    }
+
+    private Uni<Long> refresh(Long businessUnitId) {
+        return load(businessUnitId).map(compiled -> {
+            if (compiled == null) {
+                replace(businessUnitId, DELETED);
+                return DELETED.version();
+            }
+            register(businessUnitId, compiled);
+            return compiled.getVersion();
+        });
+    }
+
+    private void broadcast(MappingChangeNotice notice) {
+        try {
+            changeEmitter.send(objectMapper.writeValueAsString(notice))
+                    .whenComplete((ignored, failure) -> {
+                        if (failure != null) {
+                            log.warn("Could not broadcast the change of business unit {}", describe(notice), failure);
+                        }
+                    });
+        } catch (Exception e) {
+            log.warn("Could not broadcast the change of business unit {}", describe(notice), e);
+        }
+    }
+
+    private static Object describe(MappingChangeNotice notice) {
+        return notice.businessUnitId() == null ? "(units added)" : notice.businessUnitId();
+    }
+
+    private MappingPlan register(Long businessUnitId, MappingPlan compiled) {
+        Entry registered = replace(businessUnitId, new Entry(compiled, compiled.getVersion()));
+        return registered.plan();
+    }
+
+    /**
+     * Publishes a new snapshot with the entry of a unit replaced, unless the registered entry is newer
+     *
+     * @return The entry registered for the unit afterwards
+     */
+    private synchronized Entry replace(Long businessUnitId, Entry entry) {
+        Map<Long, Entry> current = entries;
+        Entry existing = current.get(businessUnitId);
+        if (existing != null && existing.version() >= entry.version()) {
+            return existing;
+        }
+
+        Map<Long, Entry> updated = new HashMap<>(current);
+        updated.put(businessUnitId, entry);
+        entries = Collections.unmodifiableMap(updated);
+        if (existing != null) {
+            log.debug("Business unit {} mappings updated from version {} to {}",
+                    businessUnitId, existing.version(), entry.version());
+        }
+        return entry;
+    }
+
+    /**
+     * Drops the plan of a unit, unless the unit was deleted, so that it is loaded again on next use
+     */
+    private synchronized void forget(Long businessUnitId) {
+        Map<Long, Entry> current = entries;
+        Entry existing = current.get(businessUnitId);
+        if (existing == null || existing == DELETED) {
+            return;
+        }
+        Map<Long, Entry> updated = new HashMap<>(current);
+        updated.remove(businessUnitId);
+        entries = Collections.unmodifiableMap(updated);
+    }
+
+    private Uni<MappingPlan> load(Long businessUnitId) {
+        return Uni.combine().all()
+                .unis(reactiveBusinessUnits.findById(businessUnitId),
+                        reactiveFieldMappings.findByBusinessUnit(businessUnitId))
+                .asTuple()
+                .map(loaded -> {
+                    if (loaded.getItem1() == null) {
+                        return null;
+                    }
+                    MappingPlan compiled = MappingPlan.compile(loaded.getItem1(), loaded.getItem2());
+                    log.debug("Compiled mapping plan for business unit {} with {} fields", businessUnitId, compiled.size());
+                    return compiled;
+                });
+    }
+
+    private MappingPlan compile(Long businessUnitId) {
+        BusinessUnit businessUnit = BusinessUnit.findById(businessUnitId);
+        if (businessUnit == null) {
+            return null;
+        }
+
+        List<FieldMapping> mappings = FieldMapping.findByBusinessUnit(businessUnitId);
+        MappingPlan plan = MappingPlan.compile(businessUnit, mappings);
+        log.debug("Compiled mapping plan for business unit {} with {} fields", businessUnitId, plan.size());
+        return plan;
+    }
+
+    /**
+     * A registered plan and its version; a null plan marks a deleted unit
+     */
+    private record Entry(MappingPlan plan, long version) {
+    }
+}
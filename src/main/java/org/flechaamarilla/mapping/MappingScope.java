@@ -0,0 +1,17 @@
+package org.flechaamarilla.mapping;
+
+/**
+ * Where in a ticket a field mapping reads its source path from
+ */
+public enum MappingScope {
+
+    /**
+     * Relative to each line item, targeting a concept field
+     */
+    ITEM,
+
+    /**
+     * Relative to the ticket root, targeting a ticket header value
+     */
+    HEADER
+}
@@ -0,0 +1,36 @@
+package org.flechaamarilla.mapping;
+
+/**
+ * CDI event fired when a business unit or its field mappings change, or when business units
+ * are added in bulk. Observers are notified after the surrounding transaction commits.
+ *
+ * @param businessUnitId The affected business unit ID, or null if business units were added in bulk
+ * @param remote True if the change was made by another replica and announced by {@link MappingRegistry}
+ * @param planCurrent True if this replica's plan of the unit already has the changed version, so
+ *                    only cached master data is stale
+ */
+public record MappingsChangedEvent(Long businessUnitId, boolean remote, boolean planCurrent) {
+
+    /**
+     * @param businessUnitId The business unit changed by this replica
+     */
+    public MappingsChangedEvent(Long businessUnitId) {
+        this(businessUnitId, false, false);
+    }
+
+    /**
+     * @return The event for business units added in bulk by this replica, which changes no registered plan
+     */
+    public static MappingsChangedEvent unitsAdded() {
+        return new MappingsChangedEvent(null, false, false);
+    }
+
+    /**
+     * @param businessUnitId The business unit changed by another replica, or null if it added units in bulk
+     * @param planCurrent Whether this replica's plan of the unit already has the changed version
+     * @return The event for a change announced by another replica
+     */
+    public static MappingsChangedEvent remote(Long businessUnitId, boolean planCurrent) {
+        return new MappingsChangedEvent(businessUnitId, true, planCurrent);
+    }
+}
@@ -0,0 +1,180 @@
+package org.flechaamarilla.mapping;
+
+import com.fasterxml.jackson.core.JsonPointer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie of JSON pointers, compiled once per business unit: one over the ticket for its
+ * item arrays and header values, one over an item for its mapped fields.
+ * Lets a transformer decide at every field name or array index, with a single lookup,
+ * whether the value leads to an item array, a captured value or neither, and visit each
+ * needed value once however many mappings read it.
+ * A segment that is a valid array index matches both the property of that name and
+ * the array element at that index, as {@code JsonNode.at} does.
+ */
+final class PathTrie {
+
+    private final Node root = new Node();
+
+    /**
+     * Registers a pointer whose value is an item array
+     *
+     * @param pointer The pointer
+     * @param itemRoot Index of the item root
+     */
+    void addItemRoot(JsonPointer pointer, int itemRoot) {
+        Node node = insert(pointer);
+        node.itemRoot = itemRoot;
+    }
+
+    /**
+     * Registers a pointer whose scalar value is captured into a slot
+     *
+     * @param pointer The pointer
+     * @param slot Index of the value slot
+     */
+    void addValueSlot(JsonPointer pointer, int slot) {
+        Node node = insert(pointer);
+        node.valueSlots = append(node.valueSlots, slot);
+    }
+
+    /**
+     * Precomputes, for every node, the item roots and value slots found below it.
+     * Must be called once after all pointers are added.
+     */
+    PathTrie seal() {
+        root.seal();
+        return this;
+    }
+
+    Node root() {
+        return root;
+    }
+
+    private Node insert(JsonPointer pointer) {
+        Node node = root;
+        for (JsonPointer segment = pointer; !segment.matches(); segment = segment.tail()) {
+            String property = segment.getMatchingProperty();
+            Node child = node.fields.get(property);
+            if (child == null) {
+                child = new Node();
+                node.fields.put(property, child);
+                int index = segment.getMatchingIndex();
+                if (index >= 0) {
+                    node.indexKeys = Arrays.copyOf(node.indexKeys, node.indexKeys.length + 1);
+                    node.indexKeys[node.indexKeys.length - 1] = index;
+                    node.indexNodes = Arrays.copyOf(node.indexNodes, node.indexNodes.length + 1);
+                    node.indexNodes[node.indexNodes.length - 1] = child;
+                }
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private static int[] append(int[] values, int value) {
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    /**
+     * A position in the ticket document
+     */
+    static final class Node {
+
+        private static final int[] NONE = new int[0];
+
+        private final Map<String, Node> fields = new HashMap<>();
+        private int[] indexKeys = NONE;
+        private Node[] indexNodes = new Node[0];
+
+        // The fields again, as arrays for iterating over them
+        private String[] fieldNames = new String[0];
+        private Node[] fieldNodes = new Node[0];
+
+        int itemRoot = -1;
+        int[] valueSlots = NONE;
+
+        // Everything registered at or below this node, reset when the node is seen again
+        int[] subtreeItemRoots = NONE;
+        int[] subtreeValueSlots = NONE;
+
+        Node field(String name) {
+            return fields.isEmpty() ? null : fields.get(name);
+        }
+
+        Node index(int index) {
+            for (int i = 0; i < indexKeys.length; i++) {
+                if (indexKeys[i] == index) {
+                    return indexNodes[i];
+                }
+            }
+            return null;
+        }
+
+        boolean hasFields() {
+            return !fields.isEmpty();
+        }
+
+        boolean hasIndices() {
+            return indexKeys.length > 0;
+        }
+
+        int fieldCount() {
+            return fieldNames.length;
+        }
+
+        String fieldName(int i) {
+            return fieldNames[i];
+        }
+
+        Node fieldNode(int i) {
+            return fieldNodes[i];
+        }
+
+        int indexCount() {
+            return indexKeys.length;
+        }
+
+        int indexKey(int i) {
+            return indexKeys[i];
+        }
+
+        Node indexNode(int i) {
+            return indexNodes[i];
+        }
+
+        private void seal() {
+            List<Integer> roots = new ArrayList<>();
+            List<Integer> slots = new ArrayList<>();
+            if (itemRoot >= 0) {
+                roots.add(itemRoot);
+            }
+            for (int slot : valueSlots) {
+                slots.add(slot);
+            }
+            for (Node child : fields.values()) {
+                child.seal();
+                for (int r : child.subtreeItemRoots) {
+                    roots.add(r);
+                }
+                for (int s : child.subtreeValueSlots) {
+                    slots.add(s);
+                }
+            }
+            fieldNames = fields.keySet().toArray(new String[0]);
+            fieldNodes = new Node[fieldNames.length];
+            for (int i = 0; i < fieldNames.length; i++) {
+                fieldNodes[i] = fields.get(fieldNames[i]);
+            }
+            subtreeItemRoots = roots.stream().mapToInt(Integer::intValue).toArray();
+            subtreeValueSlots = slots.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.flechaamarilla.mapping;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.flechaamarilla.model.ConceptTable;
+import org.flechaamarilla.model.StandardInvoice;
+
+import java.io.IOException;
+
+/**
+ * Ticket transformer that reads the ticket token by token and maps each item as it
+ * streams past, without materializing a {@code JsonNode} tree.
+ * Navigation follows the business unit's compiled {@link PathTrie}s, the ticket's down to
+ * its items and header values and the plan's within each item; everything off the
+ * configured paths is skipped without being decoded.
+ * Produces the same invoice as {@link TreeTicketTransformer} for the same input,
+ * including its handling of repeated keys (last one wins) and non-object items. The one
+ * exception is an object repeated under the same key inside an item: values that only
+ * its earlier copy holds are still mapped.
+ */
+public final class StreamingTicketTransformer implements TicketTransformer {
+
+    private final JsonFactory jsonFactory;
+
+    public StreamingTicketTransformer(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    @Override
+    public void transform(String ticketData, MappingPlan plan, StandardInvoice invoice) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(ticketData)) {
+            mapTicket(parser, plan, invoice);
+        }
+    }
+
+    @Override
+    public void transform(byte[] ticketData, MappingPlan plan, StandardInvoice invoice) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(ticketData)) {
+            mapTicket(parser, plan, invoice);
+        }
+    }
+
+    private void mapTicket(JsonParser parser, MappingPlan plan, StandardInvoice invoice) throws IOException {
+        TicketLayout layout = plan.getLayout();
+        ParseState state = new ParseState(plan, layout.getItemRoots().length);
+
+        JsonToken root = parser.nextToken();
+        if (root != null) {
+            visit(parser, root, layout.getTrie().root(), state);
+        }
+
+        // Concatenate item arrays in configured order, not document order
+        ConceptTable concepts = state.itemLists[0];
+        for (int i = 1; i < state.itemLists.length; i++) {
+            concepts.addAll(state.itemLists[i]);
+        }
+        invoice.setConceptos(concepts);
+
+        for (TicketHeaderField field : TicketHeaderField.values()) {
+            String value = state.values[field.ordinal()];
+            if (value != null) {
+                field.apply(invoice, value);
+            }
+        }
+    }
+
+    private void visit(JsonParser parser, JsonToken token, PathTrie.Node node, ParseState state) throws IOException {
+        // A repeated key replaces everything read from its earlier value, as in the tree model
+        for (int slot : node.subtreeValueSlots) {
+            state.values[slot] = null;
+        }
+        for (int root : node.subtreeItemRoots) {
+            state.itemLists[root].clear();
+        }
+
+        if (node.valueSlots.length > 0 && token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+            String value = JsonTokenValues.asText(parser);
+            for (int slot : node.valueSlots) {
+                state.values[slot] = value;
+            }
+        }
+
+        if (node.itemRoot >= 0 && token == JsonToken.START_ARRAY) {
+            readItems(parser, state, state.itemLists[node.itemRoot]);
+        } else if (token == JsonToken.START_OBJECT && node.hasFields()) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                PathTrie.Node child = node.field(parser.currentName());
+                JsonToken value = parser.nextToken();
+                if (child != null) {
+                    visit(parser, value, child, state);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else if (token == JsonToken.START_ARRAY && node.hasIndices()) {
+            int index = 0;
+            JsonToken value;
+            while ((value = parser.nextToken()) != JsonToken.END_ARRAY) {
+                PathTrie.Node child = node.index(index++);
+                if (child != null) {
+                    visit(parser, value, child, state);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    private void readItems(JsonParser parser, ParseState state, ConceptTable concepts) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            int row = concepts.addRow();
+
+            if (token == JsonToken.START_OBJECT) {
+                readItem(parser, state, concepts, row);
+            } else {
+                parser.skipChildren();
+            }
+
+            TicketTransformer.completeConcept(concepts, row);
+        }
+    }
+
+    private void readItem(JsonParser parser, ParseState state, ConceptTable concepts, int row) throws IOException {
+        ItemScratch scratch = state.scratch;
+        scratch.reset();
+        readObject(parser, state.plan.getItemTrie().root(), state, concepts, row);
+        state.plan.completeItem(concepts, row, scratch);
+    }
+
+    private void readObject(JsonParser parser, PathTrie.Node node, ParseState state, ConceptTable concepts, int row)
+            throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            PathTrie.Node child = node.field(parser.currentName());
+            JsonToken value = parser.nextToken();
+            if (child != null) {
+                readValue(parser, value, child, state, concepts, row);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readValue(JsonParser parser, JsonToken token, PathTrie.Node node, ParseState state,
+                           ConceptTable concepts, int row) throws IOException {
+        if (node.valueSlots.length > 0) {
+            state.plan.applyValue(node.valueSlots, concepts, row, parser, state.scratch);
+        }
+
+        if (token == JsonToken.START_OBJECT && node.hasFields()) {
+            readObject(parser, node, state, concepts, row);
+        } else if (token == JsonToken.START_ARRAY && node.hasIndices()) {
+            int index = 0;
+            JsonToken value;
+            while ((value = parser.nextToken()) != JsonToken.END_ARRAY) {
+                PathTrie.Node child = node.index(index++);
+                if (child != null) {
+                    readValue(parser, value, child, state, concepts, row);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Per-ticket scratch state
+     */
+    private static final class ParseState {
+
+        final MappingPlan plan;
+        final ConceptTable[] itemLists;
+        final String[] values = new String[TicketHeaderField.values().length];
+
+        final ItemScratch scratch;
+
+        ParseState(MappingPlan plan, int itemRoots) {
+            this.plan = plan;
+            this.scratch = new ItemScratch(plan);
+            this.itemLists = new ConceptTable[Math.max(itemRoots, 1)];
+            for (int i = 0; i < itemLists.length; i++) {
+                itemLists[i] = new ConceptTable();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.flechaamarilla.mapping;
+
+import org.flechaamarilla.model.StandardInvoice;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ticket-level (header) values that can be copied onto the invoice
+ */
+public enum TicketHeaderField {
+
+    TICKET_ID("ticketId") {
+        @Override
+        public void apply(StandardInvoice invoice, String value) {
+            invoice.setTicketId(value);
+        }
+    },
+    TICKET_DATE("fechaTicket") {
+        @Override
+        public void apply(StandardInvoice invoice, String value) {
+            invoice.setFechaTicket(value);
+        }
+    },
+    BRANCH("sucursal") {
+        @Override
+        public void apply(StandardInvoice invoice, String value) {
+            invoice.setSucursal(value);
+        }
+    };
+
+    private static final Map<String, TicketHeaderField> BY_STANDARD_NAME = new HashMap<>();
+
+    static {
+        for (TicketHeaderField field : values()) {
+            BY_STANDARD_NAME.put(field.standardName, field);
+        }
+    }
+
+    private final String standardName;
+
+    TicketHeaderField(String standardName) {
+        this.standardName = standardName;
+    }
+
+    /**
+     * @return The standard field name a header mapping targets
+     */
+    public String getStandardName() {
+        return standardName;
+    }
+
+    /**
+     * Sets this header value on the invoice
+     *
+     * @param invoice The invoice to update
+     * @param value The value read from the ticket
+     */
+    public abstract void apply(StandardInvoice invoice, String value);
+
+    /**
+     * Resolves a standard header field name
+     *
+     * @param standardName The standard field name
+     * @return The matching field or null if the name is unknown
+     */
+    public static TicketHeaderField fromStandardName(String standardName) {
+        return standardName == null ? null : BY_STANDARD_NAME.get(standardName);
+    }
+}
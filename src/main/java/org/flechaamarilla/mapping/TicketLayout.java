@@ -0,0 +1,128 @@
+package org.flechaamarilla.mapping;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Where a business unit's tickets keep their line items and header values.
+ * Paths are compiled once, both into {@link JsonPointer}s for direct lookups on the
+ * tree and into a {@link PathTrie} for the streaming transformer.
+ * <p>
+ * Paths are JSON pointers ({@code /products}) or dotted names ({@code data.lineas}).
+ * The items path may list several comma-separated roots; their items are concatenated
+ * in the configured order.
+ */
+@Slf4j
+public final class TicketLayout {
+
+    public static final String DEFAULT_ITEMS_PATH = "/items";
+
+    private final JsonPointer[] itemRoots;
+    private final JsonPointer[] headerPointers;
+    private final PathTrie trie;
+
+    private TicketLayout(JsonPointer[] itemRoots, JsonPointer[] headerPointers) {
+        this.itemRoots = itemRoots;
+        this.headerPointers = headerPointers;
+
+        PathTrie paths = new PathTrie();
+        for (int i = 0; i < itemRoots.length; i++) {
+            paths.addItemRoot(itemRoots[i], i);
+        }
+        for (TicketHeaderField field : TicketHeaderField.values()) {
+            if (headerPointers[field.ordinal()] != null) {
+                paths.addValueSlot(headerPointers[field.ordinal()], field.ordinal());
+            }
+        }
+        this.trie = paths.seal();
+    }
+
+    /**
+     * Compiles a ticket layout
+     *
+     * @param itemsPath Comma-separated paths of the item arrays, null for {@value #DEFAULT_ITEMS_PATH}
+     * @param headerPaths Path of each header value to read; unconfigured values are absent
+     * @return The compiled layout
+     */
+    public static TicketLayout compile(String itemsPath, Map<TicketHeaderField, String> headerPaths) {
+        String paths = itemsPath == null || itemsPath.isBlank() ? DEFAULT_ITEMS_PATH : itemsPath;
+
+        // Item arrays are consumed as a whole, so nothing may be read from inside one
+        Set<String> roots = new LinkedHashSet<>();
+        for (String path : paths.split(",")) {
+            String pointer = toPointer(path.trim()).toString();
+            if (roots.stream().anyMatch(root -> contains(root, pointer) || contains(pointer, root))) {
+                log.warn("Ignoring nested or duplicate item path '{}' in '{}'", path.trim(), paths);
+                continue;
+            }
+            roots.add(pointer);
+        }
+
+        JsonPointer[] headers = new JsonPointer[TicketHeaderField.values().length];
+        for (TicketHeaderField field : TicketHeaderField.values()) {
+            headers[field.ordinal()] = headerPointer(headerPaths.get(field), roots);
+        }
+
+        List<JsonPointer> itemRoots = new ArrayList<>(roots.size());
+        for (String root : roots) {
+            itemRoots.add(JsonPointer.compile(root));
+        }
+        return new TicketLayout(itemRoots.toArray(new JsonPointer[0]), headers);
+    }
+
+    /**
+     * Converts a configured path to a JSON pointer
+     *
+     * @param path A JSON pointer or dotted path
+     * @return The compiled pointer
+     */
+    public static JsonPointer toPointer(String path) {
+        if (path.isEmpty() || path.startsWith("/")) {
+            return JsonPointer.compile(path);
+        }
+
+        StringBuilder pointer = new StringBuilder(path.length() + 1);
+        for (String segment : path.split("\\.")) {
+            pointer.append('/').append(segment.replace("~", "~0").replace("/", "~1"));
+        }
+        return JsonPointer.compile(pointer.toString());
+    }
+
+    private static JsonPointer headerPointer(String path, Set<String> roots) {
+        if (path == null || path.isBlank()) {
+            return null;
+        }
+        JsonPointer pointer = toPointer(path.trim());
+        if (roots.stream().anyMatch(root -> contains(root, pointer.toString()))) {
+            log.warn("Ignoring header path '{}' that points inside an item array", path);
+            return null;
+        }
+        return pointer;
+    }
+
+    private static boolean contains(String outer, String inner) {
+        return inner.equals(outer) || outer.isEmpty() || inner.startsWith(outer + "/");
+    }
+
+    public JsonPointer[] getItemRoots() {
+        return itemRoots;
+    }
+
+    /**
+     * @param field A header field
+     * @return The pointer to read it from, or null if not configured
+     */
+    public JsonPointer getHeaderPointer(TicketHeaderField field) {
+        return headerPointers[field.ordinal()];
+    }
+
+    PathTrie getTrie() {
+        return trie;
+    }
+}
@@ -0,0 +1,17 @@
+package org.flechaamarilla.mapping;
+
+/**
+ * How ticket JSON is turned into invoice concepts
+ */
+public enum TicketParsingMode {
+
+    /**
+     * Materialize the ticket with {@code ObjectMapper.readTree} and walk the node tree
+     */
+    TREE,
+
+    /**
+     * Read the ticket token by token with a {@code JsonParser}, never building the tree
+     */
+    STREAMING
+}
@@ -0,0 +1,49 @@
+package org.flechaamarilla.mapping;
+
+import org.flechaamarilla.model.ConceptTable;
+import org.flechaamarilla.model.StandardInvoice;
+
+import java.io.IOException;
+
+/**
+ * Turns raw ticket data into standardized invoice concepts and header values
+ * using a compiled mapping plan
+ */
+public interface TicketTransformer {
+
+    /**
+     * Extracts and maps the concepts and header values of a ticket onto an invoice
+     *
+     * @param ticketData The ticket as a JSON string
+     * @param plan The business unit's compiled mapping plan
+     * @param invoice The invoice receiving the concepts and header values
+     * @throws IOException If the ticket is not valid JSON
+     */
+    void transform(String ticketData, MappingPlan plan, StandardInvoice invoice) throws IOException;
+
+    /**
+     * Extracts and maps the concepts and header values of a ticket onto an invoice,
+     * reading the ticket's raw UTF-8 bytes without decoding them to a string first
+     *
+     * @param ticketData The ticket as UTF-8 encoded JSON
+     * @param plan The business unit's compiled mapping plan
+     * @param invoice The invoice receiving the concepts and header values
+     * @throws IOException If the ticket is not valid JSON
+     */
+    void transform(byte[] ticketData, MappingPlan plan, StandardInvoice invoice) throws IOException;
+
+    /**
+     * Fills in derived values once all mapped fields of a concept are set
+     *
+     * @param concepts The concepts being mapped
+     * @param row The mapped concept
+     */
+    static void completeConcept(ConceptTable concepts, int row) {
+        // Calculate importe if not set, rounding only the product to cents
+        long valorUnitario = concepts.getValorUnitarioMicros(row);
+        long cantidad = concepts.getCantidadMicros(row);
+        if (concepts.getImporteCents(row) == 0 && cantidad > 0 && valorUnitario > 0) {
+            concepts.setImporteCents(row, ConceptTable.lineAmountCents(cantidad, valorUnitario));
+        }
+    }
+}
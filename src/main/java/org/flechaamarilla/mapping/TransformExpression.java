@@ -0,0 +1,568 @@
+package org.flechaamarilla.mapping;
+
+import com.fasterxml.jackson.core.io.NumberInput;
+import org.flechaamarilla.model.ConceptTable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A field mapping's transform expression, compiled once into a tree of composed lambdas.
+ * <p>
+ * Evaluating it for a ticket line only calls those lambdas: names, function calls, literal
+ * arguments and types are all resolved by {@link #compile(String)}, and sub-expressions made
+ * of literals are folded into constants, so nothing is parsed or looked up per line.
+ * <p>
+ * An expression reads {@code value}, the raw value of the mapping's source field, and the
+ * standard fields of the concept as already mapped ({@code claveProdServ}, {@code descripcion},
+ * {@code cantidad}, {@code unidad}, {@code valorUnitario}, {@code importe}). It supports
+ * {@code + - * /}, parentheses, numbers, {@code 'quoted'} text ({@code ''} escapes a quote) and
+ * the functions {@code trim upper lower lpad rpad substr concat map round abs min max}, e.g.
+ * {@code lpad(trim(value), 8, '0')}, {@code map(value, 'PZA', 'H87', 'KG', 'KGM')} or
+ * {@code round(cantidad * valorUnitario, 2)}. Widths, positions ({@code substr} counts from 0),
+ * digits and translation tables must be literals.
+ * Text used as a number is parsed as {@code JsonNode.asDouble()} would, unreadable text being 0.
+ */
+public final class TransformExpression {
+
+    /**
+     * Numeric form of a compiled expression
+     */
+    @FunctionalInterface
+    interface NumberForm {
+        double evaluate(ConceptTable concepts, int row, String value);
+    }
+
+    /**
+     * Text form of a compiled expression; never returns null
+     */
+    @FunctionalInterface
+    interface TextForm {
+        String evaluate(ConceptTable concepts, int row, String value);
+    }
+
+    private static final int MAX_LENGTH = 1000;
+
+    private final String source;
+    private final boolean numeric;
+    private final NumberForm numberForm;
+    private final TextForm textForm;
+
+    private TransformExpression(String source, Node node) {
+        this.source = source;
+        this.numeric = node.numeric;
+        this.numberForm = node.asNumber();
+        this.textForm = node.asText();
+    }
+
+    /**
+     * Compiles a transform expression
+     *
+     * @param source The expression
+     * @return The compiled expression
+     * @throws IllegalArgumentException If the expression is not valid
+     */
+    public static TransformExpression compile(String source) {
+        if (source == null || source.isBlank()) {
+            throw new IllegalArgumentException("Transform expression is empty");
+        }
+        if (source.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Transform expression is longer than " + MAX_LENGTH + " characters");
+        }
+
+        Parser parser = new Parser(source);
+        Node node = parser.parseExpression();
+        parser.expectEnd();
+        return new TransformExpression(source, node);
+    }
+
+    /**
+     * @return The expression as written
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return Whether the expression yields a number rather than text
+     */
+    public boolean isNumeric() {
+        return numeric;
+    }
+
+    NumberForm numberForm() {
+        return numberForm;
+    }
+
+    TextForm textForm() {
+        return textForm;
+    }
+
+    /**
+     * Converts a result to cents as a mapped amount would be; NaN and infinities become 0
+     */
+    static long toCents(double result) {
+        return Double.isFinite(result) ? ConceptTable.toCents(result) : 0;
+    }
+
+    /**
+     * Converts a result to millionths as a mapped quantity or unit price would be; NaN and infinities become 0
+     */
+    static long toMicros(double result) {
+        return Double.isFinite(result) ? ConceptTable.toMicros(result) : 0;
+    }
+
+    private static double toNumber(String text) {
+        return NumberInput.parseAsDouble(text, 0.0, false);
+    }
+
+    private static String toText(double number) {
+        if (!Double.isFinite(number)) {
+            return "";
+        }
+        if (number == Math.rint(number) && Math.abs(number) < 1e15) {
+            return Long.toString((long) number);
+        }
+        return BigDecimal.valueOf(number).stripTrailingZeros().toPlainString();
+    }
+
+    private static String pad(String text, int width, char padding, boolean left) {
+        if (text.length() >= width) {
+            return text;
+        }
+        StringBuilder padded = new StringBuilder(width);
+        if (!left) {
+            padded.append(text);
+        }
+        for (int i = text.length(); i < width; i++) {
+            padded.append(padding);
+        }
+        if (left) {
+            padded.append(text);
+        }
+        return padded.toString();
+    }
+
+    private static String substring(String text, int start, int length) {
+        int from = Math.min(Math.max(start, 0), text.length());
+        int to = length < 0 ? text.length() : Math.min(text.length(), from + length);
+        return text.substring(from, to);
+    }
+
+    private static double round(double number, double scale) {
+        // Half away from zero, as amounts are rounded to cents
+        return Math.signum(number) * Math.floor(Math.abs(number) * scale + 0.5 + 1e-9) / scale;
+    }
+
+    /**
+     * A compiled sub-expression: one of its two forms, plus its value if it is constant
+     */
+    private static final class Node {
+
+        final boolean numeric;
+        final NumberForm number;
+        final TextForm text;
+        final Object constant;
+
+        private Node(boolean numeric, NumberForm number, TextForm text, Object constant) {
+            this.numeric = numeric;
+            this.number = number;
+            this.text = text;
+            this.constant = constant;
+        }
+
+        static Node number(NumberForm form) {
+            return new Node(true, form, null, null);
+        }
+
+        static Node number(double constant) {
+            return new Node(true, (concepts, row, value) -> constant, null, constant);
+        }
+
+        static Node text(TextForm form) {
+            return new Node(false, null, form, null);
+        }
+
+        static Node text(String constant) {
+            return new Node(false, null, (concepts, row, value) -> constant, constant);
+        }
+
+        /**
+         * Replaces a node computed only from constants by its value
+         */
+        static Node fold(Node node, List<Node> operands) {
+            for (Node operand : operands) {
+                if (operand.constant == null) {
+                    return node;
+                }
+            }
+            return node.numeric
+                    ? number(node.number.evaluate(null, -1, null))
+                    : text(node.text.evaluate(null, -1, null));
+        }
+
+        NumberForm asNumber() {
+            if (numeric) {
+                return number;
+            }
+            if (constant != null) {
+                double parsed = toNumber((String) constant);
+                return (concepts, row, value) -> parsed;
+            }
+            TextForm form = text;
+            return (concepts, row, value) -> toNumber(form.evaluate(concepts, row, value));
+        }
+
+        TextForm asText() {
+            if (!numeric) {
+                return text;
+            }
+            if (constant != null) {
+                String formatted = toText((Double) constant);
+                return (concepts, row, value) -> formatted;
+            }
+            NumberForm form = number;
+            return (concepts, row, value) -> toText(form.evaluate(concepts, row, value));
+        }
+    }
+
+    /**
+     * Recursive descent parser that builds the lambdas as it goes
+     */
+    private static final class Parser {
+
+        private final String source;
+        private int pos;
+
+        Parser(String source) {
+            this.source = source;
+        }
+
+        Node parseExpression() {
+            Node left = parseTerm();
+            while (true) {
+                if (accept('+')) {
+                    left = arithmetic('+', left, parseTerm());
+                } else if (accept('-')) {
+                    left = arithmetic('-', left, parseTerm());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Node parseTerm() {
+            Node left = parseUnary();
+            while (true) {
+                if (accept('*')) {
+                    left = arithmetic('*', left, parseUnary());
+                } else if (accept('/')) {
+                    left = arithmetic('/', left, parseUnary());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Node parseUnary() {
+            if (accept('-')) {
+                Node operand = parseUnary();
+                NumberForm form = operand.asNumber();
+                return Node.fold(Node.number((concepts, row, value) -> -form.evaluate(concepts, row, value)),
+                        List.of(operand));
+            }
+            return parsePrimary();
+        }
+
+        private Node parsePrimary() {
+            skipSpaces();
+            if (pos >= source.length()) {
+                throw error("unexpected end of expression");
+            }
+
+            char ch = source.charAt(pos);
+            if (ch == '(') {
+                pos++;
+                Node inner = parseExpression();
+                expect(')');
+                return inner;
+            }
+            if (ch == '\'') {
+                return Node.text(parseString());
+            }
+            if (Character.isDigit(ch) || ch == '.') {
+                return Node.number(parseNumber());
+            }
+            if (Character.isJavaIdentifierStart(ch)) {
+                int start = pos;
+                String name = parseIdentifier();
+                if (accept('(')) {
+                    return call(name, parseArguments(), start);
+                }
+                return variable(name, start);
+            }
+            throw error("unexpected '" + ch + "'");
+        }
+
+        private List<Node> parseArguments() {
+            List<Node> arguments = new ArrayList<>();
+            if (accept(')')) {
+                return arguments;
+            }
+            do {
+                arguments.add(parseExpression());
+            } while (accept(','));
+            expect(')');
+            return arguments;
+        }
+
+        private String parseString() {
+            StringBuilder text = new StringBuilder();
+            pos++;
+            while (pos < source.length()) {
+                char ch = source.charAt(pos++);
+                if (ch != '\'') {
+                    text.append(ch);
+                } else if (pos < source.length() && source.charAt(pos) == '\'') {
+                    text.append('\'');
+                    pos++;
+                } else {
+                    return text.toString();
+                }
+            }
+            throw error("unterminated text literal");
+        }
+
+        private double parseNumber() {
+            int start = pos;
+            while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                pos++;
+            }
+            try {
+                return Double.parseDouble(source.substring(start, pos));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("invalid number");
+            }
+        }
+
+        private String parseIdentifier() {
+            int start = pos;
+            while (pos < source.length() && Character.isJavaIdentifierPart(source.charAt(pos))) {
+                pos++;
+            }
+            return source.substring(start, pos);
+        }
+
+        private Node variable(String name, int start) {
+            if (name.equals("value")) {
+                return Node.text((concepts, row, value) -> value);
+            }
+
+            ConceptField field = ConceptField.fromStandardName(name);
+            if (field == null) {
+                pos = start;
+                throw error("unknown name '" + name + "', expected value or a standard field name");
+            }
+            return switch (field) {
+                case CLAVE_PROD_SERV -> Node.text((concepts, row, value) -> orEmpty(concepts.getClaveProdServ(row)));
+                case DESCRIPCION -> Node.text((concepts, row, value) -> orEmpty(concepts.getDescripcion(row)));
+                case UNIDAD -> Node.text((concepts, row, value) -> orEmpty(concepts.getUnidad(row)));
+                case CANTIDAD -> Node.number((concepts, row, value) ->
+                        ConceptTable.fromMicros(concepts.getCantidadMicros(row)));
+                case VALOR_UNITARIO -> Node.number((concepts, row, value) ->
+                        ConceptTable.fromMicros(concepts.getValorUnitarioMicros(row)));
+                case IMPORTE -> Node.number((concepts, row, value) ->
+                        ConceptTable.fromCents(concepts.getImporteCents(row)));
+            };
+        }
+
+        private static String orEmpty(String text) {
+            return text == null ? "" : text;
+        }
+
+        private Node arithmetic(char operator, Node left, Node right) {
+            NumberForm a = left.asNumber();
+            NumberForm form;
+            if (right.constant != null && left.constant == null) {
+                // Constant right operands are common (value * 1.16, value / 100) and save a call per line
+                double b = right.numeric ? (Double) right.constant : toNumber((String) right.constant);
+                form = switch (operator) {
+                    case '+' -> (concepts, row, value) -> a.evaluate(concepts, row, value) + b;
+                    case '-' -> (concepts, row, value) -> a.evaluate(concepts, row, value) - b;
+                    case '*' -> (concepts, row, value) -> a.evaluate(concepts, row, value) * b;
+                    default -> (concepts, row, value) -> a.evaluate(concepts, row, value) / b;
+                };
+            } else {
+                NumberForm b = right.asNumber();
+                form = switch (operator) {
+                    case '+' -> (concepts, row, value) -> a.evaluate(concepts, row, value) + b.evaluate(concepts, row, value);
+                    case '-' -> (concepts, row, value) -> a.evaluate(concepts, row, value) - b.evaluate(concepts, row, value);
+                    case '*' -> (concepts, row, value) -> a.evaluate(concepts, row, value) * b.evaluate(concepts, row, value);
+                    default -> (concepts, row, value) -> a.evaluate(concepts, row, value) / b.evaluate(concepts, row, value);
+                };
+            }
+            return Node.fold(Node.number(form), List.of(left, right));
+        }
+
+        private Node call(String name, List<Node> arguments, int start) {
+            Node result = switch (name) {
+                case "trim" -> {
+                    TextForm text = textArgument(name, arguments, 1, 1);
+                    yield Node.text((concepts, row, value) -> text.evaluate(concepts, row, value).trim());
+                }
+                case "upper" -> {
+                    TextForm text = textArgument(name, arguments, 1, 1);
+                    yield Node.text((concepts, row, value) -> text.evaluate(concepts, row, value).toUpperCase(Locale.ROOT));
+                }
+                case "lower" -> {
+                    TextForm text = textArgument(name, arguments, 1, 1);
+                    yield Node.text((concepts, row, value) -> text.evaluate(concepts, row, value).toLowerCase(Locale.ROOT));
+                }
+                case "lpad", "rpad" -> {
+                    TextForm text = textArgument(name, arguments, 2, 3);
+                    int width = constantInt(name, arguments.get(1));
+                    char padding = arguments.size() == 3 ? constantChar(name, arguments.get(2)) : ' ';
+                    boolean left = name.equals("lpad");
+                    yield Node.text((concepts, row, value) -> pad(text.evaluate(concepts, row, value), width, padding, left));
+                }
+                case "substr" -> {
+                    TextForm text = textArgument(name, arguments, 2, 3);
+                    int from = constantInt(name, arguments.get(1));
+                    int length = arguments.size() == 3 ? constantInt(name, arguments.get(2)) : -1;
+                    yield Node.text((concepts, row, value) -> substring(text.evaluate(concepts, row, value), from, length));
+                }
+                case "concat" -> {
+                    checkArity(name, arguments, 1, Integer.MAX_VALUE);
+                    TextForm[] parts = arguments.stream().map(Node::asText).toArray(TextForm[]::new);
+                    yield Node.text((concepts, row, value) -> {
+                        StringBuilder joined = new StringBuilder();
+                        for (TextForm part : parts) {
+                            joined.append(part.evaluate(concepts, row, value));
+                        }
+                        return joined.toString();
+                    });
+                }
+                case "map" -> translation(arguments);
+                case "round" -> {
+                    NumberForm number = numberArgument(name, arguments, 1, 2);
+                    double scale = Math.pow(10, arguments.size() == 2 ? constantInt(name, arguments.get(1)) : 0);
+                    yield Node.number((concepts, row, value) -> round(number.evaluate(concepts, row, value), scale));
+                }
+                case "abs" -> {
+                    NumberForm number = numberArgument(name, arguments, 1, 1);
+                    yield Node.number((concepts, row, value) -> Math.abs(number.evaluate(concepts, row, value)));
+                }
+                case "min", "max" -> {
+                    NumberForm a = numberArgument(name, arguments, 2, 2);
+                    NumberForm b = arguments.get(1).asNumber();
+                    yield name.equals("min")
+                            ? Node.number((concepts, row, value) -> Math.min(a.evaluate(concepts, row, value), b.evaluate(concepts, row, value)))
+                            : Node.number((concepts, row, value) -> Math.max(a.evaluate(concepts, row, value), b.evaluate(concepts, row, value)));
+                }
+                default -> {
+                    pos = start;
+                    throw error("unknown function '" + name + "'");
+                }
+            };
+            return Node.fold(result, arguments);
+        }
+
+        /**
+         * {@code map(text, key1, value1, ..., [default])}: a translation table built once;
+         * text matching no key is kept unless a default is given
+         */
+        private Node translation(List<Node> arguments) {
+            TextForm text = textArgument("map", arguments, 3, Integer.MAX_VALUE);
+            Map<String, String> table = new HashMap<>();
+            int i = 1;
+            for (; i + 1 < arguments.size(); i += 2) {
+                table.put(constantText("map", arguments.get(i)), constantText("map", arguments.get(i + 1)));
+            }
+            if (i < arguments.size()) {
+                String fallback = constantText("map", arguments.get(i));
+                return Node.text((concepts, row, value) -> table.getOrDefault(text.evaluate(concepts, row, value), fallback));
+            }
+            return Node.text((concepts, row, value) -> {
+                String key = text.evaluate(concepts, row, value);
+                return table.getOrDefault(key, key);
+            });
+        }
+
+        private TextForm textArgument(String function, List<Node> arguments, int min, int max) {
+            checkArity(function, arguments, min, max);
+            return arguments.get(0).asText();
+        }
+
+        private NumberForm numberArgument(String function, List<Node> arguments, int min, int max) {
+            checkArity(function, arguments, min, max);
+            return arguments.get(0).asNumber();
+        }
+
+        private void checkArity(String function, List<Node> arguments, int min, int max) {
+            if (arguments.size() < min || arguments.size() > max) {
+                throw error("wrong number of arguments for " + function + "(): expected "
+                        + (min == max ? String.valueOf(min) : max == Integer.MAX_VALUE ? "at least " + min : min + " to " + max)
+                        + ", got " + arguments.size());
+            }
+        }
+
+        private int constantInt(String function, Node argument) {
+            if (argument.constant == null || !argument.numeric) {
+                throw error(function + "() needs a literal number here");
+            }
+            return (int) Math.round((Double) argument.constant);
+        }
+
+        private char constantChar(String function, Node argument) {
+            String text = constantText(function, argument);
+            if (text.length() != 1) {
+                throw error(function + "() pads with a single character");
+            }
+            return text.charAt(0);
+        }
+
+        private String constantText(String function, Node argument) {
+            if (argument.constant == null) {
+                throw error(function + "() needs a literal here");
+            }
+            return argument.numeric ? toText((Double) argument.constant) : (String) argument.constant;
+        }
+
+        void expectEnd() {
+            skipSpaces();
+            if (pos < source.length()) {
+                throw error("unexpected '" + source.charAt(pos) + "'");
+            }
+        }
+
+        private void expect(char expected) {
+            if (!accept(expected)) {
+                throw error("expected '" + expected + "'");
+            }
+        }
+
+        private boolean accept(char expected) {
+            skipSpaces();
+            if (pos < source.length() && source.charAt(pos) == expected) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid transform '" + source + "' at position " + (pos + 1) + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.flechaamarilla.mapping;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import org.flechaamarilla.model.ConceptTable;
+import org.flechaamarilla.model.StandardInvoice;
+
+import java.io.IOException;
+
+/**
+ * Ticket transformer that parses the whole ticket into a {@link JsonNode} tree
+ */
+public final class TreeTicketTransformer implements TicketTransformer {
+
+    private final ObjectMapper objectMapper;
+
+    public TreeTicketTransformer(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void transform(String ticketData, MappingPlan plan, StandardInvoice invoice) throws IOException {
+        map(objectMapper.readTree(ticketData), plan, invoice);
+    }
+
+    @Override
+    public void transform(byte[] ticketData, MappingPlan plan, StandardInvoice invoice) throws IOException {
+        map(parse(ticketData), plan, invoice);
+    }
+
+    /**
+     * Parses a ticket into a node tree, the first half of {@link #transform(byte[], MappingPlan, StandardInvoice)}
+     *
+     * @param ticketData The ticket as UTF-8 encoded JSON
+     * @return The ticket tree
+     * @throws IOException If the ticket is not valid JSON
+     */
+    public JsonNode parse(byte[] ticketData) throws IOException {
+        return objectMapper.readTree(ticketData);
+    }
+
+    /**
+     * Maps a parsed ticket onto an invoice, the second half of {@link #transform(byte[], MappingPlan, StandardInvoice)}
+     *
+     * @param ticketJson The ticket tree
+     * @param plan The business unit's compiled mapping plan
+     * @param invoice The invoice receiving the concepts and header values
+     */
+    public void map(JsonNode ticketJson, MappingPlan plan, StandardInvoice invoice) {
+        if (ticketJson == null) {
+            ticketJson = MissingNode.getInstance();
+        }
+
+        invoice.setConceptos(processTicketConcepts(ticketJson, plan));
+
+        TicketLayout layout = plan.getLayout();
+        for (TicketHeaderField field : TicketHeaderField.values()) {
+            JsonPointer pointer = layout.getHeaderPointer(field);
+            if (pointer != null) {
+                JsonNode value = ticketJson.at(pointer);
+                if (value.isValueNode() && !value.isNull()) {
+                    field.apply(invoice, value.asText());
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes the concepts from a ticket JSON
+     *
+     * @param ticketJson The JSON node containing ticket data
+     * @param plan The compiled mapping plan for the business unit
+     * @return The standardized invoice concepts
+     */
+    public ConceptTable processTicketConcepts(JsonNode ticketJson, MappingPlan plan) {
+        ConceptTable concepts = new ConceptTable();
+        ItemScratch scratch = new ItemScratch(plan);
+
+        // Handle concepts/items from every configured item array
+        for (JsonPointer itemsPointer : plan.getLayout().getItemRoots()) {
+            JsonNode itemsNode = ticketJson.at(itemsPointer);
+            if (!itemsNode.isArray()) {
+                continue;
+            }
+
+            for (JsonNode item : itemsNode) {
+                int row = concepts.addRow();
+
+                // Map fields using the compiled plan; as when streaming, only object items have fields
+                if (item.isObject()) {
+                    plan.applyTo(concepts, row, item, scratch);
+                }
+
+                TicketTransformer.completeConcept(concepts, row);
+            }
+        }
+
+        return concepts;
+    }
+}
@@ -0,0 +1,54 @@
+package org.flechaamarilla.messaging;
+
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.operators.multi.processors.UnicastProcessor;
+import io.smallrye.mutiny.subscription.Cancellable;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Groups items into batches of up to {@code size} elements, flushing a partial batch
+ * once {@code linger} has elapsed since its first item.
+ * Batches are handed to the handler one at a time, in order, on a worker thread.
+ *
+ * @param <T> The item type
+ */
+@Slf4j
+final class BatchAccumulator<T> implements AutoCloseable {
+
+    private final UnicastProcessor<T> items = UnicastProcessor.create();
+    private final Cancellable subscription;
+
+    BatchAccumulator(int size, Duration linger, Consumer<List<T>> handler) {
+        this.subscription = items
+                .group().intoLists().of(size, linger)
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .subscribe().with(batch -> {
+                    try {
+                        handler.accept(batch);
+                    } catch (Exception e) {
+                        log.error("Unexpected error processing batch of {} items", batch.size(), e);
+                    }
+                }, failure -> log.error("Batch accumulator stopped", failure));
+    }
+
+    /**
+     * Adds an item to the current batch. Must not be called concurrently.
+     *
+     * @param item The item
+     */
+    void add(T item) {
+        items.onNext(item);
+    }
+
+    /**
+     * Flushes the pending partial batch and stops accepting items
+     */
+    @Override
+    public void close() {
+        items.onComplete();
+    }
+}
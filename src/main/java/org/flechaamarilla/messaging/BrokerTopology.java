@@ -0,0 +1,208 @@
+package org.flechaamarilla.messaging;
+
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.rabbitmq.RabbitMQClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.flechaamarilla.config.MessagingConfiguration;
+import org.flechaamarilla.metrics.FailureReason;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declares the retry and dead-letter queues the channels cannot declare themselves, and
+ * owns the broker connection used to administer them.
+ * <p>
+ * Retries wait in one queue per backoff tier on the {@code invoice.retry.exchange}; each queue
+ * has a message TTL of its tier's delay and dead-letters expired messages back to the request
+ * exchange, so a delayed request costs the consumer nothing until it is due. The delay of tier
+ * {@code n} is {@code invoice.retry.initial-delay * invoice.retry.multiplier^n}.
+ * <p>
+ * Dead letters are classified: each {@link FailureReason} has its own queue next to the
+ * channel's dead-letter queue, which keeps whatever the broker dead-letters on its own.
+ */
+@ApplicationScoped
+@Slf4j
+public class BrokerTopology {
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    MessagingConfiguration messagingConfiguration;
+
+    @Inject
+    @ConfigProperty(name = "mp.messaging.incoming.invoice-requests-in.exchange.name", defaultValue = "invoice-requests-exchange")
+    String requestExchange;
+
+    @Inject
+    @ConfigProperty(name = "mp.messaging.incoming.invoice-requests-in.routing-keys", defaultValue = "invoice-requests")
+    String requestRoutingKey;
+
+    @Inject
+    @ConfigProperty(name = "mp.messaging.incoming.invoice-requests-in.dead-letter-exchange", defaultValue = "invoice-requests-dlx")
+    String deadLetterExchange;
+
+    @Inject
+    @ConfigProperty(name = "mp.messaging.incoming.invoice-requests-in.dead-letter-queue.name", defaultValue = "invoice-requests-queue.dlq")
+    String deadLetterQueue;
+
+    @Inject
+    @ConfigProperty(name = "mp.messaging.incoming.invoice-requests-in.dead-letter-queue.routing-key", defaultValue = "invoice-requests.dead-letter")
+    String deadLetterRoutingKey;
+
+    @Inject
+    @ConfigProperty(name = "mp.messaging.incoming.invoice-requests-in.queue.name", defaultValue = "invoice-requests-queue")
+    String requestQueue;
+
+    @Inject
+    @ConfigProperty(name = "invoice.retry.exchange", defaultValue = "invoice-requests-retry")
+    String retryExchange;
+
+    @Inject
+    @ConfigProperty(name = "invoice.retry.initial-delay", defaultValue = "PT1S")
+    Duration initialDelay;
+
+    @Inject
+    @ConfigProperty(name = "invoice.retry.multiplier", defaultValue = "4")
+    int multiplier;
+
+    @Inject
+    @ConfigProperty(name = "invoice.retry.tiers", defaultValue = "4")
+    int tiers;
+
+    @Inject
+    @ConfigProperty(name = "invoice.broker.timeout", defaultValue = "PT30S")
+    Duration timeout;
+
+    private final List<Duration> retryDelays = new ArrayList<>();
+    private RabbitMQClient client;
+
+    @PostConstruct
+    void init() {
+        Duration delay = initialDelay;
+        for (int tier = 0; tier < Math.max(tiers, 1); tier++) {
+            retryDelays.add(delay);
+            delay = delay.multipliedBy(multiplier);
+        }
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        try {
+            declare();
+            log.info("Declared {} retry tiers {} and {} dead-letter queues",
+                    retryDelays.size(), retryDelays, FailureReason.values().length);
+        } catch (Exception e) {
+            // The channels still work; failed requests fall back to the channel's dead-letter queue
+            log.error("Could not declare the retry and dead-letter queues", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (client != null) {
+            client.stopAndAwait();
+        }
+    }
+
+    private void declare() {
+        RabbitMQClient admin = client();
+        admin.exchangeDeclare(retryExchange, "direct", true, false).await().atMost(timeout);
+        for (Duration delay : retryDelays) {
+            String routingKey = retryRoutingKey(delay);
+            String queue = requestQueue + "." + routingKey;
+            admin.queueDeclare(queue, true, false, false, new JsonObject()
+                            .put("x-message-ttl", delay.toMillis())
+                            .put("x-dead-letter-exchange", requestExchange)
+                            .put("x-dead-letter-routing-key", requestRoutingKey))
+                    .await().atMost(timeout);
+            admin.queueBind(queue, retryExchange, routingKey).await().atMost(timeout);
+        }
+
+        admin.exchangeDeclare(deadLetterExchange, "topic", true, false).await().atMost(timeout);
+        for (FailureReason reason : FailureReason.values()) {
+            String queue = deadLetterQueue(reason);
+            admin.queueDeclare(queue, true, false, false, new JsonObject()).await().atMost(timeout);
+            admin.queueBind(queue, deadLetterExchange, deadLetterRoutingKey(reason)).await().atMost(timeout);
+        }
+    }
+
+    /**
+     * Gets the broker connection, opening it on first use
+     *
+     * @return The started client, in publisher-confirm mode
+     */
+    synchronized RabbitMQClient client() {
+        if (client == null) {
+            RabbitMQClient created = RabbitMQClient.create(vertx, messagingConfiguration.rabbitMQOptions());
+            created.start().await().atMost(timeout);
+            created.confirmSelect().await().atMost(timeout);
+            client = created;
+        }
+        return client;
+    }
+
+    /**
+     * Gets the routing key of the retry tier for an attempt; attempts past the last tier stay in it
+     *
+     * @param attempt The retry attempt, from 1
+     * @return The routing key on the retry exchange
+     */
+    public String retryRoutingKey(int attempt) {
+        return retryRoutingKey(retryDelays.get(Math.min(Math.max(attempt, 1), retryDelays.size()) - 1));
+    }
+
+    private static String retryRoutingKey(Duration delay) {
+        return "retry-" + delay.toMillis() + "ms";
+    }
+
+    /**
+     * Gets the dead-letter queue of a failure reason
+     *
+     * @param reason The reason, or null for the channel's own dead-letter queue
+     * @return The queue name
+     */
+    public String deadLetterQueue(FailureReason reason) {
+        return reason == null ? deadLetterQueue : deadLetterQueue + "." + reason.tag();
+    }
+
+    /**
+     * Gets the routing key of a failure reason on the dead-letter exchange
+     *
+     * @param reason The reason
+     * @return The routing key
+     */
+    public String deadLetterRoutingKey(FailureReason reason) {
+        return deadLetterRoutingKey + "." + reason.tag();
+    }
+
+    /**
+     * @return The exchange invoice requests are published to
+     */
+    public String getRequestExchange() {
+        return requestExchange;
+    }
+
+    /**
+     * @return The routing key invoice requests are published with
+     */
+    public String getRequestRoutingKey() {
+        return requestRoutingKey;
+    }
+
+    /**
+     * @return Timeout of each broker operation
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+}
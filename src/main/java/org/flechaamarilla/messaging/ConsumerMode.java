@@ -0,0 +1,28 @@
+package org.flechaamarilla.messaging;
+
+/**
+ * How {@link InvoiceRequestConsumer} processes incoming invoice requests
+ */
+public enum ConsumerMode {
+
+    /**
+     * One message at a time, in delivery order
+     */
+    SINGLE,
+
+    /**
+     * Accumulated into batches processed together, grouped by business unit
+     */
+    BATCH,
+
+    /**
+     * In parallel on worker lanes, in delivery order per business unit
+     */
+    CONCURRENT,
+
+    /**
+     * Non-blocking on the event loop, many requests in flight at once, bounded by the
+     * channel's prefetch; completion order is not delivery order
+     */
+    REACTIVE
+}
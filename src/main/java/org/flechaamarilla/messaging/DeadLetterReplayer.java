@@ -0,0 +1,211 @@
+package org.flechaamarilla.messaging;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.BasicProperties;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.mutiny.rabbitmq.RabbitMQClient;
+import io.vertx.mutiny.rabbitmq.RabbitMQMessage;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.flechaamarilla.dto.DeadLetterQueueDTO;
+import org.flechaamarilla.dto.DeadLetterReplayDTO;
+import org.flechaamarilla.metrics.FailureReason;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves dead-lettered invoice requests back to the request exchange, typically once the cause
+ * of their failure has been fixed.
+ * <p>
+ * Requests are replayed one at a time at a fixed rate, so a large backlog does not starve
+ * live traffic. Each request is removed from its dead-letter queue only after the broker
+ * confirms the copy, and starts over with a fresh retry budget.
+ * One replay runs at a time, on a worker thread; its progress is published after every request.
+ */
+@ApplicationScoped
+@Slf4j
+public class DeadLetterReplayer {
+
+    /**
+     * Header with the number of times a request has been replayed
+     */
+    public static final String REPLAY_COUNT_HEADER = "x-replay-count";
+
+    @Inject
+    BrokerTopology topology;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile DeadLetterReplayDTO progress;
+
+    /**
+     * Gets the progress of the running replay, or the result of the last one
+     *
+     * @return The replay progress, or null if nothing was replayed since startup
+     */
+    public DeadLetterReplayDTO getProgress() {
+        return progress;
+    }
+
+    /**
+     * Gets the dead-letter queues and their depth
+     *
+     * @return One entry per failure reason, and one for the channel's own dead-letter queue
+     */
+    public List<DeadLetterQueueDTO> getQueues() {
+        RabbitMQClient client = topology.client();
+        Duration timeout = topology.getTimeout();
+
+        List<DeadLetterQueueDTO> queues = new ArrayList<>();
+        String channelQueue = topology.deadLetterQueue(null);
+        queues.add(new DeadLetterQueueDTO(null, channelQueue, client.messageCount(channelQueue).await().atMost(timeout)));
+        for (FailureReason reason : FailureReason.values()) {
+            String queue = topology.deadLetterQueue(reason);
+            queues.add(new DeadLetterQueueDTO(reason.name(), queue, client.messageCount(queue).await().atMost(timeout)));
+        }
+        return queues;
+    }
+
+    /**
+     * Starts replaying the requests of a dead-letter queue in the background
+     *
+     * @param reason The failure reason whose queue to replay, or null for the channel's own dead-letter queue
+     * @param limit Maximum number of requests to replay
+     * @param ratePerSecond Requests replayed per second
+     * @return The progress of the replay just started, or null if another replay is running
+     * @throws IllegalArgumentException If the limit is negative or the rate is not positive
+     */
+    public DeadLetterReplayDTO startReplay(FailureReason reason, int limit, double ratePerSecond) {
+        if (limit < 0 || ratePerSecond <= 0) {
+            throw new IllegalArgumentException("limit must not be negative and rate must be positive");
+        }
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+
+        ReplayRun run = new ReplayRun(topology.deadLetterQueue(reason));
+        DeadLetterReplayDTO started = publish(run, "RUNNING");
+        try {
+            Infrastructure.getDefaultWorkerPool().execute(() -> {
+                try {
+                    replay(run, limit, ratePerSecond);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        return started;
+    }
+
+    private void replay(ReplayRun run, int limit, double ratePerSecond) {
+        RabbitMQClient client = topology.client();
+        Duration timeout = topology.getTimeout();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+
+        long nextAt = System.nanoTime();
+        try {
+            while (run.replayed < limit) {
+                // Pace the replay; the first message goes right away
+                long wait = nextAt - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                nextAt += intervalNanos;
+
+                RabbitMQMessage message = client.basicGet(run.queue, false).await().atMost(timeout);
+                if (message == null) {
+                    break;
+                }
+                long deliveryTag = message.envelope().getDeliveryTag();
+                try {
+                    client.basicPublish(topology.getRequestExchange(), topology.getRequestRoutingKey(),
+                                    replayProperties(message.properties()), message.body())
+                            .await().atMost(timeout);
+                    client.waitForConfirms(timeout.toMillis()).await().atMost(timeout);
+                } catch (RuntimeException e) {
+                    client.basicNack(deliveryTag, false, true).await().atMost(timeout);
+                    throw e;
+                }
+                client.basicAck(deliveryTag, false).await().atMost(timeout);
+                run.replayed++;
+                publish(run, "RUNNING");
+            }
+            run.remaining = client.messageCount(run.queue).await().atMost(timeout);
+        } catch (Exception e) {
+            log.error("Replay of {} failed after {} invoice requests", run.queue, run.replayed, e);
+            run.error = e.getMessage();
+            publish(run, "FAILED");
+            return;
+        }
+
+        DeadLetterReplayDTO result = publish(run, "COMPLETED");
+        log.info("Replayed {} invoice requests from {} in {} ms, {} remaining",
+                result.getReplayed(), run.queue, result.getElapsedMillis(), result.getRemaining());
+    }
+
+    private DeadLetterReplayDTO publish(ReplayRun run, String status) {
+        DeadLetterReplayDTO snapshot = new DeadLetterReplayDTO(status, run.queue, run.startedAt,
+                Duration.between(run.startedAt, Instant.now()).toMillis(),
+                run.replayed, run.remaining, run.error);
+        progress = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Builds the properties of a replayed request: the original ones, without the retry count,
+     * the failure classification and the broker's death history, with the replay counted
+     *
+     * @param original Properties of the dead-lettered message
+     * @return Properties of the replayed message
+     */
+    private static AMQP.BasicProperties replayProperties(BasicProperties original) {
+        Map<String, Object> headers = new HashMap<>();
+        if (original.getHeaders() != null) {
+            headers.putAll(original.getHeaders());
+        }
+        headers.remove(FailureRouter.RETRY_COUNT_HEADER);
+        headers.remove(FailureRouter.ERROR_CODE_HEADER);
+        headers.remove(FailureRouter.ERROR_MESSAGE_HEADER);
+        headers.remove("x-death");
+        Object replays = headers.get(REPLAY_COUNT_HEADER);
+        headers.put(REPLAY_COUNT_HEADER, replays instanceof Number count ? count.intValue() + 1 : 1);
+
+        return new AMQP.BasicProperties.Builder()
+                .contentType(original.getContentType())
+                .messageId(original.getMessageId())
+                .correlationId(original.getCorrelationId())
+                .deliveryMode(2)
+                .timestamp(new Date())
+                .headers(headers)
+                .build();
+    }
+
+    /**
+     * Counters of one replay
+     */
+    private static final class ReplayRun {
+
+        final String queue;
+        final Instant startedAt = Instant.now();
+        int replayed;
+        Long remaining;
+        String error;
+
+        ReplayRun(String queue) {
+            this.queue = queue;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.flechaamarilla.messaging;
+
+import io.smallrye.reactive.messaging.rabbitmq.IncomingRabbitMQMetadata;
+import io.smallrye.reactive.messaging.rabbitmq.OutgoingRabbitMQMetadata;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.flechaamarilla.exception.InvoiceProcessingException;
+import org.flechaamarilla.metrics.FailureReason;
+import org.flechaamarilla.metrics.InvoiceMetrics;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Settles invoice request messages that produced no invoice.
+ * <p>
+ * A transient failure ({@link FailureReason#isRetryable()}) sends the request to the retry
+ * tier of its attempt, from where it comes back to the request queue after the tier's delay.
+ * A permanent failure, or a transient one after {@code invoice.retry.max-attempts} retries, sends
+ * the request to the dead-letter queue of its reason, with the {@value #ERROR_CODE_HEADER},
+ * {@value #ERROR_MESSAGE_HEADER} and {@value #RETRY_COUNT_HEADER} headers set.
+ * <p>
+ * Either way the source message is acknowledged only once the broker confirms the copy, so
+ * poison messages leave the request queue at once instead of being redelivered; if the copy
+ * cannot be published the source is rejected to the channel's dead-letter queue.
+ */
+@ApplicationScoped
+@Slf4j
+public class FailureRouter {
+
+    /**
+     * Header with the number of retries a request has been through
+     */
+    public static final String RETRY_COUNT_HEADER = "x-retry-count";
+
+    /**
+     * Header with the {@link FailureReason} of the last failure
+     */
+    public static final String ERROR_CODE_HEADER = "x-error-code";
+
+    /**
+     * Header describing the last failure
+     */
+    public static final String ERROR_MESSAGE_HEADER = "x-error-message";
+
+    @Inject
+    BrokerTopology topology;
+
+    @Inject
+    InvoiceMetrics metrics;
+
+    @Inject
+    @Channel("invoice-retries")
+    Emitter<String> retryEmitter;
+
+    @Inject
+    @Channel("invoice-dead-letters")
+    Emitter<String> deadLetterEmitter;
+
+    @Inject
+    @ConfigProperty(name = "invoice.retry.max-attempts", defaultValue = "5")
+    int maxAttempts;
+
+    /**
+     * Retries or dead-letters a request whose processing failed
+     *
+     * @param source The request message
+     * @param failure Why it produced no invoice
+     */
+    public void route(Message<String> source, InvoiceProcessingException failure) {
+        route(source, failure.getReason(), failure.getMessage());
+    }
+
+    /**
+     * Retries or dead-letters a request that produced no invoice
+     *
+     * @param source The request message
+     * @param reason Why it produced no invoice
+     * @param detail Description of the failure
+     */
+    public void route(Message<String> source, FailureReason reason, String detail) {
+        int retries = retryCount(source);
+        if (reason.isRetryable() && retries < maxAttempts) {
+            retry(source, reason, retries + 1);
+        } else {
+            deadLetter(source, reason, detail, retries);
+        }
+    }
+
+    private void retry(Message<String> source, FailureReason reason, int attempt) {
+        log.warn("Retrying invoice request after {} (attempt {} of {})", reason, attempt, maxAttempts);
+        metrics.retried(reason);
+        OutgoingRabbitMQMetadata metadata = OutgoingRabbitMQMetadata.builder()
+                .withRoutingKey(topology.retryRoutingKey(attempt))
+                .withContentType("application/json")
+                .withTimestamp(ZonedDateTime.now())
+                .withHeader(RETRY_COUNT_HEADER, attempt)
+                .withHeader(ERROR_CODE_HEADER, reason.name())
+                .build();
+        retryEmitter.send(linkedTo(source, metadata));
+    }
+
+    private void deadLetter(Message<String> source, FailureReason reason, String detail, int retries) {
+        log.error("Dead-lettering invoice request after {} ({} retries): {}", reason, retries, detail);
+        metrics.deadLettered(reason);
+        OutgoingRabbitMQMetadata metadata = OutgoingRabbitMQMetadata.builder()
+                .withRoutingKey(topology.deadLetterRoutingKey(reason))
+                .withContentType("application/json")
+                .withTimestamp(ZonedDateTime.now())
+                .withHeader(RETRY_COUNT_HEADER, retries)
+                .withHeader(ERROR_CODE_HEADER, reason.name())
+                .withHeader(ERROR_MESSAGE_HEADER, detail != null ? detail : reason.name())
+                .build();
+        deadLetterEmitter.send(linkedTo(source, metadata));
+    }
+
+    private static Message<String> linkedTo(Message<String> source, OutgoingRabbitMQMetadata metadata) {
+        return Message.of(source.getPayload())
+                .addMetadata(metadata)
+                .withAck(source::ack)
+                .withNack(source::nack);
+    }
+
+    /**
+     * Gets how many times a request has been retried
+     *
+     * @param message The request message
+     * @return The value of its {@value #RETRY_COUNT_HEADER} header, 0 if absent
+     */
+    static int retryCount(Message<?> message) {
+        return message.getMetadata(IncomingRabbitMQMetadata.class)
+                .map(metadata -> metadata.getHeaders().get(RETRY_COUNT_HEADER))
+                .filter(Number.class::isInstance)
+                .map(count -> ((Number) count).intValue())
+                .orElse(0);
+    }
+}
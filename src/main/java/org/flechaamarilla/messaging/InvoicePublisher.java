@@ -0,0 +1,174 @@
+package org.flechaamarilla.messaging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.vertx.core.Context;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.OnOverflow;
+import org.flechaamarilla.metrics.FailureReason;
+import org.flechaamarilla.metrics.InvoiceMetrics;
+import org.flechaamarilla.metrics.PipelineStage;
+import org.flechaamarilla.model.StandardInvoice;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes invoices to the {@code invoice-data} channel with a bounded number in flight.
+ * <p>
+ * With {@code publish-confirms} enabled on the channel, an outgoing message is acknowledged only
+ * once the broker confirms it; the request it came from is acknowledged at that moment, and
+ * handed to the {@link FailureRouter} if the broker refuses it, so no invoice is lost silently. Up to
+ * {@code invoice.publish.max-in-flight} invoices may be between the emitter and a confirm;
+ * beyond that the {@link PublishOverflowStrategy} applies.
+ */
+@ApplicationScoped
+@Slf4j
+public class InvoicePublisher {
+
+    @Inject
+    MessagingCodec messagingCodec;
+
+    @Inject
+    InvoiceMetrics metrics;
+
+    @Inject
+    FailureRouter failureRouter;
+
+    // Bounded by the in-flight permits below rather than by the emitter, whose buffer
+    // size can only be set at compile time
+    @Inject
+    @Channel("invoice-data")
+    @OnOverflow(OnOverflow.Strategy.UNBOUNDED_BUFFER)
+    Emitter<byte[]> invoiceDataEmitter;
+
+    @Inject
+    @ConfigProperty(name = "invoice.publish.max-in-flight", defaultValue = "1024")
+    int maxInFlight;
+
+    @Inject
+    @ConfigProperty(name = "invoice.publish.overflow-strategy", defaultValue = "BLOCK")
+    PublishOverflowStrategy overflowStrategy;
+
+    @Inject
+    @ConfigProperty(name = "invoice.publish.block-timeout", defaultValue = "PT30S")
+    Duration blockTimeout;
+
+    @Inject
+    @ConfigProperty(name = "invoice.logging.payload-level", defaultValue = "INFO")
+    PayloadLog.Level payloadLogLevel;
+
+    @Inject
+    @ConfigProperty(name = "invoice.logging.payload-sample-rate", defaultValue = "1.0")
+    double payloadSampleRate;
+
+    private Semaphore inFlight;
+    private PayloadLog payloadLog;
+
+    @PostConstruct
+    void init() {
+        inFlight = new Semaphore(maxInFlight);
+        payloadLog = new PayloadLog(log, payloadLogLevel, payloadSampleRate);
+        metrics.inFlightGauge(() -> maxInFlight - inFlight.availablePermits());
+        log.info("Publishing invoices with up to {} in flight, overflow strategy {}", maxInFlight, overflowStrategy);
+    }
+
+    /**
+     * Serializes and publishes an invoice, acknowledging the source message once the broker has it
+     *
+     * @param source The message the invoice was produced from
+     * @param businessUnitId The business unit of the request
+     * @param invoice The invoice
+     * @return True if an invoice was published
+     */
+    public boolean publish(Message<String> source, Long businessUnitId, StandardInvoice invoice) {
+        // Serialize the result in the broker wire format
+        byte[] encodedInvoice;
+        long start = System.nanoTime();
+        try {
+            encodedInvoice = messagingCodec.encodeInvoice(invoice);
+        } catch (JsonProcessingException e) {
+            log.error("Error serializing invoice", e);
+            metrics.failure(FailureReason.PUBLISH_ERROR, businessUnitId);
+            failureRouter.route(source, FailureReason.PUBLISH_ERROR, "Error serializing invoice: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.record(PipelineStage.SERIALIZE, start);
+        }
+        metrics.payloadSize(InvoiceMetrics.Payload.INVOICE, encodedInvoice.length);
+
+        boolean bounded = overflowStrategy != PublishOverflowStrategy.UNBOUNDED;
+        if (bounded && !acquire()) {
+            log.warn("{} invoices awaiting broker confirms: deferring request of business unit {}",
+                    maxInFlight, businessUnitId);
+            metrics.failure(FailureReason.PUBLISH_OVERFLOW, businessUnitId);
+            failureRouter.route(source, FailureReason.PUBLISH_OVERFLOW, "Invoice publishing is saturated");
+            return false;
+        }
+
+        // Send to the output queue; the request is settled when the broker settles the invoice
+        long sentAt = System.nanoTime();
+        try {
+            invoiceDataEmitter.send(messagingCodec.invoiceMessage(encodedInvoice)
+                    .withAck(() -> {
+                        if (bounded) {
+                            inFlight.release();
+                        }
+                        metrics.record(PipelineStage.PUBLISH, sentAt);
+                        return source.ack();
+                    })
+                    .withNack(reason -> {
+                        if (bounded) {
+                            inFlight.release();
+                        }
+                        log.error("Broker rejected invoice {}-{}", invoice.getSerie(), invoice.getFolio(), reason);
+                        metrics.failure(FailureReason.PUBLISH_ERROR, businessUnitId);
+                        failureRouter.route(source, FailureReason.PUBLISH_ERROR, "Broker rejected invoice: " + reason.getMessage());
+                        return CompletableFuture.completedFuture(null);
+                    }));
+        } catch (RuntimeException e) {
+            // Never handed to the channel (no subscriber, channel cancelled...), so neither callback will run
+            if (bounded) {
+                inFlight.release();
+            }
+            log.error("Error sending invoice {}-{}", invoice.getSerie(), invoice.getFolio(), e);
+            metrics.failure(FailureReason.PUBLISH_ERROR, businessUnitId);
+            failureRouter.route(source, FailureReason.PUBLISH_ERROR, "Error sending invoice: " + e.getMessage());
+            return false;
+        }
+        if (payloadLog.sample()) {
+            payloadLog.log("Processed invoice sent to queue: {}", messagingCodec.describe(encodedInvoice));
+        }
+        return true;
+    }
+
+    /**
+     * @return Invoices published and not yet confirmed by the broker
+     */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    private boolean acquire() {
+        if (inFlight.tryAcquire()) {
+            return true;
+        }
+        if (overflowStrategy != PublishOverflowStrategy.BLOCK || Context.isOnEventLoopThread()) {
+            return false;
+        }
+        try {
+            return inFlight.tryAcquire(blockTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
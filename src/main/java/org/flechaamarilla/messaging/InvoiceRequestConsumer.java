@@ -2,18 +2,58 @@ package org.flechaamarilla.messaging;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.reactive.messaging.rabbitmq.IncomingRabbitMQMetadata;
+import io.smallrye.reactive.messaging.rabbitmq.RabbitMQRejectMetadata;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
-import org.eclipse.microprofile.reactive.messaging.Channel;
-import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.flechaamarilla.exception.InvoiceProcessingException;
+import org.flechaamarilla.metrics.FailureReason;
+import org.flechaamarilla.metrics.InvoiceMetrics;
+import org.flechaamarilla.metrics.PipelineStage;
 import org.flechaamarilla.model.InvoiceRequest;
 import org.flechaamarilla.model.StandardInvoice;
+import org.flechaamarilla.service.InvoiceOutcome;
 import org.flechaamarilla.service.InvoiceProcessorService;
 
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 /**
- * Consumes messages from RabbitMQ, processes them, and sends the result to another queue
+ * Consumes messages from RabbitMQ, processes them, and sends the result to another queue.
+ * Each incoming message is acknowledged once its invoice has been published, or once the
+ * {@link FailureRouter} has moved it to a retry tier or a dead-letter queue.
+ * <p>
+ * The processing mode is set by {@code invoice.consumer.mode}:
+ * <ul>
+ *     <li>{@code single}: one message at a time, as delivered</li>
+ *     <li>{@code batch}: messages are accumulated up to {@code invoice.consumer.batch.size} or for at most
+ *     {@code invoice.consumer.batch.linger}, then processed together grouped by business unit</li>
+ *     <li>{@code concurrent}: messages are processed in parallel on {@code invoice.consumer.concurrent.lanes}
+ *     worker lanes, keeping delivery order per business unit so folios stay sequential</li>
+ *     <li>{@code reactive}: messages are processed without blocking on the event loop through
+ *     {@link InvoiceProcessorService#processInvoiceRequestReactive}, with up to the prefetch in flight</li>
+ * </ul>
+ * In every mode the number of unacknowledged messages in flight is bounded by the channel's
+ * {@code max-outstanding-messages} (prefetch). Invoices are published through {@link InvoicePublisher},
+ * which settles each message when the broker confirms its invoice.
+ * <p>
+ * Deserialization is timed in {@link InvoiceMetrics}, together with
+ * queue lag and payload sizes. Payloads are logged at {@code invoice.logging.payload-level}, for a
+ * {@code invoice.logging.payload-sample-rate} fraction of messages.
  */
 @ApplicationScoped
 @Slf4j
@@ -26,41 +66,307 @@ public class InvoiceRequestConsumer {
     InvoiceProcessorService invoiceProcessorService;
 
     @Inject
-    @Channel("invoice-data")
-    Emitter<String> invoiceDataEmitter;
+    InvoicePublisher invoicePublisher;
+
+    @Inject
+    FailureRouter failureRouter;
+
+    @Inject
+    InvoiceMetrics metrics;
+
+    @Inject
+    @ConfigProperty(name = "invoice.consumer.mode", defaultValue = "SINGLE")
+    ConsumerMode mode;
+
+    @Inject
+    @ConfigProperty(name = "invoice.consumer.batch.size", defaultValue = "100")
+    int batchSize;
+
+    @Inject
+    @ConfigProperty(name = "invoice.consumer.batch.linger", defaultValue = "50ms")
+    Duration batchLinger;
+
+    @Inject
+    @ConfigProperty(name = "invoice.consumer.concurrent.lanes", defaultValue = "16")
+    int concurrentLanes;
+
+    @Inject
+    @ConfigProperty(name = "invoice.consumer.concurrent.virtual-threads", defaultValue = "true")
+    boolean virtualThreads;
+
+    @Inject
+    @ConfigProperty(name = "invoice.logging.payload-level", defaultValue = "INFO")
+    PayloadLog.Level payloadLogLevel;
+
+    @Inject
+    @ConfigProperty(name = "invoice.logging.payload-sample-rate", defaultValue = "1.0")
+    double payloadSampleRate;
+
+    private PayloadLog payloadLog;
+    private BatchAccumulator<PendingRequest> batches;
+    private StripedExecutor workers;
+
+    @PostConstruct
+    void init() {
+        payloadLog = new PayloadLog(log, payloadLogLevel, payloadSampleRate);
+        if (mode == ConsumerMode.BATCH) {
+            batches = new BatchAccumulator<>(batchSize, batchLinger, this::processBatch);
+            log.info("Batch consumption enabled: up to {} messages, linger {} ms", batchSize, batchLinger.toMillis());
+        } else if (mode == ConsumerMode.CONCURRENT) {
+            workers = new StripedExecutor(concurrentLanes, virtualThreads);
+            log.info("Concurrent consumption enabled: {} lanes on {} threads",
+                    concurrentLanes, virtualThreads ? "virtual" : "platform");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (batches != null) {
+            batches.close();
+        }
+        if (workers != null) {
+            workers.close();
+        }
+    }
 
     /**
      * Receives message from the invoice-requests queue, processes it, and sends result to invoice-data queue
      *
-     * @param message The JSON message containing an invoice request
+     * @param message The message containing a JSON invoice request
+     * @return Completion of the hand-off; acknowledgement happens once the result is published
      */
     @Incoming("invoice-requests-in")
-    public void processInvoiceRequest(String message) {
+    public Uni<Void> processInvoiceRequest(Message<String> message) {
+        switch (mode) {
+            case BATCH:
+                batches.add(new PendingRequest(message, System.nanoTime()));
+                return Uni.createFrom().voidItem();
+            case CONCURRENT:
+                dispatch(message);
+                return Uni.createFrom().voidItem();
+            case REACTIVE:
+                processReactive(message);
+                return Uni.createFrom().voidItem();
+            default:
+                return Uni.createFrom().<Void>item(() -> {
+                            processSingle(message);
+                            return null;
+                        })
+                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        }
+    }
+
+    /**
+     * Processes one message on its own
+     *
+     * @param message The message containing a JSON invoice request
+     */
+    private void processSingle(Message<String> message) {
+        // Deserialize the message
+        InvoiceRequest request = readRequest(message);
+        if (request != null) {
+            process(message, request);
+        }
+    }
+
+    /**
+     * Hands a message to the worker lane of its business unit
+     *
+     * @param message The message containing a JSON invoice request
+     */
+    private void dispatch(Message<String> message) {
+        // Deserialized up front: the business unit picks the lane
+        InvoiceRequest request = readRequest(message);
+        if (request != null) {
+            workers.execute(request.getUnidadNegocio(), () -> process(message, request), () -> requeue(message));
+        }
+    }
+
+    /**
+     * Returns a message that will not be processed by this replica to the request queue
+     *
+     * @param message The message containing a JSON invoice request
+     */
+    private void requeue(Message<String> message) {
+        message.nack(new IllegalStateException("Invoice request consumer is shutting down"),
+                Metadata.of(new RabbitMQRejectMetadata(true)));
+    }
+
+    /**
+     * Starts non-blocking processing of a message; the message is acknowledged when its
+     * invoice is published, without holding up the next delivery
+     *
+     * @param message The message containing a JSON invoice request
+     */
+    private void processReactive(Message<String> message) {
+        InvoiceRequest request = readRequest(message);
+        if (request == null) {
+            return;
+        }
+
+        invoiceProcessorService.processInvoiceRequestReactive(request)
+                .subscribe().with(
+                        invoice -> invoicePublisher.publish(message, request.getUnidadNegocio(), invoice),
+                        failure -> fail(message, request.getUnidadNegocio(), failure));
+    }
+
+    /**
+     * Deserializes the request of a message, dead-lettering the message if it is unreadable
+     *
+     * @param message The message containing a JSON invoice request
+     * @return The request, or null if the message was unreadable
+     */
+    private InvoiceRequest readRequest(Message<String> message) {
+        recordQueueLag(message);
+        String payload = message.getPayload();
+        metrics.payloadSize(InvoiceMetrics.Payload.REQUEST, utf8Length(payload));
+        if (payloadLog.sample()) {
+            payloadLog.log("Received invoice request: {}", payload);
+        }
+
+        long start = System.nanoTime();
         try {
-            log.info("Received invoice request: {}", message);
+            return objectMapper.readValue(payload, InvoiceRequest.class);
+        } catch (JsonProcessingException e) {
+            log.error("Error processing JSON message", e);
+            metrics.failure(FailureReason.INVALID_REQUEST, null);
+            failureRouter.route(message, FailureReason.INVALID_REQUEST, e.getOriginalMessage());
+            return null;
+        } finally {
+            metrics.record(PipelineStage.DESERIALIZE, start);
+        }
+    }
 
-            // Deserialize the message
-            InvoiceRequest request = objectMapper.readValue(message, InvoiceRequest.class);
+    /**
+     * Records how long a message waited in the queue, if its publisher set a timestamp
+     *
+     * @param message The incoming message
+     */
+    private void recordQueueLag(Message<String> message) {
+        message.getMetadata(IncomingRabbitMQMetadata.class)
+                .flatMap(metadata -> metadata.getTimestamp(ZoneOffset.UTC))
+                .ifPresent(timestamp -> metrics.queueLag(System.currentTimeMillis() - timestamp.toInstant().toEpochMilli()));
+    }
 
+    /**
+     * Gets the size of a payload as it was received, without encoding it again
+     *
+     * @param payload The decoded payload
+     * @return Its length in UTF-8 bytes
+     */
+    private static long utf8Length(String payload) {
+        long bytes = 0;
+        for (int i = 0; i < payload.length(); i++) {
+            char c = payload.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < payload.length()
+                    && Character.isLowSurrogate(payload.charAt(i + 1))) {
+                // A surrogate pair is one 4-byte code point
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Processes a deserialized request and publishes its invoice
+     *
+     * @param message The message the request came from
+     * @param request The invoice request
+     */
+    private void process(Message<String> message, InvoiceRequest request) {
+        try {
             // Process the request
             StandardInvoice invoice = invoiceProcessorService.processInvoiceRequest(request);
 
-            if (invoice == null) {
-                log.error("Failed to process invoice request");
-                return;
+            invoicePublisher.publish(message, request.getUnidadNegocio(), invoice);
+        } catch (Exception e) {
+            fail(message, request.getUnidadNegocio(), e);
+        }
+    }
+
+    /**
+     * Hands a message whose request produced no invoice to the {@link FailureRouter}
+     *
+     * @param message The message the request came from
+     * @param businessUnitId The business unit of the request
+     * @param failure Why there is no invoice
+     */
+    private void fail(Message<String> message, Long businessUnitId, Throwable failure) {
+        if (failure instanceof InvoiceProcessingException processingFailure) {
+            // Already logged and counted where it happened
+            failureRouter.route(message, processingFailure);
+            return;
+        }
+        log.error("Unexpected error processing message of business unit {}", businessUnitId, failure);
+        // The request's business unit may not exist, so it is not used as a tag
+        metrics.failure(FailureReason.UNEXPECTED, null);
+        failureRouter.route(message, FailureReason.UNEXPECTED, String.valueOf(failure.getMessage()));
+    }
+
+    /**
+     * Processes a batch of messages, grouped by business unit so each unit's
+     * data and mappings are resolved once per group
+     *
+     * @param batch The accumulated messages
+     */
+    private void processBatch(List<PendingRequest> batch) {
+        long start = System.nanoTime();
+
+        Map<Long, List<PendingRequest>> byUnit = new LinkedHashMap<>();
+        for (PendingRequest pending : batch) {
+            pending.request = readRequest(pending.message);
+            if (pending.request != null) {
+                byUnit.computeIfAbsent(pending.request.getUnidadNegocio(), unit -> new ArrayList<>()).add(pending);
+            }
+        }
+
+        int published = 0;
+        for (Map.Entry<Long, List<PendingRequest>> group : byUnit.entrySet()) {
+            List<PendingRequest> pendings = group.getValue();
+            List<InvoiceRequest> requests = new ArrayList<>(pendings.size());
+            for (PendingRequest pending : pendings) {
+                requests.add(pending.request);
             }
 
-            // Serialize the result
-            String invoiceJson = objectMapper.writeValueAsString(invoice);
+            List<InvoiceOutcome> outcomes = invoiceProcessorService.processInvoiceRequests(group.getKey(), requests);
 
-            // Send to the output queue
-            invoiceDataEmitter.send(invoiceJson);
-            log.info("Processed invoice sent to queue: {}", invoiceJson);
+            for (int i = 0; i < pendings.size(); i++) {
+                InvoiceOutcome outcome = outcomes.get(i);
+                if (!outcome.isSuccess()) {
+                    failureRouter.route(pendings.get(i).message, outcome.failure());
+                } else if (invoicePublisher.publish(pendings.get(i).message, group.getKey(), outcome.invoice())) {
+                    published++;
+                }
+            }
+        }
 
-        } catch (JsonProcessingException e) {
-            log.error("Error processing JSON message", e);
-        } catch (Exception e) {
-            log.error("Unexpected error processing message", e);
+        long end = System.nanoTime();
+        long elapsedMicros = Math.max(TimeUnit.NANOSECONDS.toMicros(end - start), 1);
+        long maxLatencyMs = TimeUnit.NANOSECONDS.toMillis(end - batch.get(0).receivedAt);
+        log.info("Processed batch of {} invoice requests ({} published, {} business units) in {} ms: {} msg/s, max latency {} ms",
+                batch.size(), published, byUnit.size(), elapsedMicros / 1000,
+                batch.size() * 1_000_000L / elapsedMicros, maxLatencyMs);
+    }
+
+    /**
+     * A message waiting in the current batch
+     */
+    private static final class PendingRequest {
+
+        final Message<String> message;
+        final long receivedAt;
+        InvoiceRequest request;
+
+        PendingRequest(Message<String> message, long receivedAt) {
+            this.message = message;
+            this.receivedAt = receivedAt;
         }
     }
-}
\ No newline at end of file
+}
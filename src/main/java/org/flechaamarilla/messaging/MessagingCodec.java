@@ -0,0 +1,120 @@
+package org.flechaamarilla.messaging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.smallrye.reactive.messaging.rabbitmq.OutgoingRabbitMQMetadata;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.flechaamarilla.model.StandardInvoice;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+
+/**
+ * Serialization for the broker channels, independent of the pretty-printing
+ * {@link ObjectMapper} used by the REST endpoints.
+ * Invoices go out in {@code invoice.messaging.wire-format} with a matching content-type
+ * header so consumers can pick the decoder; requests go out as compact JSON text.
+ */
+@ApplicationScoped
+public class MessagingCodec {
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    @ConfigProperty(name = "invoice.messaging.wire-format", defaultValue = "JSON")
+    WireFormat wireFormat;
+
+    private ObjectMapper compactJsonMapper;
+    private ObjectWriter invoiceWriter;
+    private OutgoingRabbitMQMetadata invoiceMetadata;
+
+    @PostConstruct
+    void init() {
+        compactJsonMapper = objectMapper.copy().disable(SerializationFeature.INDENT_OUTPUT);
+
+        ObjectMapper invoiceMapper;
+        switch (wireFormat) {
+            case CBOR:
+                invoiceMapper = new ObjectMapper(new CBORFactory());
+                break;
+            case SMILE:
+                invoiceMapper = new ObjectMapper(new SmileFactory());
+                break;
+            default:
+                invoiceMapper = compactJsonMapper;
+        }
+        invoiceMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        invoiceWriter = invoiceMapper.writerFor(StandardInvoice.class);
+        invoiceMetadata = OutgoingRabbitMQMetadata.builder()
+                .withContentType(wireFormat.getContentType())
+                .build();
+    }
+
+    /**
+     * Serializes an invoice in the configured wire format
+     *
+     * @param invoice The invoice
+     * @return The encoded invoice
+     * @throws JsonProcessingException If the invoice cannot be serialized
+     */
+    public byte[] encodeInvoice(StandardInvoice invoice) throws JsonProcessingException {
+        return invoiceWriter.writeValueAsBytes(invoice);
+    }
+
+    /**
+     * Wraps an encoded invoice in a message carrying its content type
+     *
+     * @param encodedInvoice The output of {@link #encodeInvoice(StandardInvoice)}
+     * @return The outgoing message
+     */
+    public Message<byte[]> invoiceMessage(byte[] encodedInvoice) {
+        return Message.of(encodedInvoice).addMetadata(invoiceMetadata);
+    }
+
+    /**
+     * Wraps a serialized invoice request in a message stamped with its publication time,
+     * from which the consumer measures queue lag
+     *
+     * @param requestJson The output of {@link #toJson(Object)} for the request
+     * @return The outgoing message
+     */
+    public Message<String> requestMessage(String requestJson) {
+        return Message.of(requestJson).addMetadata(OutgoingRabbitMQMetadata.builder()
+                .withTimestamp(ZonedDateTime.now())
+                .build());
+    }
+
+    /**
+     * Serializes a payload as compact JSON text
+     *
+     * @param payload The payload
+     * @return The JSON string
+     * @throws JsonProcessingException If the payload cannot be serialized
+     */
+    public String toJson(Object payload) throws JsonProcessingException {
+        return compactJsonMapper.writeValueAsString(payload);
+    }
+
+    /**
+     * Renders an encoded invoice for logging
+     *
+     * @param encodedInvoice The output of {@link #encodeInvoice(StandardInvoice)}
+     * @return The JSON text, or a size summary for binary formats
+     */
+    public String describe(byte[] encodedInvoice) {
+        if (wireFormat == WireFormat.JSON) {
+            return new String(encodedInvoice, StandardCharsets.UTF_8);
+        }
+        return encodedInvoice.length + " bytes of " + wireFormat.getContentType();
+    }
+}
@@ -0,0 +1,57 @@
+package org.flechaamarilla.messaging;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampled logging of message payloads. Logging every payload at INFO costs throughput,
+ * so the level and the fraction of payloads logged are configurable.
+ */
+final class PayloadLog {
+
+    /**
+     * Level payloads are logged at
+     */
+    enum Level {
+        INFO, DEBUG, OFF
+    }
+
+    private final Logger log;
+    private final Level level;
+    private final double sampleRate;
+
+    PayloadLog(Logger log, Level level, double sampleRate) {
+        this.log = log;
+        this.level = level;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Decides whether to log the current payload; call before building an expensive description
+     *
+     * @return True if the payload should be logged
+     */
+    boolean sample() {
+        boolean enabled = switch (level) {
+            case INFO -> log.isInfoEnabled();
+            case DEBUG -> log.isDebugEnabled();
+            case OFF -> false;
+        };
+        return enabled && (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Logs a payload at the configured level, without sampling
+     *
+     * @param format The message format
+     * @param payload The payload or its description
+     */
+    void log(String format, Object payload) {
+        if (level == Level.INFO) {
+            log.info(format, payload);
+        } else if (level == Level.DEBUG) {
+            log.debug(format, payload);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.flechaamarilla.messaging;
+
+/**
+ * What {@link InvoicePublisher} does with an invoice when {@code invoice.publish.max-in-flight}
+ * invoices are already waiting for the broker
+ */
+public enum PublishOverflowStrategy {
+
+    /**
+     * Publish anyway; the emitter buffers without limit (the previous behavior)
+     */
+    UNBOUNDED,
+
+    /**
+     * Wait up to {@code invoice.publish.block-timeout} for room, slowing the consumer down to
+     * the broker's pace; defer the request if no room frees up in time. Never blocks an
+     * event-loop thread: there the request is deferred straight away
+     */
+    BLOCK,
+
+    /**
+     * Defer the request at once: it goes to a retry tier, and to the dead-letter queue once
+     * out of attempts
+     */
+    DEFER
+}
@@ -0,0 +1,141 @@
+package org.flechaamarilla.messaging;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks in parallel while keeping tasks with the same key in submission order.
+ * Keys are hashed onto a fixed number of lanes; each lane runs its tasks one at a time,
+ * so at most {@code lanes} tasks run concurrently. Submission is lock-free.
+ * <p>
+ * Every task comes with an abandon action, run instead of the task if the executor is closed
+ * before the task could run, so that whatever the task owns (e.g. an unsettled message) is
+ * always released.
+ */
+@Slf4j
+final class StripedExecutor implements AutoCloseable {
+
+    private final ExecutorService backing;
+    private final Lane[] lanes;
+    private volatile boolean closed;
+
+    /**
+     * @param lanes Number of lanes, which is also the concurrency limit
+     * @param virtualThreads Run lanes on virtual threads instead of a platform thread pool
+     */
+    StripedExecutor(int lanes, boolean virtualThreads) {
+        this.backing = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(lanes);
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane();
+        }
+    }
+
+    /**
+     * Submits a task after every task previously submitted with a key on the same lane
+     *
+     * @param key The ordering key
+     * @param task The task
+     * @param abandon Run instead of the task if the executor closes before the task runs
+     */
+    void execute(Object key, Runnable task, Runnable abandon) {
+        if (closed) {
+            abandon(abandon);
+            return;
+        }
+        lanes[Math.floorMod(Objects.hashCode(key), lanes.length)].submit(new Task(task, abandon));
+    }
+
+    /**
+     * Stops accepting work, waits briefly for the lanes to drain and abandons the tasks still queued
+     */
+    @Override
+    public void close() {
+        closed = true;
+        backing.shutdown();
+        try {
+            if (!backing.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Worker lanes did not drain within 10 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Lane lane : lanes) {
+            lane.abandonQueued();
+        }
+    }
+
+    private static void abandon(Runnable abandon) {
+        try {
+            abandon.run();
+        } catch (Exception e) {
+            log.error("Could not abandon a worker lane task", e);
+        }
+    }
+
+    private record Task(Runnable work, Runnable abandon) {
+    }
+
+    /**
+     * A serial queue drained by at most one backing thread at a time
+     */
+    private final class Lane {
+
+        private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        void submit(Task task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    backing.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Closed while this lane still had work
+                    scheduled.set(false);
+                    abandonQueued();
+                }
+            }
+        }
+
+        /**
+         * Abandons the tasks no drain has taken yet; each task is either run or abandoned, never both
+         */
+        void abandonQueued() {
+            Task task;
+            while ((task = tasks.poll()) != null) {
+                abandon(task.abandon());
+            }
+        }
+
+        private void drain() {
+            Task task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.work().run();
+                } catch (Exception e) {
+                    log.error("Unexpected error in worker lane", e);
+                }
+            }
+            scheduled.set(false);
+
+            // A task may have been queued after the last poll but before the flag was cleared
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.flechaamarilla.messaging;
+
+/**
+ * Serialization formats for invoices published to the broker
+ */
+public enum WireFormat {
+
+    /**
+     * Compact (non-indented) JSON
+     */
+    JSON("application/json"),
+
+    /**
+     * Binary CBOR (RFC 8949)
+     */
+    CBOR("application/cbor"),
+
+    /**
+     * Binary Jackson Smile
+     */
+    SMILE("application/x-jackson-smile");
+
+    private final String contentType;
+
+    WireFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * @return The content type set on published messages
+     */
+    public String getContentType() {
+        return contentType;
+    }
+}
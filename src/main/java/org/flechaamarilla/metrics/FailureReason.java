@@ -0,0 +1,79 @@
+package org.flechaamarilla.metrics;
+
+/**
+ * Why an invoice request produced no invoice, the {@code reason} tag of {@code invoice.failures}.
+ * Retryable reasons are transient: the same request may succeed later. The others are
+ * permanent and are dead-lettered without retrying.
+ */
+public enum FailureReason {
+
+    /**
+     * The message is not a readable invoice request, or names no ticket
+     */
+    INVALID_REQUEST(false),
+
+    /**
+     * The request's business unit does not exist
+     */
+    BUSINESS_UNIT_NOT_FOUND(false),
+
+    /**
+     * The ticket source has no ticket for the token
+     */
+    TICKET_NOT_FOUND(false),
+
+    /**
+     * The ticket source failed or timed out
+     */
+    TICKET_FETCH_ERROR(true),
+
+    /**
+     * The ticket is not valid JSON
+     */
+    INVALID_TICKET(false),
+
+    /**
+     * A concept's amount does not match its quantity and unit price
+     */
+    INVALID_TOTALS(false),
+
+    /**
+     * No folio could be issued
+     */
+    FOLIO_ERROR(true),
+
+    /**
+     * The invoice could not be serialized or the broker rejected it
+     */
+    PUBLISH_ERROR(true),
+
+    /**
+     * Too many invoices were awaiting broker confirms
+     */
+    PUBLISH_OVERFLOW(true),
+
+    /**
+     * Anything else
+     */
+    UNEXPECTED(true);
+
+    private final boolean retryable;
+
+    FailureReason(boolean retryable) {
+        this.retryable = retryable;
+    }
+
+    /**
+     * @return True if the failure is transient and the request worth retrying
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * @return The tag value
+     */
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,222 @@
+package org.flechaamarilla.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+/**
+ * Micrometer meters of the invoice pipeline, exposed at {@code /q/metrics}:
+ * <ul>
+ *     <li>{@code invoice.pipeline.stage} timer per {@link PipelineStage}</li>
+ *     <li>{@code invoice.processed} counter per business unit and outcome (created, duplicate)</li>
+ *     <li>{@code invoice.failures} counter per business unit and {@link FailureReason}</li>
+ *     <li>{@code invoice.queue.lag} timer from publication of a request to its consumption</li>
+ *     <li>{@code invoice.payload.size} summary of request, ticket and invoice sizes in bytes</li>
+ *     <li>{@code invoice.publish.in-flight} gauge of invoices awaiting broker confirms</li>
+ *     <li>{@code invoice.retries} and {@code invoice.dead-letters} counters of failed requests per {@link FailureReason}</li>
+ *     <li>{@code invoice.startup.first-invoice} gauge of the time from JVM start to the first invoice produced</li>
+ * </ul>
+ * Meters are created once and looked up without allocation on the hot path. Per-unit meters
+ * are only created for business units that were resolved, never for an ID a client sent,
+ * so their number is bounded by the units that exist.
+ */
+@ApplicationScoped
+@Slf4j
+public class InvoiceMetrics {
+
+    /**
+     * Payloads whose size is recorded
+     */
+    public enum Payload {
+        REQUEST, TICKET, INVOICE
+    }
+
+    @Inject
+    MeterRegistry registry;
+
+    private final Map<PipelineStage, Timer> stageTimers = new EnumMap<>(PipelineStage.class);
+    private final Map<Payload, DistributionSummary> payloadSizes = new EnumMap<>(Payload.class);
+    private final ConcurrentHashMap<Long, Counter> created = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Counter> duplicates = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Map<FailureReason, Counter>> failures = new ConcurrentHashMap<>();
+    private final Map<FailureReason, Counter> retries = new EnumMap<>(FailureReason.class);
+    private final Map<FailureReason, Counter> deadLetters = new EnumMap<>(FailureReason.class);
+    private final AtomicBoolean firstInvoice = new AtomicBoolean();
+    private volatile double firstInvoiceMillis = Double.NaN;
+    private Timer queueLag;
+
+    @PostConstruct
+    void init() {
+        for (PipelineStage stage : PipelineStage.values()) {
+            stageTimers.put(stage, Timer.builder("invoice.pipeline.stage")
+                    .description("Time spent in each stage of the invoice pipeline")
+                    .tag("stage", stage.tag())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        for (Payload payload : Payload.values()) {
+            payloadSizes.put(payload, DistributionSummary.builder("invoice.payload.size")
+                    .description("Size of pipeline payloads")
+                    .baseUnit("bytes")
+                    .tag("payload", payload.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        for (FailureReason reason : FailureReason.values()) {
+            retries.put(reason, Counter.builder("invoice.retries")
+                    .description("Invoice requests sent to a retry tier")
+                    .tag("reason", reason.tag())
+                    .register(registry));
+            deadLetters.put(reason, Counter.builder("invoice.dead-letters")
+                    .description("Invoice requests sent to a dead-letter queue")
+                    .tag("reason", reason.tag())
+                    .register(registry));
+        }
+        queueLag = Timer.builder("invoice.queue.lag")
+                .description("Time from publication of an invoice request to its consumption")
+                .publishPercentileHistogram()
+                .register(registry);
+        TimeGauge.builder("invoice.startup.first-invoice", this, TimeUnit.MILLISECONDS, metrics -> metrics.firstInvoiceMillis)
+                .description("Time from JVM start to the first invoice produced")
+                .register(registry);
+    }
+
+    /**
+     * Records the duration of a stage
+     *
+     * @param stage The stage
+     * @param startNanos {@link System#nanoTime()} when the stage started
+     */
+    public void record(PipelineStage stage, long startNanos) {
+        stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts an invoice produced for a business unit
+     *
+     * @param businessUnitId The ID of a resolved business unit
+     */
+    public void created(Long businessUnitId) {
+        created.computeIfAbsent(key(businessUnitId), unit -> outcomeCounter(unit, "created")).increment();
+        if (!firstInvoice.get() && firstInvoice.compareAndSet(false, true)) {
+            firstInvoiceMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            log.info("First invoice produced {} ms after JVM start", (long) firstInvoiceMillis);
+        }
+    }
+
+    /**
+     * Counts a request answered with a previously produced invoice
+     *
+     * @param businessUnitId The ID of a resolved business unit
+     */
+    public void duplicate(Long businessUnitId) {
+        duplicates.computeIfAbsent(key(businessUnitId), unit -> outcomeCounter(unit, "duplicate")).increment();
+    }
+
+    /**
+     * Counts a request that produced no invoice
+     *
+     * @param reason Why
+     * @param businessUnitId The ID of a resolved business unit, or null if unknown or not resolved
+     */
+    public void failure(FailureReason reason, Long businessUnitId) {
+        failure(reason, businessUnitId, 1);
+    }
+
+    /**
+     * Counts several requests that produced no invoice for the same reason
+     *
+     * @param reason Why
+     * @param businessUnitId The ID of a resolved business unit, or null if unknown or not resolved
+     * @param count Number of requests
+     */
+    public void failure(FailureReason reason, Long businessUnitId, int count) {
+        failures.computeIfAbsent(key(businessUnitId), unit -> new ConcurrentHashMap<>())
+                .computeIfAbsent(reason, r -> Counter.builder("invoice.failures")
+                        .description("Invoice requests that produced no invoice")
+                        .tag("businessUnit", unitTag(businessUnitId))
+                        .tag("reason", r.tag())
+                        .register(registry))
+                .increment(count);
+    }
+
+    /**
+     * Counts a request sent to a retry tier
+     *
+     * @param reason Why it failed
+     */
+    public void retried(FailureReason reason) {
+        retries.get(reason).increment();
+    }
+
+    /**
+     * Counts a request sent to a dead-letter queue
+     *
+     * @param reason Why it failed
+     */
+    public void deadLettered(FailureReason reason) {
+        deadLetters.get(reason).increment();
+    }
+
+    /**
+     * Records how long a request waited in the queue
+     *
+     * @param lagMillis Milliseconds between publication and consumption
+     */
+    public void queueLag(long lagMillis) {
+        queueLag.record(Math.max(lagMillis, 0), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records the size of a payload
+     *
+     * @param payload The kind of payload
+     * @param bytes Its size
+     */
+    public void payloadSize(Payload payload, long bytes) {
+        payloadSizes.get(payload).record(bytes);
+    }
+
+    /**
+     * Registers the gauge of invoices awaiting broker confirms
+     *
+     * @param inFlight Supplies the current count
+     */
+    public void inFlightGauge(IntSupplier inFlight) {
+        Gauge.builder("invoice.publish.in-flight", inFlight::getAsInt)
+                .description("Invoices published and not yet confirmed by the broker")
+                .register(registry);
+    }
+
+    private Counter outcomeCounter(Long businessUnitId, String outcome) {
+        return Counter.builder("invoice.processed")
+                .description("Invoice requests processed, by business unit")
+                .tag("businessUnit", unitTag(businessUnitId))
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    // ConcurrentHashMap keys cannot be null
+    private static Long key(Long businessUnitId) {
+        return businessUnitId == null ? -1L : businessUnitId;
+    }
+
+    private static String unitTag(Long businessUnitId) {
+        return businessUnitId == null || businessUnitId < 0 ? "unknown" : businessUnitId.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package org.flechaamarilla.metrics;
+
+/**
+ * Timed stages of the invoice pipeline, the {@code stage} tag of {@code invoice.pipeline.stage}
+ */
+public enum PipelineStage {
+
+    /**
+     * Reading the invoice request from the incoming message
+     */
+    DESERIALIZE,
+
+    /**
+     * Resolving the business unit's mapping plan
+     */
+    BUSINESS_UNIT_LOOKUP,
+
+    /**
+     * Fetching the ticket from the ticket source or its cache
+     */
+    TICKET_FETCH,
+
+    /**
+     * Parsing the ticket JSON; in streaming mode parsing and mapping are one pass, timed here
+     */
+    JSON_PARSE,
+
+    /**
+     * Mapping the parsed ticket onto the invoice (tree mode)
+     */
+    MAPPING,
+
+    /**
+     * Validating the concepts and computing taxes and totals
+     */
+    TAXES,
+
+    /**
+     * Issuing the folio
+     */
+    FOLIO,
+
+    /**
+     * Encoding the invoice in the wire format
+     */
+    SERIALIZE,
+
+    /**
+     * From handing the invoice to the broker until the broker confirms it
+     */
+    PUBLISH;
+
+    /**
+     * @return The tag value
+     */
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
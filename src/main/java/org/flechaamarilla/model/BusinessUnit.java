@@ -5,22 +5,41 @@ import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import lombok.Getter;
 import lombok.Setter;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import io.quarkus.panache.common.Sort;
+import org.flechaamarilla.mapping.TicketParsingMode;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.jpa.HibernateHints;
+
+import java.math.BigDecimal;
 import java.util.List;
 
 /**
  * Represents a business unit that can handle invoice generation.
  * Each business unit may have different field mappings.
+ * Business units change rarely and are held in the second-level cache.
  */
 @Entity
+@Cacheable
 @Table(name = "business_units")
 @Getter
 @Setter
 public class BusinessUnit extends PanacheEntity {
 
+    /**
+     * Query cache region of the master-data queries, evicted on its own when master data changes
+     */
+    public static final String MASTER_DATA_QUERY_REGION = "master-data-queries";
+
     @Column(nullable = false, unique = true)
     private String name;
 
@@ -39,7 +58,50 @@ public class BusinessUnit extends PanacheEntity {
     @Column(nullable = false)
     private String series;
 
+    /**
+     * How this unit's tickets are parsed; null uses the global default
+     */
+    @Enumerated(EnumType.STRING)
+    private TicketParsingMode ticketParsingMode;
+
+    /**
+     * JSON pointer(s) to the line-item array(s) in this unit's tickets, comma-separated;
+     * null means "/items"
+     */
+    private String itemsPath;
+
+    /**
+     * JSON pointer to the ticket ID in this unit's tickets, or null
+     */
+    private String ticketIdPath;
+
+    /**
+     * JSON pointer to the ticket date in this unit's tickets, or null
+     */
+    private String ticketDatePath;
+
+    /**
+     * IVA rate applied to this unit's concepts, e.g. 0.160000; null uses the global default
+     */
+    @Column(precision = 7, scale = 6)
+    private BigDecimal ivaRate;
+
+    /**
+     * IEPS rate applied to this unit's concepts, e.g. 0.080000; null means the unit charges no IEPS
+     */
+    @Column(precision = 7, scale = 6)
+    private BigDecimal iepsRate;
+
+    /**
+     * Incremented by every committed change to the unit or its field mappings
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
     @OneToMany(mappedBy = "businessUnit")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonManagedReference // Marks this side of the relationship as the one to serialize
     private List<FieldMapping> fieldMappings;
 
@@ -47,6 +109,18 @@ public class BusinessUnit extends PanacheEntity {
         return this.id;
     }
 
+    /**
+     * Lists all business units through the query cache
+     *
+     * @return List of all business units
+     */
+    public static List<BusinessUnit> listAllCached() {
+        return BusinessUnit.<BusinessUnit>findAll(Sort.by("id"))
+                .withHint(HibernateHints.HINT_CACHEABLE, true)
+                .withHint(HibernateHints.HINT_CACHE_REGION, MASTER_DATA_QUERY_REGION)
+                .list();
+    }
+
     /**
      * Finds a business unit by its unique identifier.
      *
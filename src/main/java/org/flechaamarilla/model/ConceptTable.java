@@ -0,0 +1,522 @@
+package org.flechaamarilla.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The concepts (line items) of an invoice, stored column by column in parallel arrays rather
+ * than as one object per line: quantities and unit prices as fixed-point {@code long} millionths,
+ * line amounts and taxes as fixed-point {@code long} cents, and product keys and units interned,
+ * since a handful of values repeat over thousands of lines. Quantities and unit prices keep the
+ * six decimals SAT allows so that only the line amount, {@code cantidad * valorUnitario}, is ever
+ * rounded to cents.
+ * <p>
+ * Serializes as the array of concept objects consumers already read,
+ * {@code [{"claveProdServ", "descripcion", "cantidad", "unidad", "valorUnitario", "importe", "ieps", "iva"}, ...]},
+ * with amounts in currency units, writing straight from the columns.
+ * <p>
+ * The whole-table operations used by the tax stage ({@link #countInvalidImportes()},
+ * {@link #computeIeps(long)}, {@link #computeIva(long)}) are plain counted loops over the
+ * primitive columns, with no allocation and no per-row bounds checks beyond the JIT's own.
+ */
+@JsonSerialize(using = ConceptTable.Serializer.class)
+@JsonDeserialize(using = ConceptTable.Deserializer.class)
+public final class ConceptTable {
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    // Tax rates are fixed-point with the six decimals of the SAT TasaOCuota
+    private static final long RATE_SCALE = 1_000_000L;
+    private static final long RATE_HALF = RATE_SCALE / 2;
+
+    // Quantities and unit prices are fixed-point with six decimals, as the SAT Cantidad and ValorUnitario allow
+    private static final long MICROS = 1_000_000L;
+    private static final long LINE_AMOUNT_SCALE = MICROS * MICROS / 100;
+    private static final BigDecimal MICROS_SQUARED_PER_CENT = BigDecimal.valueOf(LINE_AMOUNT_SCALE);
+
+    // Bounded so arbitrary descriptions in the key columns cannot grow it without limit
+    private static final int MAX_INTERNED = 10_000;
+    private static final ConcurrentHashMap<String, String> INTERNED = new ConcurrentHashMap<>();
+
+    private int size;
+    private String[] claveProdServ;
+    private String[] descripcion;
+    private long[] cantidadMicros;
+    private String[] unidad;
+    private long[] valorUnitarioMicros;
+    private long[] importeCents;
+    private long[] iepsCents;
+    private long[] ivaCents;
+
+    public ConceptTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Expected number of concepts
+     */
+    public ConceptTable(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * Appends an empty concept
+     *
+     * @return Its row index
+     */
+    public int addRow() {
+        if (size == cantidadMicros.length) {
+            grow(size * 2);
+        }
+        int row = size++;
+        claveProdServ[row] = null;
+        descripcion[row] = null;
+        cantidadMicros[row] = 0;
+        unidad[row] = null;
+        valorUnitarioMicros[row] = 0;
+        importeCents[row] = 0;
+        iepsCents[row] = 0;
+        ivaCents[row] = 0;
+        return row;
+    }
+
+    /**
+     * Appends all concepts of another table
+     *
+     * @param other The table to copy from
+     */
+    public void addAll(ConceptTable other) {
+        if (size + other.size > cantidadMicros.length) {
+            grow(Math.max(size + other.size, size * 2));
+        }
+        System.arraycopy(other.claveProdServ, 0, claveProdServ, size, other.size);
+        System.arraycopy(other.descripcion, 0, descripcion, size, other.size);
+        System.arraycopy(other.cantidadMicros, 0, cantidadMicros, size, other.size);
+        System.arraycopy(other.unidad, 0, unidad, size, other.size);
+        System.arraycopy(other.valorUnitarioMicros, 0, valorUnitarioMicros, size, other.size);
+        System.arraycopy(other.importeCents, 0, importeCents, size, other.size);
+        System.arraycopy(other.iepsCents, 0, iepsCents, size, other.size);
+        System.arraycopy(other.ivaCents, 0, ivaCents, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Removes every concept, keeping the allocated columns
+     */
+    public void clear() {
+        Arrays.fill(claveProdServ, 0, size, null);
+        Arrays.fill(descripcion, 0, size, null);
+        Arrays.fill(unidad, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return Number of concepts
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String getClaveProdServ(int row) {
+        return claveProdServ[check(row)];
+    }
+
+    public void setClaveProdServ(int row, String value) {
+        claveProdServ[check(row)] = intern(value);
+    }
+
+    public String getDescripcion(int row) {
+        return descripcion[check(row)];
+    }
+
+    public void setDescripcion(int row, String value) {
+        descripcion[check(row)] = value;
+    }
+
+    /**
+     * @param row The row index
+     * @return The quantity in millionths
+     */
+    public long getCantidadMicros(int row) {
+        return cantidadMicros[check(row)];
+    }
+
+    public void setCantidadMicros(int row, long micros) {
+        cantidadMicros[check(row)] = micros;
+    }
+
+    public String getUnidad(int row) {
+        return unidad[check(row)];
+    }
+
+    public void setUnidad(int row, String value) {
+        unidad[check(row)] = intern(value);
+    }
+
+    /**
+     * @param row The row index
+     * @return The unit price in millionths
+     */
+    public long getValorUnitarioMicros(int row) {
+        return valorUnitarioMicros[check(row)];
+    }
+
+    public void setValorUnitarioMicros(int row, long micros) {
+        valorUnitarioMicros[check(row)] = micros;
+    }
+
+    /**
+     * @param row The row index
+     * @return The line amount in cents
+     */
+    public long getImporteCents(int row) {
+        return importeCents[check(row)];
+    }
+
+    public void setImporteCents(int row, long cents) {
+        importeCents[check(row)] = cents;
+    }
+
+    /**
+     * @param row The row index
+     * @return The IEPS of the concept in cents, set by {@link #computeIeps(long)}
+     */
+    public long getIepsCents(int row) {
+        return iepsCents[check(row)];
+    }
+
+    /**
+     * @param row The row index
+     * @return The IVA of the concept in cents, set by {@link #computeIva(long)}
+     */
+    public long getIvaCents(int row) {
+        return ivaCents[check(row)];
+    }
+
+    /**
+     * Sums the line amounts
+     *
+     * @return The invoice subtotal in cents
+     */
+    public long sumImportes() {
+        long[] importe = importeCents;
+        long sum = 0;
+        for (int row = 0; row < size; row++) {
+            sum += importe[row];
+        }
+        return sum;
+    }
+
+    /**
+     * Counts the concepts whose amount does not match their quantity and unit price.
+     * A concept is valid when no value is negative and {@code importe} is within a cent of
+     * {@link #lineAmountCents(long, long) cantidad * valorUnitario} rounded to cents. Concepts
+     * without a quantity or a unit price only carry their amount and are not checked.
+     *
+     * @return Number of invalid concepts
+     */
+    public int countInvalidImportes() {
+        long[] quantity = cantidadMicros;
+        long[] unitPrice = valorUnitarioMicros;
+        long[] importe = importeCents;
+        int invalid = 0;
+        for (int row = 0; row < size; row++) {
+            invalid += isValidImporte(quantity[row], unitPrice[row], importe[row]) ? 0 : 1;
+        }
+        return invalid;
+    }
+
+    /**
+     * @return Index of the first concept counted by {@link #countInvalidImportes()}, or -1 if none
+     */
+    public int firstInvalidImporte() {
+        for (int row = 0; row < size; row++) {
+            if (!isValidImporte(cantidadMicros[row], valorUnitarioMicros[row], importeCents[row])) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isValidImporte(long quantityMicros, long unitPriceMicros, long importe) {
+        if (quantityMicros < 0 || unitPriceMicros < 0 || importe < 0) {
+            return false;
+        }
+        return quantityMicros == 0 || unitPriceMicros == 0
+                || Math.abs(importe - lineAmountCents(quantityMicros, unitPriceMicros)) <= 1;
+    }
+
+    /**
+     * Computes a line amount exactly, rounding only the product to cents, half away from zero
+     *
+     * @param quantityMicros The quantity in millionths
+     * @param unitPriceMicros The unit price in millionths
+     * @return {@code cantidad * valorUnitario} in cents
+     */
+    public static long lineAmountCents(long quantityMicros, long unitPriceMicros) {
+        long product = quantityMicros * unitPriceMicros;
+        if (Math.multiplyHigh(quantityMicros, unitPriceMicros) != (product >> 63)) {
+            // Past a long (e.g. 100 units of 100,000): rare enough for BigDecimal
+            return BigDecimal.valueOf(quantityMicros).multiply(BigDecimal.valueOf(unitPriceMicros))
+                    .divide(MICROS_SQUARED_PER_CENT, 0, RoundingMode.HALF_UP).longValueExact();
+        }
+        long cents = product / LINE_AMOUNT_SCALE;
+        long rest = product % LINE_AMOUNT_SCALE;
+        if (2 * Math.abs(rest) >= LINE_AMOUNT_SCALE) {
+            cents += product < 0 ? -1 : 1;
+        }
+        return cents;
+    }
+
+    /**
+     * Computes the IEPS of every concept on its amount, rounded half up to cents
+     *
+     * @param rateMicros The IEPS rate in millionths, e.g. 80000 for 8%
+     * @return The total IEPS in cents
+     */
+    public long computeIeps(long rateMicros) {
+        long[] importe = importeCents;
+        long[] ieps = iepsCents;
+        long sum = 0;
+        for (int row = 0; row < size; row++) {
+            long tax = (importe[row] * rateMicros + RATE_HALF) / RATE_SCALE;
+            ieps[row] = tax;
+            sum += tax;
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the IVA of every concept, rounded half up to cents. The IVA base is the amount
+     * plus its IEPS, so {@link #computeIeps(long)} must run first when the unit charges IEPS.
+     *
+     * @param rateMicros The IVA rate in millionths, e.g. 160000 for 16%
+     * @return The total IVA in cents
+     */
+    public long computeIva(long rateMicros) {
+        long[] importe = importeCents;
+        long[] ieps = iepsCents;
+        long[] iva = ivaCents;
+        long sum = 0;
+        for (int row = 0; row < size; row++) {
+            long tax = ((importe[row] + ieps[row]) * rateMicros + RATE_HALF) / RATE_SCALE;
+            iva[row] = tax;
+            sum += tax;
+        }
+        return sum;
+    }
+
+    /**
+     * Converts an amount in currency units to cents, rounding half away from zero
+     *
+     * @param amount The amount, e.g. 12.35
+     * @return The amount in cents, e.g. 1235
+     */
+    public static long toCents(double amount) {
+        // Math.rint on the scaled value would round half to even; tickets expect half up
+        double scaled = amount * 100.0;
+        return (long) (scaled < 0 ? Math.ceil(scaled - 0.5 - 1e-9) : Math.floor(scaled + 0.5 + 1e-9));
+    }
+
+    /**
+     * Converts an amount in currency units to millionths, rounding half away from zero
+     *
+     * @param amount The amount, e.g. 0.123456
+     * @return The amount in millionths, e.g. 123456
+     */
+    public static long toMicros(double amount) {
+        double scaled = amount * MICROS;
+        return (long) (scaled < 0 ? Math.ceil(scaled - 0.5 - 1e-6) : Math.floor(scaled + 0.5 + 1e-6));
+    }
+
+    /**
+     * Converts millionths to currency units
+     *
+     * @param micros The amount in millionths
+     * @return The amount in currency units
+     */
+    public static double fromMicros(long micros) {
+        return micros / (double) MICROS;
+    }
+
+    /**
+     * Converts cents to currency units
+     *
+     * @param cents The amount in cents
+     * @return The amount in currency units
+     */
+    public static double fromCents(long cents) {
+        return cents / 100.0;
+    }
+
+    private static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String interned = INTERNED.get(value);
+        if (interned != null) {
+            return interned;
+        }
+        if (INTERNED.size() >= MAX_INTERNED) {
+            return value;
+        }
+        interned = INTERNED.putIfAbsent(value, value);
+        return interned != null ? interned : value;
+    }
+
+    private int check(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Concept " + row + " of " + size);
+        }
+        return row;
+    }
+
+    private void allocate(int capacity) {
+        claveProdServ = new String[capacity];
+        descripcion = new String[capacity];
+        cantidadMicros = new long[capacity];
+        unidad = new String[capacity];
+        valorUnitarioMicros = new long[capacity];
+        importeCents = new long[capacity];
+        iepsCents = new long[capacity];
+        ivaCents = new long[capacity];
+    }
+
+    private void grow(int capacity) {
+        claveProdServ = Arrays.copyOf(claveProdServ, capacity);
+        descripcion = Arrays.copyOf(descripcion, capacity);
+        cantidadMicros = Arrays.copyOf(cantidadMicros, capacity);
+        unidad = Arrays.copyOf(unidad, capacity);
+        valorUnitarioMicros = Arrays.copyOf(valorUnitarioMicros, capacity);
+        importeCents = Arrays.copyOf(importeCents, capacity);
+        iepsCents = Arrays.copyOf(iepsCents, capacity);
+        ivaCents = Arrays.copyOf(ivaCents, capacity);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConceptTable other) || size != other.size) {
+            return false;
+        }
+        return Arrays.equals(claveProdServ, 0, size, other.claveProdServ, 0, size)
+                && Arrays.equals(descripcion, 0, size, other.descripcion, 0, size)
+                && Arrays.equals(cantidadMicros, 0, size, other.cantidadMicros, 0, size)
+                && Arrays.equals(unidad, 0, size, other.unidad, 0, size)
+                && Arrays.equals(valorUnitarioMicros, 0, size, other.valorUnitarioMicros, 0, size)
+                && Arrays.equals(importeCents, 0, size, other.importeCents, 0, size)
+                && Arrays.equals(iepsCents, 0, size, other.iepsCents, 0, size)
+                && Arrays.equals(ivaCents, 0, size, other.ivaCents, 0, size);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = size;
+        for (int row = 0; row < size; row++) {
+            hash = 31 * hash + Objects.hash(claveProdServ[row], descripcion[row], cantidadMicros[row], unidad[row],
+                    valorUnitarioMicros[row], importeCents[row], iepsCents[row], ivaCents[row]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "ConceptTable(size=" + size + ")";
+    }
+
+    /**
+     * Writes the table as an array of concept objects
+     */
+    static final class Serializer extends StdSerializer<ConceptTable> {
+
+        Serializer() {
+            super(ConceptTable.class);
+        }
+
+        @Override
+        public void serialize(ConceptTable table, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartArray(table, table.size);
+            for (int row = 0; row < table.size; row++) {
+                gen.writeStartObject();
+                gen.writeStringField("claveProdServ", table.claveProdServ[row]);
+                gen.writeStringField("descripcion", table.descripcion[row]);
+                long quantity = table.cantidadMicros[row];
+                if (quantity % MICROS == 0) {
+                    // Whole quantities stay integers for consumers that read them as such
+                    gen.writeNumberField("cantidad", quantity / MICROS);
+                } else {
+                    gen.writeNumberField("cantidad", fromMicros(quantity));
+                }
+                gen.writeStringField("unidad", table.unidad[row]);
+                gen.writeNumberField("valorUnitario", fromMicros(table.valorUnitarioMicros[row]));
+                gen.writeNumberField("importe", fromCents(table.importeCents[row]));
+                gen.writeNumberField("ieps", fromCents(table.iepsCents[row]));
+                gen.writeNumberField("iva", fromCents(table.ivaCents[row]));
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    /**
+     * Reads an array of concept objects into a table; unknown properties are skipped
+     */
+    static final class Deserializer extends StdDeserializer<ConceptTable> {
+
+        Deserializer() {
+            super(ConceptTable.class);
+        }
+
+        @Override
+        public ConceptTable deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (!parser.isExpectedStartArrayToken()) {
+                return (ConceptTable) context.handleUnexpectedToken(ConceptTable.class, parser);
+            }
+            ConceptTable table = new ConceptTable();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    return (ConceptTable) context.handleUnexpectedToken(ConceptTable.class, parser);
+                }
+                int row = table.addRow();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    boolean isNull = value == JsonToken.VALUE_NULL;
+                    switch (field) {
+                        case "claveProdServ" -> table.setClaveProdServ(row, isNull ? null : parser.getValueAsString());
+                        case "descripcion" -> table.setDescripcion(row, isNull ? null : parser.getValueAsString());
+                        case "cantidad" -> table.setCantidadMicros(row, toMicros(parser.getValueAsDouble()));
+                        case "unidad" -> table.setUnidad(row, isNull ? null : parser.getValueAsString());
+                        case "valorUnitario" -> table.setValorUnitarioMicros(row, toMicros(parser.getValueAsDouble()));
+                        case "importe" -> table.setImporteCents(row, toCents(parser.getValueAsDouble()));
+                        case "ieps" -> table.iepsCents[row] = toCents(parser.getValueAsDouble());
+                        case "iva" -> table.ivaCents[row] = toCents(parser.getValueAsDouble());
+                        default -> parser.skipChildren();
+                    }
+                }
+            }
+            return table;
+        }
+    }
+}
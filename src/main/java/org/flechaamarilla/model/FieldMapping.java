@@ -5,19 +5,27 @@ import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import lombok.Getter;
 import lombok.Setter;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import io.quarkus.panache.common.Sort;
+import org.flechaamarilla.mapping.MappingScope;
 import org.flechaamarilla.model.BusinessUnit;
+import org.hibernate.jpa.HibernateHints;
 
 import java.util.List;
 
 /**
  * Maps source field names from business units to standard field names.
  * This allows handling different JSON structures from different businesses.
+ * Mappings change rarely and are held in the second-level cache.
  */
 @Entity
+@Cacheable
 @Table(name = "field_mappings")
 @Getter
 @Setter
@@ -30,11 +38,26 @@ public class FieldMapping extends PanacheEntity {
     private String standardFieldName;
 
     /**
-     * The original field name used by the business unit
+     * The original field used by the business unit: a name, a dotted path ({@code product.code})
+     * or a JSON pointer ({@code /price/amount}), relative to the item or, for header mappings, the ticket
      */
     @Column(nullable = false)
     private String sourceFieldName;
 
+    /**
+     * Optional expression computing the standard field from the source field, e.g.
+     * {@code lpad(trim(value), 8, '0')}; null for a plain rename.
+     * See {@link org.flechaamarilla.mapping.TransformExpression} for the syntax.
+     */
+    @Column(length = 1000)
+    private String transform;
+
+    /**
+     * Whether the mapping reads from each item or from the ticket header; null means {@link MappingScope#ITEM}
+     */
+    @Enumerated(EnumType.STRING)
+    private MappingScope scope;
+
     /**
      * The business unit this mapping belongs to
      */
@@ -43,12 +66,15 @@ public class FieldMapping extends PanacheEntity {
     private BusinessUnit businessUnit;
 
     /**
-     * Finds all mappings for a specific business unit
+     * Finds all mappings for a specific business unit, in creation order, through the query cache
      *
      * @param businessUnitId The business unit ID
      * @return List of field mappings
      */
     public static List<FieldMapping> findByBusinessUnit(Long businessUnitId) {
-        return list("businessUnit.id", businessUnitId);
+        return FieldMapping.<FieldMapping>find("businessUnit.id", Sort.by("id"), businessUnitId)
+                .withHint(HibernateHints.HINT_CACHEABLE, true)
+                .withHint(HibernateHints.HINT_CACHE_REGION, BusinessUnit.MASTER_DATA_QUERY_REGION)
+                .list();
     }
 }
\ No newline at end of file
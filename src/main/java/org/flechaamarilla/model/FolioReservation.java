@@ -0,0 +1,101 @@
+package org.flechaamarilla.model;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Audit record of a block of folios reserved by a service replica.
+ * A block that never reaches {@link Status#EXHAUSTED} may leave a gap in its series:
+ * a {@link Status#RELEASED} block records exactly which folios went unused, while a block
+ * still {@link Status#ACTIVE} whose node stopped sending heartbeats most likely belonged to a
+ * crashed node, and the folios after its last recorded {@code lastIssued} may never have been used.
+ */
+@Entity
+@Table(name = "folio_reservations")
+@IdClass(FolioReservation.Key.class)
+@Getter
+@Setter
+public class FolioReservation extends PanacheEntityBase {
+
+    /**
+     * Lifecycle of a reserved block
+     */
+    public enum Status {
+        /** Being issued from by its node */
+        ACTIVE,
+        /** Every folio in the block was issued */
+        EXHAUSTED,
+        /** Returned on shutdown; folios after lastIssued were never used */
+        RELEASED
+    }
+
+    @Id
+    private String series;
+
+    @Id
+    private long firstFolio;
+
+    @Column(nullable = false)
+    private long lastFolio;
+
+    /**
+     * The replica that reserved the block
+     */
+    @Column(nullable = false)
+    private String nodeId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(nullable = false)
+    private Instant reservedAt;
+
+    private Instant closedAt;
+
+    /**
+     * When the node last reported the block alive, null if it never did
+     */
+    private Instant heartbeatAt;
+
+    /**
+     * Last folio issued from the block, as of its last heartbeat or when it was closed
+     */
+    private Long lastIssued;
+
+    /**
+     * Finds the reservations in a given status, oldest first
+     *
+     * @param status The reservation status
+     * @return List of reservations
+     */
+    public static List<FolioReservation> findByStatus(Status status) {
+        return list("status = ?1 order by reservedAt", status);
+    }
+
+    /**
+     * Composite key of a reservation
+     */
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String series;
+        private long firstFolio;
+    }
+}
@@ -0,0 +1,33 @@
+package org.flechaamarilla.model;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import lombok.Getter;
+import lombok.Setter;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * High-water mark of the folios reserved for an invoice series.
+ * Every replica claims blocks of folios by advancing {@code nextValue} in a single statement.
+ */
+@Entity
+@Table(name = "folio_series_counters")
+@Getter
+@Setter
+public class FolioSeriesCounter extends PanacheEntityBase {
+
+    /**
+     * The invoice series, as in {@code BusinessUnit.series}
+     */
+    @Id
+    private String series;
+
+    /**
+     * The first folio not yet reserved by any replica
+     */
+    @Column(nullable = false)
+    private long nextValue;
+}
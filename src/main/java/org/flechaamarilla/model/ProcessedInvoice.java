@@ -0,0 +1,62 @@
+package org.flechaamarilla.model;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * The invoice produced for a ticket, kept so that a repeated request for the same
+ * ticket gets the same invoice back instead of a new one with a new folio.
+ * The composite primary key makes a ticket invoiceable once per business unit across all replicas.
+ */
+@Entity
+@Table(name = "processed_invoices", indexes = @Index(name = "idx_processed_invoices_processed_at", columnList = "processedAt"))
+@IdClass(ProcessedInvoice.Key.class)
+@Getter
+@Setter
+public class ProcessedInvoice extends PanacheEntityBase {
+
+    @Id
+    private Long businessUnitId;
+
+    @Id
+    private String tokenTicket;
+
+    @Column(nullable = false)
+    private String serie;
+
+    @Column(nullable = false)
+    private String folio;
+
+    /**
+     * The invoice as compact JSON
+     */
+    @Column(nullable = false, columnDefinition = "text")
+    private String invoice;
+
+    @Column(nullable = false)
+    private Instant processedAt;
+
+    /**
+     * Composite key of a processed invoice
+     */
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long businessUnitId;
+        private String tokenTicket;
+    }
+}
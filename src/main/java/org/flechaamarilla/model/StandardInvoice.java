@@ -1,7 +1,9 @@
 package org.flechaamarilla.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
-import java.util.List;
+
+import java.math.BigDecimal;
 
 /**
  * The standardized invoice format to be sent to the invoice generation service
@@ -18,15 +20,26 @@ public class StandardInvoice {
     private String moneda;
     private String serie;
     private String folio;
-    private List<InvoiceConcept> conceptos;
 
-    @Data
-    public static class InvoiceConcept {
-        private String claveProdServ;
-        private String descripcion;
-        private int cantidad;
-        private String unidad;
-        private double valorUnitario;
-        private double importe;
-    }
+    // Ticket header values, present only when the business unit configures their paths
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String ticketId;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String fechaTicket;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String sucursal;
+
+    // Columnar, with amounts in cents; serialized as the usual array of concept objects
+    private ConceptTable conceptos;
+
+    // Totals computed from the concepts, exact to the cent
+    private BigDecimal subTotal;
+    private BigDecimal tasaIva;
+    private BigDecimal totalIva;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private BigDecimal tasaIeps;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private BigDecimal totalIeps;
+    private BigDecimal totalImpuestosTrasladados;
+    private BigDecimal total;
 }
@@ -0,0 +1,71 @@
+package org.flechaamarilla.model;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Audit record of a folio that was taken from a block but never ended up on an invoice,
+ * e.g. because another request won the ticket it was taken for. Each one is a known gap
+ * in its series.
+ */
+@Entity
+@Table(name = "voided_folios")
+@IdClass(VoidedFolio.Key.class)
+@Getter
+@Setter
+public class VoidedFolio extends PanacheEntityBase {
+
+    @Id
+    private String series;
+
+    @Id
+    private long folio;
+
+    /**
+     * The replica that took the folio
+     */
+    @Column(nullable = false)
+    private String nodeId;
+
+    /**
+     * Why the folio was not issued
+     */
+    @Column(nullable = false)
+    private String reason;
+
+    @Column(nullable = false)
+    private Instant voidedAt;
+
+    /**
+     * Finds all voided folios, by series and folio
+     *
+     * @return List of voided folios
+     */
+    public static List<VoidedFolio> findAllOrdered() {
+        return list("order by series, folio");
+    }
+
+    /**
+     * Composite key of a voided folio
+     */
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String series;
+        private long folio;
+    }
+}
@@ -0,0 +1,62 @@
+package org.flechaamarilla.repository;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowIterator;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.flechaamarilla.mapping.TicketParsingMode;
+import org.flechaamarilla.model.BusinessUnit;
+
+/**
+ * Non-blocking read access to business units over the reactive PostgreSQL client.
+ * Returns detached {@link BusinessUnit} instances for the reactive processing path;
+ * writes stay on the Panache entities.
+ */
+@ApplicationScoped
+public class ReactiveBusinessUnitRepository {
+
+    private static final String FIND_BY_ID = "SELECT id, name, description, rfc_emitter, emitter_name, "
+            + "default_currency, series, ticket_parsing_mode, items_path, ticket_id_path, ticket_date_path, "
+            + "iva_rate, ieps_rate, version FROM business_units WHERE id = $1";
+
+    @Inject
+    Pool client;
+
+    /**
+     * Finds a business unit by its ID
+     *
+     * @param id The business unit ID
+     * @return The business unit, or null if not found
+     */
+    public Uni<BusinessUnit> findById(Long id) {
+        return client.preparedQuery(FIND_BY_ID)
+                .execute(Tuple.of(id))
+                .map(rows -> {
+                    RowIterator<Row> iterator = rows.iterator();
+                    return iterator.hasNext() ? fromRow(iterator.next()) : null;
+                });
+    }
+
+    private static BusinessUnit fromRow(Row row) {
+        BusinessUnit unit = new BusinessUnit();
+        unit.id = row.getLong("id");
+        unit.setName(row.getString("name"));
+        unit.setDescription(row.getString("description"));
+        unit.setRfcEmitter(row.getString("rfc_emitter"));
+        unit.setEmitterName(row.getString("emitter_name"));
+        unit.setDefaultCurrency(row.getString("default_currency"));
+        unit.setSeries(row.getString("series"));
+        String parsingMode = row.getString("ticket_parsing_mode");
+        unit.setTicketParsingMode(parsingMode == null ? null : TicketParsingMode.valueOf(parsingMode));
+        unit.setItemsPath(row.getString("items_path"));
+        unit.setTicketIdPath(row.getString("ticket_id_path"));
+        unit.setTicketDatePath(row.getString("ticket_date_path"));
+        unit.setIvaRate(row.getBigDecimal("iva_rate"));
+        unit.setIepsRate(row.getBigDecimal("ieps_rate"));
+        unit.setVersion(row.getLong("version"));
+        return unit;
+    }
+}
@@ -0,0 +1,53 @@
+package org.flechaamarilla.repository;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.flechaamarilla.mapping.MappingScope;
+import org.flechaamarilla.model.FieldMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Non-blocking read access to field mappings over the reactive PostgreSQL client.
+ * Returns detached {@link FieldMapping} instances for the reactive processing path;
+ * writes stay on the Panache entities.
+ */
+@ApplicationScoped
+public class ReactiveFieldMappingRepository {
+
+    private static final String FIND_BY_BUSINESS_UNIT = "SELECT id, standard_field_name, source_field_name, transform, scope "
+            + "FROM field_mappings WHERE business_unit_id = $1 ORDER BY id";
+
+    @Inject
+    Pool client;
+
+    /**
+     * Finds all mappings for a specific business unit, in creation order
+     *
+     * @param businessUnitId The business unit ID
+     * @return List of field mappings
+     */
+    public Uni<List<FieldMapping>> findByBusinessUnit(Long businessUnitId) {
+        return client.preparedQuery(FIND_BY_BUSINESS_UNIT)
+                .execute(Tuple.of(businessUnitId))
+                .map(rows -> {
+                    List<FieldMapping> mappings = new ArrayList<>(rows.size());
+                    for (Row row : rows) {
+                        FieldMapping mapping = new FieldMapping();
+                        mapping.id = row.getLong("id");
+                        mapping.setStandardFieldName(row.getString("standard_field_name"));
+                        mapping.setSourceFieldName(row.getString("source_field_name"));
+                        mapping.setTransform(row.getString("transform"));
+                        String scope = row.getString("scope");
+                        mapping.setScope(scope == null ? null : MappingScope.valueOf(scope));
+                        mappings.add(mapping);
+                    }
+                    return mappings;
+                });
+    }
+}
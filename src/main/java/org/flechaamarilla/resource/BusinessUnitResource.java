@@ -3,15 +3,29 @@ package org.flechaamarilla.resource;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.flechaamarilla.dto.BusinessUnitDTO;
+import org.flechaamarilla.dto.BusinessUnitImportDTO;
+import org.flechaamarilla.dto.BusinessUnitSummaryDTO;
 import org.flechaamarilla.model.BusinessUnit;
 import org.flechaamarilla.model.FieldMapping;
+import org.flechaamarilla.service.BusinessUnitImportService;
 import org.flechaamarilla.service.BusinessUnitService;
+import org.flechaamarilla.service.ImportFormat;
+import org.flechaamarilla.service.MasterDataCache;
 
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -27,16 +41,59 @@ public class BusinessUnitResource {
     @Inject
     BusinessUnitService businessUnitService;
 
+    @Inject
+    MasterDataCache masterDataCache;
+
+    @Inject
+    BusinessUnitImportService importService;
+
+    @Inject
+    @ConfigProperty(name = "invoice.business-units.max-page-size", defaultValue = "1000")
+    int maxPageSize;
+
     /**
-     * Gets all business units
+     * Gets a page of business units in ID order. The next page, if any, is linked from the
+     * {@code Link} header ({@code rel="next"}). The response carries an ETag that changes with
+     * any business unit or mapping change, and a matching {@code If-None-Match} is answered
+     * with 304 without querying the database.
      *
-     * @return List of business units
+     * @param after ID of the last unit of the previous page; omitted for the first page
+     * @param limit Maximum number of units per page
+     * @param include {@code mappings} to include each unit's field mappings
+     * @param request The request, for its preconditions
+     * @param uriInfo The request URI, to build the next page link
+     * @return Page of business units
      */
     @GET
-    @Operation(summary = "Get all business units")
-    public Response getAllBusinessUnits() {
-        List<BusinessUnit> units = businessUnitService.listAllBusinessUnits();
-        return Response.ok(units).build();
+    @Operation(summary = "Get business units, paginated by ID")
+    public Response getAllBusinessUnits(@QueryParam("after") Long after,
+                                        @QueryParam("limit") @DefaultValue("100") int limit,
+                                        @QueryParam("include") String include,
+                                        @Context Request request,
+                                        @Context UriInfo uriInfo) {
+        // Read before querying: a change committed meanwhile then yields a stale tag, never stale data
+        EntityTag etag = new EntityTag(masterDataCache.getVersion());
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.cacheControl(cacheControl).build();
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        boolean includeMappings = include != null && Arrays.asList(include.split(",")).contains("mappings");
+        List<BusinessUnitSummaryDTO> units = businessUnitService.listBusinessUnits(after, pageSize, includeMappings);
+
+        Response.ResponseBuilder response = Response.ok(units).tag(etag).cacheControl(cacheControl);
+        if (units.size() == pageSize) {
+            Long last = units.get(units.size() - 1).getId();
+            response.link(uriInfo.getRequestUriBuilder()
+                    .replaceQueryParam("after", last)
+                    .replaceQueryParam("limit", pageSize)
+                    .build(), "next");
+        }
+        return response.build();
     }
 
     /**
@@ -85,6 +142,50 @@ public class BusinessUnitResource {
         return Response.status(Response.Status.CREATED).entity(created).build();
     }
 
+    /**
+     * Imports business units with their field mappings in bulk, committing them in chunks.
+     * The body is a JSON array, NDJSON (one unit per line) or CSV (one row per mapping, see
+     * {@link ImportFormat#CSV}); units whose name already exists are skipped.
+     *
+     * @param body The business units
+     * @param headers The request headers, for the body's format
+     * @param chunkSize Units per transaction; defaults to {@code invoice.import.chunk-size}
+     * @return The import result, or 409 if another import is running
+     */
+    @POST
+    @Path("/import")
+    @Consumes({MediaType.APPLICATION_JSON, "application/x-ndjson", "text/csv"})
+    @Operation(summary = "Import business units and their field mappings in bulk")
+    public Response importBusinessUnits(InputStream body,
+                                        @Context HttpHeaders headers,
+                                        @QueryParam("chunkSize") Integer chunkSize) {
+        ImportFormat format = ImportFormat.fromMediaType(headers.getMediaType());
+        if (format == null) {
+            return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).build();
+        }
+        BusinessUnitImportDTO result = importService.importBusinessUnits(body, format, chunkSize);
+        if (result == null) {
+            return Response.status(Response.Status.CONFLICT).entity(importService.getProgress()).build();
+        }
+        return Response.ok(result).build();
+    }
+
+    /**
+     * Gets the progress of the running bulk import, or the result of the last one
+     *
+     * @return The import progress, or 404 if nothing was imported since startup
+     */
+    @GET
+    @Path("/import")
+    @Operation(summary = "Get the progress of the current or last bulk import")
+    public Response getImportProgress() {
+        BusinessUnitImportDTO progress = importService.getProgress();
+        if (progress == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(progress).build();
+    }
+
     /**
      * Updates a business unit
      *
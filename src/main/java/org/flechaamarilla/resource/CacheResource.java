@@ -0,0 +1,61 @@
+package org.flechaamarilla.resource;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.flechaamarilla.service.MasterDataCache;
+
+/**
+ * REST API for inspecting and evicting the master-data cache
+ */
+@Path("/api/cache")
+@Produces(MediaType.APPLICATION_JSON)
+@Tag(name = "Master Data Cache", description = "Second-level cache of business units and field mappings")
+public class CacheResource {
+
+    @Inject
+    MasterDataCache masterDataCache;
+
+    /**
+     * Gets second-level and query cache statistics
+     *
+     * @return The cache statistics
+     */
+    @GET
+    @Path("/statistics")
+    @Operation(summary = "Get master-data cache statistics")
+    public Response getStatistics() {
+        return Response.ok(masterDataCache.getStatistics()).build();
+    }
+
+    /**
+     * Resets the cache statistics counters
+     *
+     * @return Response indicating success
+     */
+    @DELETE
+    @Path("/statistics")
+    @Operation(summary = "Reset master-data cache statistics")
+    public Response resetStatistics() {
+        masterDataCache.resetStatistics();
+        return Response.noContent().build();
+    }
+
+    /**
+     * Evicts all cached master data
+     *
+     * @return Response indicating success
+     */
+    @DELETE
+    @Operation(summary = "Evict all cached business units, field mappings and mapping plans")
+    public Response evictAll() {
+        masterDataCache.evictAll();
+        return Response.noContent().build();
+    }
+}
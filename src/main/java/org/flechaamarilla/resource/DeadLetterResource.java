@@ -0,0 +1,84 @@
+package org.flechaamarilla.resource;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriBuilder;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.flechaamarilla.dto.DeadLetterReplayDTO;
+import org.flechaamarilla.messaging.DeadLetterReplayer;
+import org.flechaamarilla.metrics.FailureReason;
+
+/**
+ * REST API for inspecting and replaying dead-lettered invoice requests
+ */
+@Path("/api/dead-letters")
+@Produces(MediaType.APPLICATION_JSON)
+@Tag(name = "Dead Letters", description = "Invoice requests that could not be processed")
+public class DeadLetterResource {
+
+    @Inject
+    DeadLetterReplayer deadLetterReplayer;
+
+    @Inject
+    @ConfigProperty(name = "invoice.dead-letter.replay.rate", defaultValue = "50")
+    double defaultRate;
+
+    /**
+     * Lists the dead-letter queues and their depth
+     *
+     * @return List of queues
+     */
+    @GET
+    @Operation(summary = "List dead-letter queues by error code")
+    public Response getQueues() {
+        return Response.ok(deadLetterReplayer.getQueues()).build();
+    }
+
+    /**
+     * Starts sending dead-lettered requests back for processing at a controlled rate
+     *
+     * @param errorCode Error code whose queue to replay; omitted for requests rejected by the broker
+     * @param limit Maximum number of requests to replay
+     * @param rate Requests per second; defaults to {@code invoice.dead-letter.replay.rate}
+     * @return 202 with the replay progress, or 409 with the progress of the replay already running
+     */
+    @POST
+    @Path("/replay")
+    @Operation(summary = "Replay dead-lettered invoice requests")
+    public Response replay(@QueryParam("errorCode") FailureReason errorCode,
+                           @QueryParam("limit") @DefaultValue("1000") int limit,
+                           @QueryParam("rate") Double rate) {
+        DeadLetterReplayDTO started = deadLetterReplayer.startReplay(errorCode, limit, rate != null ? rate : defaultRate);
+        if (started == null) {
+            return Response.status(Response.Status.CONFLICT).entity(deadLetterReplayer.getProgress()).build();
+        }
+        return Response.accepted(started)
+                .location(UriBuilder.fromResource(DeadLetterResource.class).path("replay").build())
+                .build();
+    }
+
+    /**
+     * Gets the progress of the running replay, or the result of the last one
+     *
+     * @return The replay progress, or 404 if nothing was replayed since startup
+     */
+    @GET
+    @Path("/replay")
+    @Operation(summary = "Get the progress of the current or last replay")
+    public Response getReplayProgress() {
+        DeadLetterReplayDTO progress = deadLetterReplayer.getProgress();
+        if (progress == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(progress).build();
+    }
+}
@@ -0,0 +1,85 @@
+package org.flechaamarilla.resource;
+
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.flechaamarilla.dto.FolioGapDTO;
+import org.flechaamarilla.model.FolioReservation;
+import org.flechaamarilla.model.VoidedFolio;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * REST API for auditing folio block reservations
+ */
+@Path("/api/folios")
+@Produces(MediaType.APPLICATION_JSON)
+@Tag(name = "Folio Audit", description = "Audit trail of folio block reservations")
+public class FolioResource {
+
+    /**
+     * Lists folio block reservations in a given status
+     *
+     * @param status Reservation status
+     * @return List of reservations
+     */
+    @GET
+    @Path("/reservations")
+    @Operation(summary = "List folio block reservations by status")
+    public Response getReservations(@QueryParam("status") @DefaultValue("ACTIVE") FolioReservation.Status status) {
+        return Response.ok(FolioReservation.findByStatus(status)).build();
+    }
+
+    /**
+     * Lists folio ranges that were reserved but possibly never issued: the unused tail of
+     * released blocks, the tail after the last heartbeat of active blocks whose node has
+     * not been heard from for {@code staleAfter} and is presumed dead, and voided folios
+     *
+     * @param staleAfter ISO-8601 duration without heartbeats after which an active block is reported;
+     *                   should be several times {@code invoice.folio.heartbeat-interval}
+     * @return List of gaps
+     */
+    @GET
+    @Path("/gaps")
+    @Operation(summary = "List folio ranges left unused by released or abandoned blocks, and voided folios")
+    public Response getGaps(@QueryParam("staleAfter") @DefaultValue("PT10M") String staleAfter) {
+        Instant staleBefore = Instant.now().minus(Duration.parse(staleAfter));
+        List<FolioGapDTO> gaps = new ArrayList<>();
+
+        for (FolioReservation released : FolioReservation.findByStatus(FolioReservation.Status.RELEASED)) {
+            long lastIssued = released.getLastIssued() == null ? released.getFirstFolio() - 1 : released.getLastIssued();
+            if (lastIssued < released.getLastFolio()) {
+                gaps.add(new FolioGapDTO(released.getSeries(), lastIssued + 1, released.getLastFolio(),
+                        released.getNodeId(), released.getReservedAt(), FolioReservation.Status.RELEASED.name(),
+                        null, released.getClosedAt()));
+            }
+        }
+
+        for (FolioReservation active : FolioReservation.findByStatus(FolioReservation.Status.ACTIVE)) {
+            // A live node heartbeats its blocks however few folios it issues
+            Instant lastSeen = active.getHeartbeatAt() == null ? active.getReservedAt() : active.getHeartbeatAt();
+            long lastIssued = active.getLastIssued() == null ? active.getFirstFolio() - 1 : active.getLastIssued();
+            if (lastSeen.isBefore(staleBefore) && lastIssued < active.getLastFolio()) {
+                gaps.add(new FolioGapDTO(active.getSeries(), lastIssued + 1, active.getLastFolio(),
+                        active.getNodeId(), active.getReservedAt(), FolioReservation.Status.ACTIVE.name(),
+                        null, active.getHeartbeatAt()));
+            }
+        }
+
+        for (VoidedFolio voided : VoidedFolio.findAllOrdered()) {
+            gaps.add(new FolioGapDTO(voided.getSeries(), voided.getFolio(), voided.getFolio(),
+                    voided.getNodeId(), null, "VOIDED", voided.getReason(), voided.getVoidedAt()));
+        }
+
+        return Response.ok(gaps).build();
+    }
+}
@@ -1,7 +1,12 @@
 package org.flechaamarilla.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
@@ -9,17 +14,27 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
 import lombok.extern.slf4j.Slf4j;
+import org.flechaamarilla.dto.BatchInvoiceResultDTO;
+import org.flechaamarilla.exception.InvoiceProcessingException;
+import org.flechaamarilla.messaging.MessagingCodec;
 import org.flechaamarilla.model.InvoiceRequest;
 import org.flechaamarilla.model.StandardInvoice;
+import org.flechaamarilla.service.BatchInvoiceService;
 import org.flechaamarilla.service.InvoiceProcessorService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
 /**
  * REST API for invoice operations
  */
@@ -31,41 +46,92 @@ import org.flechaamarilla.service.InvoiceProcessorService;
 public class InvoiceResource {
 
     @Inject
-    ObjectMapper objectMapper;
+    MessagingCodec messagingCodec;
 
     @Inject
     InvoiceProcessorService invoiceProcessorService;
 
+    @Inject
+    BatchInvoiceService batchInvoiceService;
+
+    @Inject
+    ObjectMapper objectMapper;
+
     @Inject
     @Channel("invoice-requests-out")
     Emitter<String> invoiceRequestEmitter;
 
+    @Inject
+    @ConfigProperty(name = "invoice.processing.reactive", defaultValue = "false")
+    boolean reactive;
+
     /**
-     * Processes an invoice request synchronously
+     * Processes an invoice request synchronously. With {@code invoice.processing.reactive}
+     * the request is handled without blocking on the event loop; otherwise the blocking
+     * pipeline runs on a worker thread.
      *
      * @param request The invoice request
-     * @return The processed standard invoice
+     * @return The processed standard invoice; 400 for a permanent failure, 503 for a transient one
      */
     @POST
     @Path("/process")
     @Operation(summary = "Process an invoice request synchronously")
-    public Response processInvoice(InvoiceRequest request) {
-        try {
-            log.info("Processing invoice request synchronously for: {}", request.getNombre());
-            StandardInvoice invoice = invoiceProcessorService.processInvoiceRequest(request);
+    public Uni<Response> processInvoice(InvoiceRequest request) {
+        log.info("Processing invoice request synchronously for: {}", request.getNombre());
 
-            if (invoice == null) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity("Failed to process invoice request")
-                        .build();
-            }
+        Uni<StandardInvoice> processing = reactive
+                ? invoiceProcessorService.processInvoiceRequestReactive(request)
+                : Uni.createFrom().item(() -> invoiceProcessorService.processInvoiceRequest(request))
+                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
 
-            return Response.ok(invoice).build();
-        } catch (Exception e) {
-            log.error("Error processing invoice request", e);
-            return Response.serverError()
-                    .entity("Error processing invoice: " + e.getMessage())
-                    .build();
+        return processing
+                .map(invoice -> Response.ok(invoice).build())
+                .onFailure(InvoiceProcessingException.class).recoverWithItem(e -> {
+                    // Transient failures are worth retrying; anything else is a bad request
+                    InvoiceProcessingException failure = (InvoiceProcessingException) e;
+                    return Response.status(failure.isRetryable()
+                                    ? Response.Status.SERVICE_UNAVAILABLE
+                                    : Response.Status.BAD_REQUEST)
+                            .entity("Failed to process invoice request (" + failure.getReason() + "): " + e.getMessage())
+                            .build();
+                })
+                .onFailure().recoverWithItem(e -> {
+                    log.error("Error processing invoice request", e);
+                    return Response.serverError()
+                            .entity("Error processing invoice: " + e.getMessage())
+                            .build();
+                });
+    }
+
+    /**
+     * Processes a batch of invoice requests in parallel, streaming each result back as a
+     * line of NDJSON as soon as it completes. Failed requests produce a line with
+     * {@code error} set instead of {@code invoice}; lines carry the request's position
+     * in the batch since they arrive in completion order.
+     *
+     * @param body A JSON array of invoice requests, or one request per line (NDJSON)
+     * @return The results, one JSON object per line
+     * @throws IOException If the body cannot be read
+     */
+    @POST
+    @Path("/process-batch")
+    @Consumes({MediaType.APPLICATION_JSON, "application/x-ndjson"})
+    @Produces("application/x-ndjson")
+    @RestStreamElementType(MediaType.TEXT_PLAIN)
+    @Blocking
+    @Operation(summary = "Process a batch of invoice requests, streaming results as NDJSON")
+    public Multi<String> processInvoiceBatch(InputStream body) throws IOException {
+        // One object per line: never indent, whatever the REST pretty-print setting
+        ObjectWriter lineWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        return batchInvoiceService.process(body)
+                .map(result -> toLine(lineWriter, result));
+    }
+
+    private static String toLine(ObjectWriter lineWriter, BatchInvoiceResultDTO result) {
+        try {
+            return lineWriter.writeValueAsString(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -80,10 +146,10 @@ public class InvoiceResource {
     @Operation(summary = "Queue an invoice request for asynchronous processing")
     public Response queueInvoice(InvoiceRequest request) {
         try {
-            String jsonRequest = objectMapper.writeValueAsString(request);
+            String jsonRequest = messagingCodec.toJson(request);
             log.info("Queueing invoice request for: {}", request.getNombre());
 
-            invoiceRequestEmitter.send(jsonRequest);
+            invoiceRequestEmitter.send(messagingCodec.requestMessage(jsonRequest));
 
             return Response.accepted()
                     .entity("Invoice request queued for processing")
@@ -1,7 +1,5 @@
 package org.flechaamarilla.resource;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
@@ -16,6 +14,7 @@ import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
 import lombok.extern.slf4j.Slf4j;
+import org.flechaamarilla.messaging.MessagingCodec;
 import org.flechaamarilla.model.InvoiceRequest;
 
 /**
@@ -30,7 +29,7 @@ import org.flechaamarilla.model.InvoiceRequest;
 public class TestMessagingResource {
 
     @Inject
-    ObjectMapper objectMapper;
+    MessagingCodec messagingCodec;
 
     @Inject
     @Channel("invoice-requests-out")
@@ -47,10 +46,10 @@ public class TestMessagingResource {
     @Operation(summary = "Send a test invoice request to the queue")
     public Response sendInvoiceRequest(InvoiceRequest request) {
         try {
-            String jsonRequest = objectMapper.writeValueAsString(request);
+            String jsonRequest = messagingCodec.toJson(request);
             log.info("Sending test invoice request: {}", jsonRequest);
 
-            invoiceRequestEmitter.send(jsonRequest);
+            invoiceRequestEmitter.send(messagingCodec.requestMessage(jsonRequest));
 
             return Response.ok()
                     .entity("Message sent successfully")
@@ -0,0 +1,186 @@
+package org.flechaamarilla.service;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.flechaamarilla.dto.BatchInvoiceResultDTO;
+import org.flechaamarilla.exception.InvoiceProcessingException;
+import org.flechaamarilla.model.InvoiceRequest;
+import org.flechaamarilla.model.StandardInvoice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processes a stream of invoice requests in parallel, emitting each result as soon as it
+ * is ready. Requests are read one at a time as processing capacity frees up, so at most
+ * {@code invoice.batch.concurrency} requests are held in memory regardless of batch size.
+ * Mapping plans and tickets come from the shared in-memory caches, so business units are
+ * resolved once for the whole batch.
+ */
+@ApplicationScoped
+@Slf4j
+public class BatchInvoiceService {
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    InvoiceProcessorService invoiceProcessorService;
+
+    @Inject
+    @ConfigProperty(name = "invoice.batch.concurrency", defaultValue = "64")
+    int concurrency;
+
+    @Inject
+    @ConfigProperty(name = "invoice.processing.reactive", defaultValue = "false")
+    boolean reactive;
+
+    private ObjectReader requestReader;
+
+    @PostConstruct
+    void init() {
+        requestReader = objectMapper.readerFor(InvoiceRequest.class);
+    }
+
+    /**
+     * Processes the requests of a JSON array or of newline-delimited JSON
+     *
+     * @param body The request body
+     * @return The results, in completion order
+     * @throws IOException If the body cannot be read
+     */
+    public Multi<BatchInvoiceResultDTO> process(InputStream body) throws IOException {
+        // Reads the elements of a top-level array, or a sequence of root-level values (NDJSON)
+        MappingIterator<InvoiceRequest> requests = requestReader.readValues(body);
+
+        long start = System.nanoTime();
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        BatchReader reader = new BatchReader(requests);
+        return Multi.createFrom().iterable(() -> reader)
+                // Body reads must not happen on the event loop: requests for more items run on a worker
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().transformToUni(this::process).merge(concurrency)
+                .onItem().invoke(result -> {
+                    processed.incrementAndGet();
+                    if (result.getError() != null) {
+                        failed.incrementAndGet();
+                    }
+                })
+                .onTermination().invoke(() -> {
+                    long elapsedMicros = Math.max(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), 1);
+                    log.info("Processed invoice batch of {} requests ({} failed) in {} ms: {} req/s",
+                            processed.get(), failed.get(), elapsedMicros / 1000,
+                            processed.get() * 1_000_000L / elapsedMicros);
+                    try {
+                        requests.close();
+                    } catch (IOException e) {
+                        log.debug("Error closing batch body", e);
+                    }
+                });
+    }
+
+    private Uni<BatchInvoiceResultDTO> process(BatchItem item) {
+        if (item.error != null) {
+            return Uni.createFrom().item(BatchInvoiceResultDTO.failure(item.index, null, item.error));
+        }
+
+        InvoiceRequest request = item.request;
+        Uni<StandardInvoice> processing = reactive
+                ? invoiceProcessorService.processInvoiceRequestReactive(request)
+                : Uni.createFrom().item(() -> invoiceProcessorService.processInvoiceRequest(request))
+                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+
+        return processing
+                .map(invoice -> BatchInvoiceResultDTO.success(item.index, request.getTokenTicket(), invoice))
+                .onFailure().recoverWithItem(e -> BatchInvoiceResultDTO.failure(item.index, request.getTokenTicket(),
+                        e instanceof InvoiceProcessingException failure
+                                ? failure.getReason() + ": " + failure.getMessage()
+                                : "Error processing invoice: " + e.getMessage()));
+    }
+
+    /**
+     * A request read from the batch, or the reason it could not be read
+     */
+    private static final class BatchItem {
+
+        final int index;
+        final InvoiceRequest request;
+        final String error;
+
+        BatchItem(int index, InvoiceRequest request, String error) {
+            this.index = index;
+            this.request = request;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Pulls requests from the body one at a time, on demand
+     */
+    private static final class BatchReader implements Iterator<BatchItem> {
+
+        private final MappingIterator<InvoiceRequest> requests;
+        private int nextIndex;
+        private boolean done;
+        private BatchItem pending;
+
+        BatchReader(MappingIterator<InvoiceRequest> requests) {
+            this.requests = requests;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending == null && !done) {
+                pending = read();
+            }
+            return pending != null;
+        }
+
+        @Override
+        public BatchItem next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BatchItem item = pending;
+            pending = null;
+            return item;
+        }
+
+        private BatchItem read() {
+            int index = nextIndex;
+            try {
+                if (!requests.hasNextValue()) {
+                    done = true;
+                    return null;
+                }
+                nextIndex++;
+                try {
+                    return new BatchItem(index, requests.nextValue(), null);
+                } catch (JsonMappingException e) {
+                    // A well-formed value that is not a request: report it and move on to the next one
+                    return new BatchItem(index, null, "Invalid request: " + e.getOriginalMessage());
+                }
+            } catch (IOException e) {
+                // Malformed JSON: nothing after this point can be read reliably
+                done = true;
+                return new BatchItem(index, null, "Malformed batch input: " + e.getMessage());
+            }
+        }
+    }
+}
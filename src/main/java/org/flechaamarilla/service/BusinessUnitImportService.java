@@ -0,0 +1,359 @@
+package org.flechaamarilla.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import io.quarkus.hibernate.orm.panache.Panache;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.flechaamarilla.dto.BusinessUnitDTO;
+import org.flechaamarilla.dto.BusinessUnitImportDTO;
+import org.flechaamarilla.mapping.MappingScope;
+import org.flechaamarilla.mapping.MappingsChangedEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Loads business units with their field mappings in bulk.
+ * <p>
+ * The input is streamed and committed in chunks of {@code invoice.import.chunk-size} units, each
+ * in its own transaction, so memory and transaction size stay bounded however large the input.
+ * Within a chunk the inserts go out in JDBC batches ({@code quarkus.hibernate-orm.jdbc.statement-batch-size},
+ * ordered inserts) with IDs from the entities' pooled sequences, instead of one round trip per row.
+ * Units whose name already exists are skipped, so an import that failed half way can simply be run again.
+ * One import runs at a time; its progress is published after every chunk.
+ */
+@ApplicationScoped
+@Slf4j
+public class BusinessUnitImportService {
+
+    private static final int MAX_ERRORS = 100;
+    private static final String SOURCE_FIELD_COLUMN = "sourceFieldName";
+    private static final String STANDARD_FIELD_COLUMN = "standardFieldName";
+    private static final String TRANSFORM_COLUMN = "transform";
+    private static final String SCOPE_COLUMN = "scope";
+    private static final Set<String> MAPPING_COLUMNS =
+            Set.of(SOURCE_FIELD_COLUMN, STANDARD_FIELD_COLUMN, TRANSFORM_COLUMN, SCOPE_COLUMN);
+
+    @Inject
+    BusinessUnitService businessUnitService;
+
+    @Inject
+    Event<MappingsChangedEvent> mappingsChanged;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    @ConfigProperty(name = "invoice.import.chunk-size", defaultValue = "500")
+    int defaultChunkSize;
+
+    private final CsvMapper csvMapper = new CsvMapper();
+    private final ReentrantLock running = new ReentrantLock();
+
+    private volatile BusinessUnitImportDTO progress;
+
+    /**
+     * Gets the progress of the running import, or the result of the last one
+     *
+     * @return The import progress, or null if nothing was imported since startup
+     */
+    public BusinessUnitImportDTO getProgress() {
+        return progress;
+    }
+
+    /**
+     * Imports business units from a stream
+     *
+     * @param input The business units in the given format
+     * @param format The input format
+     * @param chunkSize Units per transaction, or null for {@code invoice.import.chunk-size}
+     * @return The import result, or null if another import is running
+     */
+    public BusinessUnitImportDTO importBusinessUnits(InputStream input, ImportFormat format, Integer chunkSize) {
+        if (!running.tryLock()) {
+            return null;
+        }
+        try {
+            return runImport(input, format, chunkSize != null && chunkSize > 0 ? chunkSize : defaultChunkSize);
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private BusinessUnitImportDTO runImport(InputStream input, ImportFormat format, int chunkSize) {
+        ImportRun run = new ImportRun(format);
+        log.info("Importing business units from {} in chunks of {}", format, chunkSize);
+        publish(run, "RUNNING");
+
+        List<BusinessUnitDTO> chunk = new ArrayList<>(chunkSize);
+        try {
+            Iterator<BusinessUnitDTO> units = read(input, format);
+            while (units.hasNext()) {
+                BusinessUnitDTO unit;
+                try {
+                    unit = units.next();
+                } catch (InvalidUnitException e) {
+                    run.unitsRead++;
+                    run.reject("Unit #" + run.unitsRead + " (" + e.name + "): " + e.getMessage());
+                    continue;
+                } catch (RuntimeJsonMappingException e) {
+                    // A JSON unit with a value of the wrong type; the reader resumes at the next one
+                    run.unitsRead++;
+                    run.reject("Unit #" + run.unitsRead + ": " + e.getMessage());
+                    continue;
+                }
+                run.unitsRead++;
+                String invalid = validate(unit);
+                if (invalid != null) {
+                    run.reject("Unit #" + run.unitsRead + " (" + unit.getName() + "): " + invalid);
+                    continue;
+                }
+                chunk.add(unit);
+                if (chunk.size() == chunkSize) {
+                    commit(run, chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                commit(run, chunk);
+            }
+        } catch (Exception e) {
+            log.error("Business unit import failed after {} units", run.unitsRead, e);
+            run.error("Stopped after unit #" + run.unitsRead + ": " + e.getMessage());
+            return publish(run, "FAILED");
+        }
+
+        BusinessUnitImportDTO result = publish(run, "COMPLETED");
+        log.info("Imported {} business units and {} mappings in {} ms ({} skipped, {} rejected)",
+                result.getUnitsImported(), result.getMappingsImported(), result.getElapsedMillis(),
+                result.getUnitsSkipped(), result.getUnitsRejected());
+        return result;
+    }
+
+    private void commit(ImportRun run, List<BusinessUnitDTO> chunk) {
+        int[] counts = QuarkusTransaction.requiringNew().call(() -> {
+            Set<String> taken = new HashSet<>(Panache.getEntityManager()
+                    .createQuery("select b.name from BusinessUnit b where b.name in :names", String.class)
+                    .setParameter("names", chunk.stream().map(BusinessUnitDTO::getName).toList())
+                    .getResultList());
+
+            int units = 0;
+            int mappings = 0;
+            for (BusinessUnitDTO unit : chunk) {
+                if (taken.contains(unit.getName()) || !run.names.add(unit.getName())) {
+                    continue;
+                }
+                businessUnitService.persistWithMappings(unit);
+                units++;
+                mappings += unit.getFieldMappings() == null ? 0 : unit.getFieldMappings().size();
+            }
+            return new int[]{units, mappings};
+        });
+
+        run.unitsImported += counts[0];
+        run.unitsSkipped += chunk.size() - counts[0];
+        run.mappingsImported += counts[1];
+        run.chunksCommitted++;
+        // Committed already, so every replica's master-data caches and listing version are updated now
+        mappingsChanged.fire(MappingsChangedEvent.unitsAdded());
+
+        BusinessUnitImportDTO snapshot = publish(run, "RUNNING");
+        log.info("Business unit import: {} units read, {} imported, {} mappings, {} chunks in {} ms",
+                snapshot.getUnitsRead(), snapshot.getUnitsImported(), snapshot.getMappingsImported(),
+                snapshot.getChunksCommitted(), snapshot.getElapsedMillis());
+    }
+
+    private BusinessUnitImportDTO publish(ImportRun run, String status) {
+        BusinessUnitImportDTO snapshot = new BusinessUnitImportDTO(status, run.format.name(), run.startedAt,
+                Duration.between(run.startedAt, Instant.now()).toMillis(),
+                run.unitsRead, run.unitsImported, run.unitsSkipped, run.unitsRejected,
+                run.mappingsImported, run.chunksCommitted, List.copyOf(run.errors));
+        progress = snapshot;
+        return snapshot;
+    }
+
+    private static String validate(BusinessUnitDTO unit) {
+        if (isBlank(unit.getName()) || isBlank(unit.getDescription()) || isBlank(unit.getRfcEmitter())
+                || isBlank(unit.getEmitterName()) || isBlank(unit.getDefaultCurrency()) || isBlank(unit.getSeries())) {
+            return "name, description, rfcEmitter, emitterName, defaultCurrency and series are required";
+        }
+        if (unit.getFieldMappings() != null) {
+            for (BusinessUnitDTO.FieldMappingDTO mapping : unit.getFieldMappings()) {
+                if (isBlank(mapping.getSourceFieldName()) || isBlank(mapping.getStandardFieldName())) {
+                    return "every field mapping needs a sourceFieldName and a standardFieldName";
+                }
+                try {
+                    BusinessUnitService.checkMapping(mapping.getScope(), mapping.getSourceFieldName(),
+                            mapping.getStandardFieldName(), mapping.getTransform());
+                } catch (IllegalArgumentException e) {
+                    return e.getMessage();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private Iterator<BusinessUnitDTO> read(InputStream input, ImportFormat format) throws IOException {
+        if (format == ImportFormat.CSV) {
+            MappingIterator<Map<String, String>> rows = csvMapper
+                    .readerForMapOf(String.class)
+                    .with(CsvSchema.emptySchema().withHeader())
+                    .readValues(input);
+            return new CsvUnits(rows);
+        }
+        // A root-level array and a sequence of root-level values are both read one unit at a time
+        return objectMapper.readerFor(BusinessUnitDTO.class).readValues(input);
+    }
+
+    /**
+     * Groups consecutive CSV rows of the same business unit. A unit whose cells cannot be
+     * converted is still consumed whole, then reported with an {@link InvalidUnitException}.
+     */
+    private final class CsvUnits implements Iterator<BusinessUnitDTO> {
+
+        private final MappingIterator<Map<String, String>> rows;
+        private Map<String, String> pending;
+
+        CsvUnits(MappingIterator<Map<String, String>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pending != null || rows.hasNext();
+        }
+
+        @Override
+        public BusinessUnitDTO next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map<String, String> first = pending != null ? pending : rows.next();
+            pending = null;
+
+            String name = first.get("name");
+            List<Map<String, String>> unitRows = new ArrayList<>();
+            unitRows.add(first);
+            while (rows.hasNext()) {
+                Map<String, String> row = rows.next();
+                if (!isBlank(name) && name.equals(row.get("name"))) {
+                    unitRows.add(row);
+                } else {
+                    pending = row;
+                    break;
+                }
+            }
+
+            try {
+                BusinessUnitDTO unit = toUnit(first);
+                for (Map<String, String> row : unitRows) {
+                    addMapping(unit, row);
+                }
+                return unit;
+            } catch (IllegalArgumentException e) {
+                // Bad enum or number cells, or an unknown scope
+                throw new InvalidUnitException(name, e.getMessage());
+            }
+        }
+
+        private BusinessUnitDTO toUnit(Map<String, String> row) {
+            Map<String, String> columns = new LinkedHashMap<>();
+            row.forEach((column, value) -> {
+                if (!MAPPING_COLUMNS.contains(column) && !isBlank(value)) {
+                    columns.put(column, value);
+                }
+            });
+            return objectMapper.convertValue(columns, BusinessUnitDTO.class);
+        }
+
+        private void addMapping(BusinessUnitDTO unit, Map<String, String> row) {
+            String source = row.get(SOURCE_FIELD_COLUMN);
+            String standard = row.get(STANDARD_FIELD_COLUMN);
+            if (isBlank(source) && isBlank(standard)) {
+                return;
+            }
+            BusinessUnitDTO.FieldMappingDTO mapping = new BusinessUnitDTO.FieldMappingDTO();
+            mapping.setSourceFieldName(source);
+            mapping.setStandardFieldName(standard);
+            mapping.setTransform(row.get(TRANSFORM_COLUMN));
+            String scope = row.get(SCOPE_COLUMN);
+            if (!isBlank(scope)) {
+                try {
+                    mapping.setScope(MappingScope.valueOf(scope.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("unknown scope '" + scope + "' in mapping of " + source);
+                }
+            }
+            unit.getFieldMappings().add(mapping);
+        }
+    }
+
+    /**
+     * A unit of the input that could not be converted; the input can still be read past it
+     */
+    private static final class InvalidUnitException extends IllegalArgumentException {
+
+        final String name;
+
+        InvalidUnitException(String name, String message) {
+            super(message);
+            this.name = name;
+        }
+    }
+
+    /**
+     * Counters of one import
+     */
+    private static final class ImportRun {
+
+        final ImportFormat format;
+        final Instant startedAt = Instant.now();
+        final Set<String> names = new HashSet<>();
+        final List<String> errors = new ArrayList<>();
+        int unitsRead;
+        int unitsImported;
+        int unitsSkipped;
+        int unitsRejected;
+        int mappingsImported;
+        int chunksCommitted;
+
+        ImportRun(ImportFormat format) {
+            this.format = format;
+        }
+
+        void reject(String error) {
+            unitsRejected++;
+            error(error);
+        }
+
+        void error(String error) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+}
@@ -1,12 +1,25 @@
 package org.flechaamarilla.service;
 
+import io.quarkus.hibernate.orm.panache.Panache;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
 import jakarta.transaction.Transactional;
 import org.flechaamarilla.dto.BusinessUnitDTO;
+import org.flechaamarilla.dto.BusinessUnitSummaryDTO;
+import org.flechaamarilla.mapping.MappingScope;
+import org.flechaamarilla.mapping.MappingsChangedEvent;
 import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.mapping.TicketHeaderField;
+import org.flechaamarilla.mapping.TicketLayout;
+import org.flechaamarilla.mapping.TicketParsingMode;
+import org.flechaamarilla.mapping.TransformExpression;
 import org.flechaamarilla.model.FieldMapping;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -17,6 +30,9 @@ import java.util.stream.Collectors;
 @ApplicationScoped
 public class BusinessUnitService {
 
+    @Inject
+    Event<MappingsChangedEvent> mappingsChanged;
+
     /**
      * Retrieves a business unit by its ID
      *
@@ -47,6 +63,19 @@ public class BusinessUnitService {
      */
     @Transactional
     public BusinessUnit createBusinessUnitWithMappings(BusinessUnitDTO dto) {
+        BusinessUnit businessUnit = persistWithMappings(dto);
+        mappingsChanged.fire(new MappingsChangedEvent(businessUnit.getId()));
+        return businessUnit;
+    }
+
+    /**
+     * Persists a business unit and its field mappings in the current transaction.
+     * The inserts are only queued: they are sent in JDBC batches when the transaction flushes.
+     *
+     * @param dto The business unit DTO containing mappings
+     * @return The persisted business unit with its mappings
+     */
+    BusinessUnit persistWithMappings(BusinessUnitDTO dto) {
         // Create the business unit
         BusinessUnit businessUnit = new BusinessUnit();
         businessUnit.setName(dto.getName());
@@ -55,6 +84,12 @@ public class BusinessUnitService {
         businessUnit.setEmitterName(dto.getEmitterName());
         businessUnit.setDefaultCurrency(dto.getDefaultCurrency());
         businessUnit.setSeries(dto.getSeries());
+        businessUnit.setTicketParsingMode(dto.getTicketParsingMode());
+        businessUnit.setItemsPath(dto.getItemsPath());
+        businessUnit.setTicketIdPath(dto.getTicketIdPath());
+        businessUnit.setTicketDatePath(dto.getTicketDatePath());
+        businessUnit.setIvaRate(dto.getIvaRate());
+        businessUnit.setIepsRate(dto.getIepsRate());
         businessUnit.persist();
 
         // Create field mappings
@@ -64,6 +99,9 @@ public class BusinessUnitService {
                 FieldMapping mapping = new FieldMapping();
                 mapping.setSourceFieldName(mappingDto.getSourceFieldName());
                 mapping.setStandardFieldName(mappingDto.getStandardFieldName());
+                mapping.setScope(mappingDto.getScope());
+                mapping.setTransform(checkMapping(mappingDto.getScope(), mappingDto.getSourceFieldName(),
+                        mappingDto.getStandardFieldName(), mappingDto.getTransform()));
                 mapping.setBusinessUnit(businessUnit);
                 mapping.persist();
                 mappings.add(mapping);
@@ -72,7 +110,6 @@ public class BusinessUnitService {
 
         // Set field mappings
         businessUnit.setFieldMappings(mappings);
-
         return businessUnit;
     }
 
@@ -96,28 +133,98 @@ public class BusinessUnitService {
         entity.setEmitterName(businessUnit.getEmitterName());
         entity.setDefaultCurrency(businessUnit.getDefaultCurrency());
         entity.setSeries(businessUnit.getSeries());
+        entity.setTicketParsingMode(businessUnit.getTicketParsingMode());
+        entity.setItemsPath(businessUnit.getItemsPath());
+        entity.setTicketIdPath(businessUnit.getTicketIdPath());
+        entity.setTicketDatePath(businessUnit.getTicketDatePath());
+        entity.setIvaRate(businessUnit.getIvaRate());
+        entity.setIepsRate(businessUnit.getIepsRate());
 
+        mappingsChanged.fire(new MappingsChangedEvent(id));
         return entity;
     }
 
     /**
-     * Deletes a business unit
+     * Deletes a business unit; its cached entry is evicted after commit
      *
      * @param id The business unit ID
      * @return True if deleted, false if not found
      */
     @Transactional
     public boolean deleteBusinessUnit(Long id) {
-        return BusinessUnit.deleteById(id);
+        boolean deleted = BusinessUnit.deleteById(id);
+        if (deleted) {
+            mappingsChanged.fire(new MappingsChangedEvent(id));
+        }
+        return deleted;
     }
 
     /**
-     * Lists all business units
+     * Lists one page of business units in ID order using keyset pagination: the page starts after
+     * the last ID of the previous one, so deep pages cost the same as the first.
+     * Units are read with a projection query and their mappings, when requested, with a single
+     * query for the whole page, so no entity or lazy collection is loaded.
      *
-     * @return List of all business units
+     * @param afterId Last ID of the previous page, or null for the first page
+     * @param limit Maximum number of units to return
+     * @param includeMappings Whether to include each unit's field mappings
+     * @return The page of business units
      */
-    public List<BusinessUnit> listAllBusinessUnits() {
-        return BusinessUnit.listAll();
+    public List<BusinessUnitSummaryDTO> listBusinessUnits(Long afterId, int limit, boolean includeMappings) {
+        List<Object[]> rows = Panache.getEntityManager()
+                .createQuery("select b.id, b.name, b.description, b.rfcEmitter, b.emitterName, b.defaultCurrency, "
+                                + "b.series, b.ticketParsingMode, b.itemsPath, b.ticketIdPath, b.ticketDatePath, "
+                                + "b.ivaRate, b.iepsRate from BusinessUnit b where b.id > :after order by b.id",
+                        Object[].class)
+                .setParameter("after", afterId == null ? Long.MIN_VALUE : afterId)
+                .setMaxResults(limit)
+                .getResultList();
+
+        List<BusinessUnitSummaryDTO> units = new ArrayList<>(rows.size());
+        Map<Long, BusinessUnitSummaryDTO> byId = new HashMap<>();
+        for (Object[] row : rows) {
+            BusinessUnitSummaryDTO unit = toSummary(row);
+            units.add(unit);
+            byId.put(unit.getId(), unit);
+        }
+
+        if (includeMappings && !units.isEmpty()) {
+            for (BusinessUnitSummaryDTO unit : units) {
+                unit.setFieldMappings(new ArrayList<>());
+            }
+            Panache.getEntityManager()
+                    .createQuery("select m.businessUnit.id, m.sourceFieldName, m.standardFieldName, m.transform, m.scope from FieldMapping m "
+                            + "where m.businessUnit.id in :ids order by m.businessUnit.id, m.id", Object[].class)
+                    .setParameter("ids", byId.keySet())
+                    .getResultStream()
+                    .forEach(row -> {
+                        BusinessUnitDTO.FieldMappingDTO mapping = new BusinessUnitDTO.FieldMappingDTO();
+                        mapping.setSourceFieldName((String) row[1]);
+                        mapping.setStandardFieldName((String) row[2]);
+                        mapping.setTransform((String) row[3]);
+                        mapping.setScope((MappingScope) row[4]);
+                        byId.get((Long) row[0]).getFieldMappings().add(mapping);
+                    });
+        }
+        return units;
+    }
+
+    private static BusinessUnitSummaryDTO toSummary(Object[] row) {
+        BusinessUnitSummaryDTO unit = new BusinessUnitSummaryDTO();
+        unit.setId((Long) row[0]);
+        unit.setName((String) row[1]);
+        unit.setDescription((String) row[2]);
+        unit.setRfcEmitter((String) row[3]);
+        unit.setEmitterName((String) row[4]);
+        unit.setDefaultCurrency((String) row[5]);
+        unit.setSeries((String) row[6]);
+        unit.setTicketParsingMode((TicketParsingMode) row[7]);
+        unit.setItemsPath((String) row[8]);
+        unit.setTicketIdPath((String) row[9]);
+        unit.setTicketDatePath((String) row[10]);
+        unit.setIvaRate((BigDecimal) row[11]);
+        unit.setIepsRate((BigDecimal) row[12]);
+        return unit;
     }
 
     /**
@@ -140,6 +247,7 @@ public class BusinessUnitService {
      * @param businessUnitId The business unit ID
      * @param mapping The field mapping to add
      * @return The created field mapping
+     * @throws IllegalArgumentException If the mapping's source path or transform is not valid
      */
     @Transactional
     public FieldMapping addFieldMapping(Long businessUnitId, FieldMapping mapping) {
@@ -148,8 +256,54 @@ public class BusinessUnitService {
             return null;
         }
 
+        mapping.setTransform(checkMapping(mapping.getScope(), mapping.getSourceFieldName(),
+                mapping.getStandardFieldName(), mapping.getTransform()));
         mapping.setBusinessUnit(businessUnit);
         mapping.persist();
+        // A new mapping is a new version of the unit, for the replicas' mapping registries
+        Panache.getEntityManager().lock(businessUnit, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        if (businessUnit.getFieldMappings() != null) {
+            // Keep the managed inverse side in step; its cached copy is evicted after commit
+            businessUnit.getFieldMappings().add(mapping);
+        }
+
+        mappingsChanged.fire(new MappingsChangedEvent(businessUnitId));
         return mapping;
     }
+
+    /**
+     * Rejects a mapping that its plan could not compile, so it fails on save rather than per ticket
+     *
+     * @param scope The mapping scope, null for item
+     * @param sourceFieldName The source path, a JSON pointer or dotted path
+     * @param standardFieldName The target field
+     * @param transform The transform expression, may be null or blank
+     * @return The expression, or null for a plain rename
+     * @throws IllegalArgumentException If the source path, target field or transform is not valid
+     */
+    static String checkMapping(MappingScope scope, String sourceFieldName, String standardFieldName, String transform) {
+        if (sourceFieldName == null || sourceFieldName.isBlank()) {
+            throw new IllegalArgumentException("Mapping source path is required");
+        }
+        try {
+            TicketLayout.toPointer(sourceFieldName);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid source path '" + sourceFieldName + "': " + e.getMessage());
+        }
+
+        boolean transformed = transform != null && !transform.isBlank();
+        if (scope == MappingScope.HEADER) {
+            if (TicketHeaderField.fromStandardName(standardFieldName) == null) {
+                throw new IllegalArgumentException("Unknown header field '" + standardFieldName + "'");
+            }
+            if (transformed) {
+                throw new IllegalArgumentException("Header mappings take no transform");
+            }
+        }
+        if (!transformed) {
+            return null;
+        }
+        TransformExpression.compile(transform);
+        return transform;
+    }
 }
\ No newline at end of file
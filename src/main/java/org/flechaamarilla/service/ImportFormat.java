@@ -0,0 +1,43 @@
+package org.flechaamarilla.service;
+
+import jakarta.ws.rs.core.MediaType;
+
+/**
+ * Input formats of the bulk business unit import
+ */
+public enum ImportFormat {
+
+    /**
+     * A JSON array of business units, each with its {@code fieldMappings}
+     */
+    JSON,
+
+    /**
+     * One JSON business unit per line
+     */
+    NDJSON,
+
+    /**
+     * One row per field mapping with the business unit columns repeated; consecutive rows with
+     * the same {@code name} form one unit, and a row without mapping columns is a unit without mappings
+     */
+    CSV;
+
+    /**
+     * Resolves the format of a request body
+     *
+     * @param mediaType The request content type
+     * @return The matching format or null if unsupported
+     */
+    public static ImportFormat fromMediaType(MediaType mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        return switch (mediaType.getSubtype().toLowerCase()) {
+            case "json" -> JSON;
+            case "x-ndjson", "ndjson", "jsonl" -> NDJSON;
+            case "csv" -> CSV;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package org.flechaamarilla.service;
+
+import org.flechaamarilla.exception.InvoiceProcessingException;
+import org.flechaamarilla.model.StandardInvoice;
+
+/**
+ * Result of one request of a group: its invoice, or why there is none
+ *
+ * @param invoice The invoice, or null on failure
+ * @param failure The failure, or null on success
+ */
+public record InvoiceOutcome(StandardInvoice invoice, InvoiceProcessingException failure) {
+
+    public static InvoiceOutcome success(StandardInvoice invoice) {
+        return new InvoiceOutcome(invoice, null);
+    }
+
+    public static InvoiceOutcome failure(InvoiceProcessingException failure) {
+        return new InvoiceOutcome(null, failure);
+    }
+
+    /**
+     * @return True if an invoice was produced
+     */
+    public boolean isSuccess() {
+        return failure == null;
+    }
+}
@@ -2,16 +2,35 @@ package org.flechaamarilla.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
-import org.flechaamarilla.model.BusinessUnit;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.flechaamarilla.exception.InvoiceProcessingException;
+import org.flechaamarilla.folio.FolioAllocator;
+import org.flechaamarilla.idempotency.ProcessedInvoiceCache;
+import org.flechaamarilla.mapping.MappingPlan;
+import org.flechaamarilla.mapping.MappingRegistry;
+import org.flechaamarilla.mapping.StreamingTicketTransformer;
+import org.flechaamarilla.mapping.TicketParsingMode;
+import org.flechaamarilla.mapping.TicketTransformer;
+import org.flechaamarilla.mapping.TreeTicketTransformer;
+import org.flechaamarilla.metrics.FailureReason;
+import org.flechaamarilla.metrics.InvoiceMetrics;
+import org.flechaamarilla.metrics.PipelineStage;
 import org.flechaamarilla.model.InvoiceRequest;
 import org.flechaamarilla.model.StandardInvoice;
+import org.flechaamarilla.tax.InvoiceTotals;
+import org.flechaamarilla.tax.TaxCalculator;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Map;
-import java.util.UUID;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service that processes invoice requests and transforms them into standardized format
@@ -21,7 +40,7 @@ import java.util.UUID;
 public class InvoiceProcessorService {
 
     @Inject
-    BusinessUnitService businessUnitService;
+    MappingRegistry mappingRegistry;
 
     @Inject
     ObjectMapper objectMapper;
@@ -29,148 +48,452 @@ public class InvoiceProcessorService {
     @Inject
     TicketService ticketService;
 
+    @Inject
+    FolioAllocator folioAllocator;
+
+    @Inject
+    ProcessedInvoiceCache processedInvoices;
+
+    @Inject
+    InvoiceMetrics metrics;
+
+    @Inject
+    @ConfigProperty(name = "invoice.processing.ticket-parsing-mode", defaultValue = "TREE")
+    TicketParsingMode defaultParsingMode;
+
+    @Inject
+    @ConfigProperty(name = "invoice.tax.iva-rate", defaultValue = "0.16")
+    BigDecimal defaultIvaRate;
+
+    private TreeTicketTransformer treeTransformer;
+    private TicketTransformer streamingTransformer;
+    private TaxCalculator taxCalculator;
+
+    @PostConstruct
+    void init() {
+        treeTransformer = new TreeTicketTransformer(objectMapper);
+        streamingTransformer = new StreamingTicketTransformer(objectMapper.getFactory());
+        taxCalculator = new TaxCalculator(defaultIvaRate);
+    }
+
     /**
      * Processes an invoice request by:
-     * 1. Fetching the business unit data
-     * 2. Fetching the ticket data using the token
-     * 3. Mapping fields according to the business unit's mappings
-     * 4. Creating a standardized invoice
+     * 1. Fetching the business unit's compiled mapping plan (cached in memory)
+     * 2. Returning the previously produced invoice if the ticket was already processed
+     * 3. Fetching the ticket data using the token
+     * 4. Mapping fields according to the plan
+     * 5. Creating a standardized invoice and recording it for the ticket
+     * Each stage is timed, and a request producing no invoice is counted with its {@link FailureReason}.
      *
      * @param request The invoice request from the client
-     * @return A standardized invoice or null if processing failed
+     * @return A standardized invoice
+     * @throws InvoiceProcessingException If no invoice could be produced
      */
     public StandardInvoice processInvoiceRequest(InvoiceRequest request) {
+        requireTicketToken(request);
+
+        // Get the business unit data and its mappings
+        MappingPlan plan = lookupPlan(request.getUnidadNegocio(), 1);
+
+        return processWithPlan(request, plan);
+    }
+
+    /**
+     * Processes an invoice request without blocking the calling thread: the mapping plan is
+     * served from memory or loaded over the reactive client, the ticket is fetched
+     * asynchronously and the folio comes from the in-memory block. Deduplication queries,
+     * when memory cannot answer, and the invoice record run on a worker thread.
+     *
+     * @param request The invoice request from the client
+     * @return A standardized invoice, or a {@link InvoiceProcessingException} failure
+     */
+    public Uni<StandardInvoice> processInvoiceRequestReactive(InvoiceRequest request) {
         try {
-            // Get the business unit
-            BusinessUnit businessUnit = businessUnitService.getBusinessUnit(request.getUnidadNegocio());
-            if (businessUnit == null) {
-                log.error("Business unit not found: {}", request.getUnidadNegocio());
-                return null;
+            requireTicketToken(request);
+        } catch (InvoiceProcessingException e) {
+            return Uni.createFrom().failure(e);
+        }
+
+        Long businessUnitId = request.getUnidadNegocio();
+        long lookupStart = System.nanoTime();
+        return mappingRegistry.getPlanReactive(businessUnitId)
+                .onTermination().invoke(() -> metrics.record(PipelineStage.BUSINESS_UNIT_LOOKUP, lookupStart))
+                .onFailure().transform(e -> {
+                    log.error("Error reading business unit {}", businessUnitId, e);
+                    // Not known to exist, so not counted under its ID
+                    return failed(FailureReason.UNEXPECTED, null, "Error reading business unit " + businessUnitId, e);
+                })
+                .chain(plan -> {
+                    if (plan == null) {
+                        log.error("Business unit not found: {}", businessUnitId);
+                        // Counted as unknown: the ID comes from the client, so tagging it would let any
+                        // caller create meters without bound
+                        return Uni.createFrom().<StandardInvoice>failure(failed(FailureReason.BUSINESS_UNIT_NOT_FOUND,
+                                null, "Business unit not found: " + businessUnitId, null));
+                    }
+                    return processClaimedReactive(request, plan);
+                })
+                .onFailure(e -> !(e instanceof InvoiceProcessingException)).transform(e -> {
+                    log.error("Error processing invoice request", e);
+                    return failed(FailureReason.UNEXPECTED, businessUnitId, "Error processing invoice request", e);
+                });
+    }
+
+    private Uni<StandardInvoice> processClaimedReactive(InvoiceRequest request, MappingPlan plan) {
+        Long businessUnitId = plan.getBusinessUnitId();
+        String tokenTicket = request.getTokenTicket();
+        return Uni.createFrom().deferred(() -> {
+            CompletableFuture<StandardInvoice> pending = processedInvoices.claim(businessUnitId, tokenTicket);
+            if (pending != null) {
+                // Another request for the ticket is running: take its invoice, or try again if it failed
+                return Uni.createFrom().completionStage(pending).chain(invoice -> {
+                    if (invoice == null) {
+                        return processClaimedReactive(request, plan);
+                    }
+                    metrics.duplicate(businessUnitId);
+                    return Uni.createFrom().item(invoice);
+                });
             }
+            return findProcessedReactive(request, plan)
+                    .chain(previous -> previous != null
+                            ? Uni.createFrom().item(previous)
+                            : processTicketReactive(request, plan))
+                    .onItemOrFailure().invoke((invoice, failure) ->
+                            processedInvoices.release(businessUnitId, tokenTicket, invoice))
+                    .onCancellation().invoke(() -> processedInvoices.release(businessUnitId, tokenTicket, null));
+        });
+    }
 
-            // Get ticket data
-            String ticketData = ticketService.getTicketData(request.getTokenTicket(), businessUnit.getId());
-            if (ticketData == null) {
-                log.error("Ticket data not found for token: {}", request.getTokenTicket());
-                return null;
+    private Uni<StandardInvoice> findProcessedReactive(InvoiceRequest request, MappingPlan plan) {
+        Uni<StandardInvoice> previous;
+        if (processedInvoices.isAnsweredInMemory(plan.getBusinessUnitId(), request.getTokenTicket())) {
+            previous = Uni.createFrom().item(processedInvoices.find(plan.getBusinessUnitId(), request.getTokenTicket()));
+        } else {
+            previous = Uni.createFrom().item(() -> processedInvoices.find(plan.getBusinessUnitId(), request.getTokenTicket()))
+                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        }
+        return previous.invoke(invoice -> {
+            if (invoice != null) {
+                metrics.duplicate(plan.getBusinessUnitId());
             }
+        });
+    }
 
-            // Get field mappings for this business unit
-            Map<String, String> fieldMappings = businessUnitService.getFieldMappings(businessUnit.getId());
+    private Uni<StandardInvoice> processTicketReactive(InvoiceRequest request, MappingPlan plan) {
+        Long businessUnitId = plan.getBusinessUnitId();
+        long fetchStart = System.nanoTime();
+        return ticketService.fetchTicket(request.getTokenTicket(), businessUnitId)
+                .onTermination().invoke(() -> metrics.record(PipelineStage.TICKET_FETCH, fetchStart))
+                .onItemOrFailure().transformToUni((ticketData, failure) -> {
+                    if (failure != null) {
+                        log.error("Error retrieving ticket data", failure);
+                        return Uni.createFrom().<StandardInvoice>failure(failed(FailureReason.TICKET_FETCH_ERROR,
+                                businessUnitId, "Error retrieving ticket data", failure));
+                    }
+                    if (ticketData == null) {
+                        return Uni.createFrom().<StandardInvoice>failure(failed(FailureReason.TICKET_NOT_FOUND,
+                                businessUnitId, "Ticket not found: " + request.getTokenTicket(), null));
+                    }
+                    StandardInvoice invoice;
+                    try {
+                        invoice = buildInvoice(request, plan, ticketData);
+                    } catch (IOException e) {
+                        log.error("Invalid ticket data for token: {}", request.getTokenTicket(), e);
+                        return Uni.createFrom().<StandardInvoice>failure(failed(FailureReason.INVALID_TICKET,
+                                businessUnitId, "Invalid ticket data for token: " + request.getTokenTicket(), e));
+                    }
+                    long folioStart = System.nanoTime();
+                    return folioAllocator.nextFolioAsync(plan.getSeries())
+                            .onFailure().transform(e -> {
+                                log.error("Could not issue a folio of series {}", plan.getSeries(), e);
+                                return failed(FailureReason.FOLIO_ERROR, businessUnitId,
+                                        "Could not issue a folio of series " + plan.getSeries(), e);
+                            })
+                            .chain(folio -> {
+                                metrics.record(PipelineStage.FOLIO, folioStart);
+                                invoice.setFolio(folio);
+                                return Uni.createFrom()
+                                        .item(() -> processedInvoices.record(businessUnitId, request.getTokenTicket(), invoice))
+                                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                                        .onFailure().invoke(e -> voidFolio(plan, folio, e));
+                            })
+                            .invoke(() -> metrics.created(businessUnitId));
+                });
+    }
 
-            // Parse ticket data
-            JsonNode ticketJson = objectMapper.readTree(ticketData);
+    /**
+     * Processes several invoice requests of the same business unit, resolving the
+     * business unit and its mappings once for the whole group
+     *
+     * @param businessUnitId The business unit shared by all requests
+     * @param requests The invoice requests
+     * @return The outcome of each request, in request order
+     */
+    public List<InvoiceOutcome> processInvoiceRequests(Long businessUnitId, List<InvoiceRequest> requests) {
+        List<InvoiceOutcome> outcomes = new ArrayList<>(requests.size());
 
-            // Create standardized invoice
-            StandardInvoice invoice = new StandardInvoice();
+        MappingPlan plan;
+        try {
+            plan = lookupPlan(businessUnitId, requests.size());
+        } catch (InvoiceProcessingException e) {
+            for (int i = 0; i < requests.size(); i++) {
+                outcomes.add(InvoiceOutcome.failure(e));
+            }
+            return outcomes;
+        }
+        for (InvoiceRequest request : requests) {
+            try {
+                requireTicketToken(request);
+                outcomes.add(InvoiceOutcome.success(processWithPlan(request, plan)));
+            } catch (InvoiceProcessingException e) {
+                outcomes.add(InvoiceOutcome.failure(e));
+            }
+        }
+        return outcomes;
+    }
 
-            // Set emitter data from business unit
-            invoice.setRfcEmisor(businessUnit.getRfcEmitter());
-            invoice.setNombreEmisor(businessUnit.getEmitterName());
+    /**
+     * Rejects a request that names no ticket before it reaches the ticket sources
+     *
+     * @param request The invoice request from the client
+     * @throws InvoiceProcessingException If the request has no ticket token
+     */
+    private void requireTicketToken(InvoiceRequest request) {
+        String tokenTicket = request.getTokenTicket();
+        if (tokenTicket == null || tokenTicket.isBlank()) {
+            log.error("Invoice request of business unit {} has no tokenTicket", request.getUnidadNegocio());
+            throw failed(FailureReason.INVALID_REQUEST, null, "Invoice request has no tokenTicket", null);
+        }
+    }
 
-            // Set receiver data from request
-            invoice.setRfcReceptor(request.getRfc());
-            invoice.setNombreReceptor(request.getNombre());
-            invoice.setUsoCfdi(request.getUsoCfdi());
-            invoice.setFormaPago(request.getFormaPago());
+    /**
+     * Resolves a business unit's mapping plan, counting every waiting request as failed if there is none
+     *
+     * @param businessUnitId The business unit ID
+     * @param requestCount Number of requests waiting for the plan
+     * @return The plan
+     * @throws InvoiceProcessingException If the business unit does not exist or cannot be read
+     */
+    private MappingPlan lookupPlan(Long businessUnitId, int requestCount) {
+        long start = System.nanoTime();
+        MappingPlan plan;
+        try {
+            plan = mappingRegistry.getPlan(businessUnitId);
+        } catch (Exception e) {
+            log.error("Error processing invoice requests for business unit {}", businessUnitId, e);
+            metrics.failure(FailureReason.UNEXPECTED, null, requestCount);
+            throw new InvoiceProcessingException(FailureReason.UNEXPECTED,
+                    "Error reading business unit " + businessUnitId, e);
+        } finally {
+            metrics.record(PipelineStage.BUSINESS_UNIT_LOOKUP, start);
+        }
+        if (plan == null) {
+            log.error("Business unit not found: {} ({} requests)", businessUnitId, requestCount);
+            // Counted as unknown: per-unit meters are only created for units that exist
+            metrics.failure(FailureReason.BUSINESS_UNIT_NOT_FOUND, null, requestCount);
+            throw new InvoiceProcessingException(FailureReason.BUSINESS_UNIT_NOT_FOUND,
+                    "Business unit not found: " + businessUnitId);
+        }
+        return plan;
+    }
 
-            // Set standard data
-            invoice.setMetodoPago("PUE"); // Default value, can be customized
-            invoice.setMoneda(businessUnit.getDefaultCurrency());
-            invoice.setSerie(businessUnit.getSeries());
-            invoice.setFolio(generateFolio());
+    /**
+     * Builds the invoice for a request once its business unit's plan is known
+     *
+     * @param request The invoice request from the client
+     * @param plan The business unit's compiled mapping plan
+     * @return A standardized invoice
+     * @throws InvoiceProcessingException If no invoice could be produced
+     */
+    private StandardInvoice processWithPlan(InvoiceRequest request, MappingPlan plan) {
+        Long businessUnitId = plan.getBusinessUnitId();
+        String tokenTicket = request.getTokenTicket();
 
-            // Process concepts from ticket
-            invoice.setConceptos(processTicketConcepts(ticketJson, fieldMappings));
+        // Concurrent requests for the ticket wait for the first one rather than take a folio each
+        CompletableFuture<StandardInvoice> pending;
+        while ((pending = processedInvoices.claim(businessUnitId, tokenTicket)) != null) {
+            StandardInvoice invoice = pending.join();
+            if (invoice != null) {
+                metrics.duplicate(businessUnitId);
+                return invoice;
+            }
+            // The request holding the claim failed; try this one
+        }
 
+        StandardInvoice invoice = null;
+        try {
+            invoice = processClaimed(request, plan);
             return invoice;
-        } catch (Exception e) {
-            log.error("Error processing invoice request", e);
-            return null;
+        } finally {
+            processedInvoices.release(businessUnitId, tokenTicket, invoice);
         }
     }
 
     /**
-     * Processes the concepts from a ticket JSON
+     * Builds the invoice for a request whose ticket it holds the claim of
      *
-     * @param ticketJson The JSON node containing ticket data
-     * @param fieldMappings The field mappings for the business unit
-     * @return List of standardized invoice concepts
+     * @param request The invoice request from the client
+     * @param plan The business unit's compiled mapping plan
+     * @return A standardized invoice
+     * @throws InvoiceProcessingException If no invoice could be produced
      */
-    private ArrayList<StandardInvoice.InvoiceConcept> processTicketConcepts(
-            JsonNode ticketJson, Map<String, String> fieldMappings) {
-
-        ArrayList<StandardInvoice.InvoiceConcept> concepts = new ArrayList<>();
-
-        // Handle concepts/items from the ticket
-        JsonNode itemsNode = ticketJson.path("items");
-        if (itemsNode.isArray()) {
-            for (JsonNode item : itemsNode) {
-                StandardInvoice.InvoiceConcept concept = new StandardInvoice.InvoiceConcept();
+    private StandardInvoice processClaimed(InvoiceRequest request, MappingPlan plan) {
+        Long businessUnitId = plan.getBusinessUnitId();
+        try {
+            // A ticket is invoiced once: repeated requests get the original invoice
+            StandardInvoice previous = processedInvoices.find(businessUnitId, request.getTokenTicket());
+            if (previous != null) {
+                metrics.duplicate(businessUnitId);
+                return previous;
+            }
 
-                // Map fields using the fieldMappings
-                for (Map.Entry<String, String> entry : fieldMappings.entrySet()) {
-                    String sourceField = entry.getKey();
-                    String standardField = entry.getValue();
+            // Get ticket data
+            byte[] ticketData;
+            long start = System.nanoTime();
+            try {
+                ticketData = ticketService.getTicketBytes(request.getTokenTicket(), businessUnitId);
+            } catch (IOException e) {
+                log.error("Error retrieving ticket data", e);
+                throw failed(FailureReason.TICKET_FETCH_ERROR, businessUnitId, "Error retrieving ticket data", e);
+            } finally {
+                metrics.record(PipelineStage.TICKET_FETCH, start);
+            }
+            if (ticketData == null) {
+                throw failed(FailureReason.TICKET_NOT_FOUND, businessUnitId,
+                        "Ticket not found: " + request.getTokenTicket(), null);
+            }
 
-                    if (item.has(sourceField)) {
-                        JsonNode value = item.get(sourceField);
-                        setConceptField(concept, standardField, value);
-                    }
-                }
+            StandardInvoice invoice;
+            try {
+                invoice = buildInvoice(request, plan, ticketData);
+            } catch (IOException e) {
+                log.error("Invalid ticket data for token: {}", request.getTokenTicket(), e);
+                throw failed(FailureReason.INVALID_TICKET, businessUnitId,
+                        "Invalid ticket data for token: " + request.getTokenTicket(), e);
+            }
 
-                // Calculate importe if not set
-                if (concept.getImporte() == 0 && concept.getCantidad() > 0 && concept.getValorUnitario() > 0) {
-                    concept.setImporte(concept.getCantidad() * concept.getValorUnitario());
-                }
+            start = System.nanoTime();
+            try {
+                invoice.setFolio(folioAllocator.nextFolio(plan.getSeries()));
+            } catch (Exception e) {
+                log.error("Could not issue a folio of series {}", plan.getSeries(), e);
+                throw failed(FailureReason.FOLIO_ERROR, businessUnitId,
+                        "Could not issue a folio of series " + plan.getSeries(), e);
+            } finally {
+                metrics.record(PipelineStage.FOLIO, start);
+            }
 
-                concepts.add(concept);
+            String folio = invoice.getFolio();
+            try {
+                invoice = processedInvoices.record(businessUnitId, request.getTokenTicket(), invoice);
+            } catch (RuntimeException e) {
+                voidFolio(plan, folio, e);
+                throw e;
             }
+            metrics.created(businessUnitId);
+            return invoice;
+        } catch (InvoiceProcessingException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error processing invoice request", e);
+            throw failed(FailureReason.UNEXPECTED, businessUnitId, "Error processing invoice request", e);
         }
+    }
 
-        return concepts;
+    /**
+     * Records that a folio taken for a request will not be issued because the request then failed;
+     * a retry of the request takes a new folio
+     *
+     * @param plan The business unit's compiled mapping plan
+     * @param folio The folio taken
+     * @param failure Why the request failed
+     */
+    private void voidFolio(MappingPlan plan, String folio, Throwable failure) {
+        folioAllocator.voidFolio(plan.getSeries(), folio, "processing failed after the folio was taken: " + failure);
     }
 
     /**
-     * Sets a field on the concept based on the standard field name
+     * Counts a failed request and builds its exception
      *
-     * @param concept The concept to update
-     * @param standardField The standard field name
-     * @param value The value to set
+     * @param reason Why the request failed
+     * @param businessUnitId The business unit ID
+     * @param message Description of the failure
+     * @param cause The underlying error, or null
+     * @return The exception to throw
      */
-    private void setConceptField(StandardInvoice.InvoiceConcept concept, String standardField, JsonNode value) {
-        switch (standardField) {
-            case "claveProdServ":
-                concept.setClaveProdServ(value.asText());
-                break;
-            case "descripcion":
-                concept.setDescripcion(value.asText());
-                break;
-            case "cantidad":
-                concept.setCantidad(value.asInt());
-                break;
-            case "unidad":
-                concept.setUnidad(value.asText());
-                break;
-            case "valorUnitario":
-                concept.setValorUnitario(value.asDouble());
-                break;
-            case "importe":
-                concept.setImporte(value.asDouble());
-                break;
-            default:
-                log.warn("Unknown standard field: {}", standardField);
+    private InvoiceProcessingException failed(FailureReason reason, Long businessUnitId, String message, Throwable cause) {
+        metrics.failure(reason, businessUnitId);
+        return new InvoiceProcessingException(reason, message, cause);
+    }
+
+    /**
+     * Builds the invoice of a request from its ticket, everything but the folio
+     *
+     * @param request The invoice request from the client
+     * @param plan The business unit's compiled mapping plan
+     * @param ticketData The ticket as UTF-8 encoded JSON
+     * @return The standardized invoice, without folio
+     * @throws IOException If the ticket is not valid JSON
+     * @throws InvoiceProcessingException If the ticket's amounts do not add up
+     */
+    private StandardInvoice buildInvoice(InvoiceRequest request, MappingPlan plan, byte[] ticketData) throws IOException {
+        metrics.payloadSize(InvoiceMetrics.Payload.TICKET, ticketData.length);
+
+        // Create standardized invoice
+        StandardInvoice invoice = new StandardInvoice();
+
+        // Parse ticket data and map its concepts and header values
+        TicketTransformer transformer = transformerFor(plan);
+        long start = System.nanoTime();
+        if (transformer == treeTransformer) {
+            JsonNode ticketJson = treeTransformer.parse(ticketData);
+            metrics.record(PipelineStage.JSON_PARSE, start);
+            start = System.nanoTime();
+            treeTransformer.map(ticketJson, plan, invoice);
+            metrics.record(PipelineStage.MAPPING, start);
+        } else {
+            // Single pass: parsing and mapping cannot be told apart
+            transformer.transform(ticketData, plan, invoice);
+            metrics.record(PipelineStage.JSON_PARSE, start);
+        }
+
+        // Set emitter data from business unit
+        invoice.setRfcEmisor(plan.getRfcEmitter());
+        invoice.setNombreEmisor(plan.getEmitterName());
+
+        // Set receiver data from request
+        invoice.setRfcReceptor(request.getRfc());
+        invoice.setNombreReceptor(request.getNombre());
+        invoice.setUsoCfdi(request.getUsoCfdi());
+        invoice.setFormaPago(request.getFormaPago());
+
+        // Set standard data
+        invoice.setMetodoPago("PUE"); // Default value, can be customized
+        invoice.setMoneda(plan.getDefaultCurrency());
+        invoice.setSerie(plan.getSeries());
+
+        // Validate amounts and compute taxes and totals before a folio is spent on the invoice
+        start = System.nanoTime();
+        InvoiceTotals totals = taxCalculator.calculate(invoice.getConceptos(), plan);
+        metrics.record(PipelineStage.TAXES, start);
+        if (!totals.isValid()) {
+            throw failed(FailureReason.INVALID_TOTALS, plan.getBusinessUnitId(),
+                    totals.invalidConcepts() + " concept(s) of ticket " + request.getTokenTicket()
+                            + " have an importe other than cantidad * valorUnitario, first at line "
+                            + (totals.firstInvalidConcept() + 1), null);
         }
+        totals.applyTo(invoice);
+        return invoice;
     }
 
     /**
-     * Generates a unique folio number
+     * Selects the ticket transformer for a business unit
      *
-     * @return A unique folio string
+     * @param plan The business unit's mapping plan
+     * @return The streaming or tree transformer
      */
-    private String generateFolio() {
-        // In a real application, this would likely be a sequential number
-        // For this example, we'll use a random string
-        return "10" + Math.abs(UUID.randomUUID().getLeastSignificantBits() % 10000);
+    private TicketTransformer transformerFor(MappingPlan plan) {
+        TicketParsingMode mode = plan.getParsingMode() != null ? plan.getParsingMode() : defaultParsingMode;
+        return mode == TicketParsingMode.STREAMING ? streamingTransformer : treeTransformer;
     }
 }
@@ -0,0 +1,168 @@
+package org.flechaamarilla.service;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.flechaamarilla.dto.CacheStatisticsDTO;
+import org.flechaamarilla.mapping.MappingRegistry;
+import org.flechaamarilla.mapping.MappingsChangedEvent;
+import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.model.FieldMapping;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Eviction and statistics for the Hibernate second-level cache holding business units,
+ * their field mappings and the master-data queries.
+ * Entity updates and deletes are evicted by Hibernate itself; the inverse
+ * {@code BusinessUnit.fieldMappings} collection is not, so it is evicted here once a
+ * change to a business unit has committed.
+ * The business unit listing uses a master-data version as its ETag. It is derived from the
+ * units' own rows (count, highest ID and sum of their optimistic-lock versions, which every
+ * unit or mapping change increments), so every replica serves the same tag for the same data
+ * and tags survive restarts. It is read once and cached until the next committed change,
+ * local or broadcast by another replica.
+ */
+@ApplicationScoped
+@Slf4j
+public class MasterDataCache {
+
+    static final String FIELD_MAPPINGS_ROLE = BusinessUnit.class.getName() + ".fieldMappings";
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    MappingRegistry mappingRegistry;
+
+    @Inject
+    @ConfigProperty(name = "invoice.cache.statistics.enabled", defaultValue = "false")
+    boolean statisticsEnabled;
+
+    private static final String VERSION_QUERY =
+            "select count(b), coalesce(max(b.id), 0), coalesce(sum(b.version), 0) from BusinessUnit b";
+
+    // Bumped on every committed change; the cached version is read again once it moves
+    private final AtomicLong changes = new AtomicLong();
+    private volatile CachedVersion cachedVersion;
+
+    private record CachedVersion(long changes, String version) {
+    }
+
+    /**
+     * Gets the current master-data version, which changes whenever a business unit or its
+     * mappings change on any replica, and is the same on every replica for the same data
+     *
+     * @return An opaque version string
+     */
+    public String getVersion() {
+        long seen = changes.get();
+        CachedVersion cached = cachedVersion;
+        if (cached == null || cached.changes() != seen) {
+            // A change committed during the read leaves seen behind, so the next call reads again
+            cached = new CachedVersion(seen, readVersion());
+            cachedVersion = cached;
+        }
+        return cached.version();
+    }
+
+    private String readVersion() {
+        Object[] row = BusinessUnit.getEntityManager()
+                .createQuery(VERSION_QUERY, Object[].class)
+                .getSingleResult();
+        return row[0] + "-" + row[1] + "-" + row[2];
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        // Collected only on demand: they add bookkeeping to every session
+        sessionFactory.getStatistics().setStatisticsEnabled(statisticsEnabled);
+    }
+
+    /**
+     * Evicts a business unit, its field mappings collection and the cached master-data queries
+     *
+     * @param businessUnitId The business unit ID
+     */
+    public void evictBusinessUnit(Long businessUnitId) {
+        Cache cache = sessionFactory.getCache();
+        cache.evictEntityData(BusinessUnit.class, businessUnitId);
+        cache.evictCollectionData(FIELD_MAPPINGS_ROLE, businessUnitId);
+        cache.evictQueryRegion(BusinessUnit.MASTER_DATA_QUERY_REGION);
+        log.debug("Evicted cached master data for business unit {}", businessUnitId);
+    }
+
+    /**
+     * Evicts all master data from the second-level cache and drops every compiled mapping plan
+     */
+    public void evictAll() {
+        Cache cache = sessionFactory.getCache();
+        cache.evictEntityData(BusinessUnit.class);
+        cache.evictEntityData(FieldMapping.class);
+        cache.evictCollectionData(FIELD_MAPPINGS_ROLE);
+        cache.evictQueryRegion(BusinessUnit.MASTER_DATA_QUERY_REGION);
+        mappingRegistry.invalidateAll();
+        changes.incrementAndGet();
+        log.info("Evicted all cached master data");
+    }
+
+    /**
+     * Gets the current cache statistics
+     *
+     * @return Global and per-region counters
+     */
+    public CacheStatisticsDTO getStatistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+
+        CacheStatisticsDTO dto = new CacheStatisticsDTO();
+        dto.setStatisticsEnabled(statistics.isStatisticsEnabled());
+        dto.setSecondLevelCacheHits(statistics.getSecondLevelCacheHitCount());
+        dto.setSecondLevelCacheMisses(statistics.getSecondLevelCacheMissCount());
+        dto.setSecondLevelCachePuts(statistics.getSecondLevelCachePutCount());
+        dto.setQueryCacheHits(statistics.getQueryCacheHitCount());
+        dto.setQueryCacheMisses(statistics.getQueryCacheMissCount());
+        dto.setQueryCachePuts(statistics.getQueryCachePutCount());
+        dto.setQueryExecutions(statistics.getQueryExecutionCount());
+        dto.setEntityLoads(statistics.getEntityLoadCount());
+        dto.setMappingPlans(mappingRegistry.size());
+
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics == null) {
+                continue;
+            }
+            CacheStatisticsDTO.RegionStatisticsDTO regionDto = new CacheStatisticsDTO.RegionStatisticsDTO();
+            regionDto.setRegion(region);
+            regionDto.setHits(regionStatistics.getHitCount());
+            regionDto.setMisses(regionStatistics.getMissCount());
+            regionDto.setPuts(regionStatistics.getPutCount());
+            regionDto.setElementsInMemory(regionStatistics.getElementCountInMemory());
+            dto.getRegions().add(regionDto);
+        }
+        return dto;
+    }
+
+    /**
+     * Resets the statistics counters
+     */
+    public void resetStatistics() {
+        sessionFactory.getStatistics().clear();
+    }
+
+    void onMappingsChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) MappingsChangedEvent event) {
+        if (event.businessUnitId() == null) {
+            // Units added in bulk: only the cached queries can be stale, no cached unit or compiled plan
+            sessionFactory.getCache().evictQueryRegion(BusinessUnit.MASTER_DATA_QUERY_REGION);
+        } else {
+            evictBusinessUnit(event.businessUnitId());
+        }
+        changes.incrementAndGet();
+    }
+}
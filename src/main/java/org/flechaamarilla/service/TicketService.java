@@ -1,223 +1,195 @@
 package org.flechaamarilla.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
-import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-
-import java.util.HashMap;
-import java.util.Map;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.flechaamarilla.ticket.FileTicketSource;
+import org.flechaamarilla.ticket.HttpTicketSource;
+import org.flechaamarilla.ticket.JdbcTicketSource;
+import org.flechaamarilla.ticket.MockTicketSource;
+import org.flechaamarilla.ticket.SyntheticTicketSource;
+import org.flechaamarilla.ticket.TicketKey;
+import org.flechaamarilla.ticket.TicketSource;
+import org.flechaamarilla.ticket.TicketSourceType;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Service for fetching and manipulating ticket data
- * This is a mock implementation for the MVP
+ * Service for fetching ticket data from the configured {@link TicketSource}.
+ * Fetches go through an asynchronous cache keyed by business unit and token: concurrent
+ * requests for the same ticket share a single fetch, and fetched tickets are kept until
+ * they expire or are evicted by size. Missing tickets and failed fetches are not cached.
  */
 @ApplicationScoped
 @Slf4j
 public class TicketService {
 
     @Inject
-    ObjectMapper objectMapper;
+    @ConfigProperty(name = "invoice.tickets.source", defaultValue = "MOCK")
+    TicketSourceType sourceType;
 
-    // For the MVP, we'll store some sample data in memory
-    private Map<Long, Map<String, String>> mockTickets;
+    @Inject
+    @ConfigProperty(name = "invoice.tickets.cache.maximum-size", defaultValue = "10000")
+    long cacheMaximumSize;
+
+    @Inject
+    @ConfigProperty(name = "invoice.tickets.cache.expire-after-write", defaultValue = "PT5M")
+    Duration cacheExpireAfterWrite;
+
+    @Inject
+    @ConfigProperty(name = "invoice.tickets.fetch-timeout", defaultValue = "PT10S")
+    Duration fetchTimeout;
+
+    @Inject
+    Instance<MockTicketSource> mockSource;
+
+    @Inject
+    Instance<FileTicketSource> fileSource;
+
+    @Inject
+    Instance<HttpTicketSource> httpSource;
+
+    @Inject
+    Instance<JdbcTicketSource> jdbcSource;
+
+    @Inject
+    Instance<SyntheticTicketSource> syntheticSource;
+
+    private TicketSource source;
+    private AsyncCache<TicketKey, byte[]> cache;
 
     @PostConstruct
     void init() {
-        mockTickets = initMockTickets();
+        switch (sourceType) {
+            case FILE:
+                source = fileSource.get();
+                break;
+            case HTTP:
+                source = httpSource.get();
+                break;
+            case JDBC:
+                source = jdbcSource.get();
+                break;
+            case SYNTHETIC:
+                source = syntheticSource.get();
+                break;
+            default:
+                source = mockSource.get();
+        }
+
+        cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfterWrite(cacheExpireAfterWrite)
+                .recordStats()
+                .buildAsync();
+        log.info("Ticket source: {} (cache size {}, ttl {})", sourceType, cacheMaximumSize, cacheExpireAfterWrite);
     }
 
     /**
-     * Gets ticket data for a given token and business unit
+     * Fetches ticket data without blocking the caller
      *
      * @param tokenTicket The ticket token
      * @param businessUnitId The business unit ID
-     * @return The ticket data as a JSON string or null if not found
+     * @return A future with the ticket as UTF-8 encoded JSON, completed with null if not found
      */
-    public String getTicketData(String tokenTicket, Long businessUnitId) {
-        // In a real implementation, this would fetch data from a database or API
-        try {
-            Map<String, String> businessTickets = mockTickets.get(businessUnitId);
-            if (businessTickets == null) {
-                log.error("No tickets found for business unit: {}", businessUnitId);
-                return null;
-            }
-
-            String ticketData = businessTickets.get(tokenTicket);
-            if (ticketData == null) {
-                log.error("Ticket not found for token: {}", tokenTicket);
-                return null;
-            }
-
-            return ticketData;
-        } catch (Exception e) {
-            log.error("Error retrieving ticket data", e);
-            return null;
+    public CompletableFuture<byte[]> fetchTicketBytes(String tokenTicket, Long businessUnitId) {
+        if (tokenTicket == null || tokenTicket.isBlank()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Ticket token is required"));
         }
+        return cache.get(new TicketKey(businessUnitId, tokenTicket),
+                (key, executor) -> source.fetch(key.businessUnitId(), key.tokenTicket()));
     }
 
     /**
-     * Initializes mock ticket data for the MVP
-     * Each business unit has different field names to simulate the real scenario
+     * Fetches ticket data without blocking the caller, failing after the configured fetch timeout
      *
-     * @return A map of business unit IDs to ticket tokens and data
+     * @param tokenTicket The ticket token
+     * @param businessUnitId The business unit ID
+     * @return The ticket as UTF-8 encoded JSON, or null if not found
      */
-    private Map<Long, Map<String, String>> initMockTickets() {
-        Map<Long, Map<String, String>> result = new HashMap<>();
-
-        try {
-            // Business Unit 1 - Standard field names
-            Map<String, String> bu1Tickets = new HashMap<>();
-            bu1Tickets.put("ticket-123", createTicketData1());
-            result.put(1L, bu1Tickets);
-
-            // Business Unit 2 - Different field names
-            Map<String, String> bu2Tickets = new HashMap<>();
-            bu2Tickets.put("ticket-456", createTicketData2());
-            result.put(2L, bu2Tickets);
-
-            // Business Unit 3 - Yet another set of field names
-            Map<String, String> bu3Tickets = new HashMap<>();
-            bu3Tickets.put("ticket-789", createTicketData3());
-            result.put(3L, bu3Tickets);
-
-            return result;
-        } catch (Exception e) {
-            log.error("Error initializing mock ticket data", e);
-            // Return an empty map as fallback
-            return new HashMap<>();
-        }
+    public Uni<byte[]> fetchTicket(String tokenTicket, Long businessUnitId) {
+        return Uni.createFrom().completionStage(() -> fetchTicketBytes(tokenTicket, businessUnitId))
+                .ifNoItem().after(fetchTimeout).fail()
+                .invoke(ticketData -> {
+                    if (ticketData == null) {
+                        log.error("Ticket not found for token: {}", tokenTicket);
+                    }
+                });
     }
 
     /**
-     * Creates sample ticket data for business unit 1
+     * Gets ticket data for a given token and business unit, waiting at most the configured fetch timeout
+     *
+     * @param tokenTicket The ticket token
+     * @param businessUnitId The business unit ID
+     * @return The ticket as UTF-8 encoded JSON or null if not found
+     * @throws IOException If the ticket source failed or did not answer in time
      */
-    private String createTicketData1() {
+    public byte[] getTicketBytes(String tokenTicket, Long businessUnitId) throws IOException {
         try {
-            if (objectMapper == null) {
-                log.error("ObjectMapper is null in createTicketData1");
-                return "{}";
+            byte[] ticketData = fetchTicketBytes(tokenTicket, businessUnitId)
+                    .get(fetchTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (ticketData == null) {
+                log.error("Ticket not found for token: {}", tokenTicket);
             }
-
-            ObjectNode root = objectMapper.createObjectNode();
-            root.put("ticketId", "123456");
-            root.put("fecha", "2023-04-23");
-
-            ArrayNode items = objectMapper.createArrayNode();
-
-            ObjectNode item1 = objectMapper.createObjectNode();
-            item1.put("claveProdServ", "10101501");
-            item1.put("descripcion", "Servicio de consultoría");
-            item1.put("cantidad", 1);
-            item1.put("unidad", "Servicio");
-            item1.put("valorUnitario", 5000.0);
-            item1.put("importe", 5000.0);
-            items.add(item1);
-
-            ObjectNode item2 = objectMapper.createObjectNode();
-            item2.put("claveProdServ", "10101501");
-            item2.put("descripcion", "Desarrollo de software");
-            item2.put("cantidad", 2);
-            item2.put("unidad", "Hora");
-            item2.put("valorUnitario", 1000.0);
-            item2.put("importe", 2000.0);
-            items.add(item2);
-
-            root.set("items", items);
-
-            return objectMapper.writeValueAsString(root);
-        } catch (Exception e) {
-            log.error("Error creating mock ticket data", e);
-            return "{}";
+            return ticketData;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while retrieving ticket " + tokenTicket);
+        } catch (ExecutionException e) {
+            throw new IOException("Error retrieving ticket " + tokenTicket, e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out retrieving ticket " + tokenTicket, e);
         }
     }
 
     /**
-     * Creates sample ticket data for business unit 2 with different field names
+     * Gets ticket data for a given token and business unit
+     *
+     * @param tokenTicket The ticket token
+     * @param businessUnitId The business unit ID
+     * @return The ticket data as a JSON string or null if not found
      */
-    private String createTicketData2() {
+    public String getTicketData(String tokenTicket, Long businessUnitId) {
         try {
-            if (objectMapper == null) {
-                log.error("ObjectMapper is null in createTicketData2");
-                return "{}";
-            }
-
-            ObjectNode root = objectMapper.createObjectNode();
-            root.put("id", "456789");
-            root.put("date", "2023-04-23");
-
-            ArrayNode products = objectMapper.createArrayNode();
-
-            ObjectNode product1 = objectMapper.createObjectNode();
-            product1.put("productCode", "10101501");
-            product1.put("productName", "Servicio de consultoría");
-            product1.put("qty", 1);
-            product1.put("unit", "Servicio");
-            product1.put("price", 5000.0);
-            product1.put("total", 5000.0);
-            products.add(product1);
-
-            ObjectNode product2 = objectMapper.createObjectNode();
-            product2.put("productCode", "10101501");
-            product2.put("productName", "Desarrollo de software");
-            product2.put("qty", 2);
-            product2.put("unit", "Hora");
-            product2.put("price", 1000.0);
-            product2.put("total", 2000.0);
-            products.add(product2);
-
-            root.set("products", products);
-
-            return objectMapper.writeValueAsString(root);
-        } catch (Exception e) {
-            log.error("Error creating mock ticket data", e);
-            return "{}";
+            byte[] ticketData = getTicketBytes(tokenTicket, businessUnitId);
+            return ticketData == null ? null : new String(ticketData, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Error retrieving ticket data", e);
+            return null;
         }
     }
 
     /**
-     * Creates sample ticket data for business unit 3 with yet another set of field names
+     * Drops a ticket from the cache
+     *
+     * @param tokenTicket The ticket token
+     * @param businessUnitId The business unit ID
      */
-    private String createTicketData3() {
-        try {
-            if (objectMapper == null) {
-                log.error("ObjectMapper is null in createTicketData3");
-                return "{}";
-            }
+    public void invalidate(String tokenTicket, Long businessUnitId) {
+        cache.synchronous().invalidate(new TicketKey(businessUnitId, tokenTicket));
+    }
 
-            ObjectNode root = objectMapper.createObjectNode();
-            root.put("folio", "789012");
-            root.put("fechaEmision", "2023-04-23");
-
-            ArrayNode lineas = objectMapper.createArrayNode();
-
-            ObjectNode linea1 = objectMapper.createObjectNode();
-            linea1.put("claveProducto", "10101501");
-            linea1.put("concepto", "Servicio de consultoría");
-            linea1.put("cantidadProducto", 1);
-            linea1.put("unidadMedida", "Servicio");
-            linea1.put("precioUnitario", 5000.0);
-            linea1.put("precioTotal", 5000.0);
-            lineas.add(linea1);
-
-            ObjectNode linea2 = objectMapper.createObjectNode();
-            linea2.put("claveProducto", "10101501");
-            linea2.put("concepto", "Desarrollo de software");
-            linea2.put("cantidadProducto", 2);
-            linea2.put("unidadMedida", "Hora");
-            linea2.put("precioUnitario", 1000.0);
-            linea2.put("precioTotal", 2000.0);
-            lineas.add(linea2);
-
-            root.set("lineas", lineas);
-
-            return objectMapper.writeValueAsString(root);
-        } catch (Exception e) {
-            log.error("Error creating mock ticket data", e);
-            return "{}";
-        }
+    /**
+     * Gets the ticket cache statistics
+     *
+     * @return Hit, miss, load and eviction counters
+     */
+    public CacheStats getCacheStats() {
+        return cache.synchronous().stats();
     }
-}
\ No newline at end of file
+}
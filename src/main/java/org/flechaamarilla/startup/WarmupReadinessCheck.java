@@ -0,0 +1,27 @@
+package org.flechaamarilla.startup;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+/**
+ * Reports the instance ready at {@code /q/health/ready} only once {@link WarmupService} has finished
+ */
+@Readiness
+@ApplicationScoped
+public class WarmupReadinessCheck implements HealthCheck {
+
+    @Inject
+    WarmupService warmupService;
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("warm-up")
+                .status(warmupService.isDone())
+                .withData("plansCompiled", warmupService.getPlansCompiled())
+                .withData("durationMillis", warmupService.getDurationMillis())
+                .build();
+    }
+}
@@ -0,0 +1,155 @@
+package org.flechaamarilla.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.reactive.messaging.ChannelRegistry;
+import io.smallrye.reactive.messaging.PausableChannel;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.interceptor.Interceptor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.flechaamarilla.dto.BatchInvoiceResultDTO;
+import org.flechaamarilla.mapping.MappingRegistry;
+import org.flechaamarilla.messaging.MessagingCodec;
+import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.model.ConceptTable;
+import org.flechaamarilla.model.InvoiceRequest;
+import org.flechaamarilla.model.StandardInvoice;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Brings a new instance to steady state before it takes traffic: compiles the mapping plan of
+ * every business unit, which loads business units and mappings into the second-level cache, and
+ * primes the Jackson serializers and deserializers of the request and invoice types on both the
+ * REST and broker mappers.
+ * <p>
+ * Runs on a worker thread after the sample data is initialized. Until it finishes the readiness
+ * probe reports down and the {@code invoice-requests-in} channel stays paused, so neither HTTP
+ * nor queue traffic reaches a cold instance. A failed warm-up is logged and the instance opens
+ * anyway, since everything it does would otherwise happen on first use.
+ */
+@ApplicationScoped
+@Slf4j
+public class WarmupService {
+
+    private static final String REQUEST_CHANNEL = "invoice-requests-in";
+
+    @Inject
+    MappingRegistry mappingRegistry;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MessagingCodec messagingCodec;
+
+    @Inject
+    ChannelRegistry channelRegistry;
+
+    @Inject
+    @ConfigProperty(name = "invoice.warmup.enabled", defaultValue = "true")
+    boolean enabled;
+
+    private volatile boolean done;
+    private volatile int plansCompiled;
+    private volatile long durationMillis;
+
+    /**
+     * Starts the warm-up once the sample data is in place
+     *
+     * @param event Startup event
+     */
+    void onStart(@Observes @Priority(Interceptor.Priority.APPLICATION + 1000) StartupEvent event) {
+        if (!enabled) {
+            open();
+            return;
+        }
+        Infrastructure.getDefaultWorkerPool().execute(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                plansCompiled = compilePlans();
+                primeJackson();
+            } catch (Exception e) {
+                log.error("Warm-up failed, opening cold", e);
+            }
+            durationMillis = System.currentTimeMillis() - start;
+            open();
+            log.info("Warm-up compiled {} mapping plans in {} ms; ready {} ms after JVM start",
+                    plansCompiled, durationMillis, ManagementFactory.getRuntimeMXBean().getUptime());
+        });
+    }
+
+    private int compilePlans() {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            int compiled = 0;
+            for (BusinessUnit unit : BusinessUnit.listAllCached()) {
+                if (mappingRegistry.getPlan(unit.id) != null) {
+                    compiled++;
+                }
+            }
+            return compiled;
+        });
+    }
+
+    private void primeJackson() throws Exception {
+        InvoiceRequest request = new InvoiceRequest();
+        request.setRfc("XAXX010101000");
+        request.setNombre("Warm-up");
+        request.setTokenTicket("warm-up");
+        request.setUnidadNegocio(0L);
+
+        ConceptTable concepts = new ConceptTable(1);
+        int row = concepts.addRow();
+        concepts.setDescripcion(row, "Warm-up");
+        concepts.setCantidadMicros(row, ConceptTable.toMicros(1));
+        StandardInvoice invoice = new StandardInvoice();
+        invoice.setSerie("W");
+        invoice.setFolio("0");
+        invoice.setTicketId("warm-up");
+        invoice.setConceptos(concepts);
+
+        // REST mapper: request bodies, responses and batch lines
+        objectMapper.readValue(objectMapper.writeValueAsBytes(request), InvoiceRequest.class);
+        objectMapper.readValue(objectMapper.writeValueAsBytes(invoice), StandardInvoice.class);
+        objectMapper.writeValueAsBytes(BatchInvoiceResultDTO.success(0, request.getTokenTicket(), invoice));
+
+        // Broker mappers: queued requests and published invoices in the configured wire format
+        messagingCodec.toJson(request);
+        messagingCodec.describe(messagingCodec.encodeInvoice(invoice));
+    }
+
+    private void open() {
+        done = true;
+        PausableChannel requests = channelRegistry.getPausable(REQUEST_CHANNEL);
+        if (requests != null) {
+            requests.resume();
+        }
+    }
+
+    /**
+     * @return True once warm-up has finished or was skipped
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return Mapping plans compiled by the warm-up
+     */
+    public int getPlansCompiled() {
+        return plansCompiled;
+    }
+
+    /**
+     * @return How long the warm-up took
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
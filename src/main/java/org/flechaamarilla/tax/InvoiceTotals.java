@@ -0,0 +1,59 @@
+package org.flechaamarilla.tax;
+
+import org.flechaamarilla.model.StandardInvoice;
+
+import java.math.BigDecimal;
+
+/**
+ * Taxes and totals of an invoice, in cents, and the result of validating its concepts
+ *
+ * @param subTotalCents Sum of the concept amounts
+ * @param iepsCents Sum of the concept IEPS
+ * @param ivaCents Sum of the concept IVA
+ * @param iepsRateMicros The IEPS rate applied, in millionths; 0 if none
+ * @param ivaRateMicros The IVA rate applied, in millionths
+ * @param invalidConcepts Number of concepts whose amount does not match quantity times unit price
+ * @param firstInvalidConcept Index of the first such concept, or -1
+ */
+public record InvoiceTotals(long subTotalCents, long iepsCents, long ivaCents,
+                            long iepsRateMicros, long ivaRateMicros,
+                            int invalidConcepts, int firstInvalidConcept) {
+
+    /**
+     * @return True if every concept passed validation
+     */
+    public boolean isValid() {
+        return invalidConcepts == 0;
+    }
+
+    /**
+     * @return Sum of all transferred taxes in cents
+     */
+    public long trasladosCents() {
+        return iepsCents + ivaCents;
+    }
+
+    /**
+     * @return The invoice total in cents
+     */
+    public long totalCents() {
+        return subTotalCents + trasladosCents();
+    }
+
+    /**
+     * Sets the totals and rates on an invoice
+     *
+     * @param invoice The invoice whose concepts were calculated
+     */
+    public void applyTo(StandardInvoice invoice) {
+        invoice.setSubTotal(BigDecimal.valueOf(subTotalCents, 2));
+        invoice.setTasaIva(BigDecimal.valueOf(ivaRateMicros, 6));
+        invoice.setTotalIva(BigDecimal.valueOf(ivaCents, 2));
+        if (iepsRateMicros > 0) {
+            invoice.setTasaIeps(BigDecimal.valueOf(iepsRateMicros, 6));
+            invoice.setTotalIeps(BigDecimal.valueOf(iepsCents, 2));
+        }
+        invoice.setTotalImpuestosTrasladados(BigDecimal.valueOf(trasladosCents(), 2));
+        invoice.setTotal(BigDecimal.valueOf(totalCents(), 2));
+    }
+}
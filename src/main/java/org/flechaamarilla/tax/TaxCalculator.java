@@ -0,0 +1,47 @@
+package org.flechaamarilla.tax;
+
+import org.flechaamarilla.mapping.MappingPlan;
+import org.flechaamarilla.model.ConceptTable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Computes the IVA and IEPS of every concept and the invoice totals, following the SAT rules:
+ * each concept's tax is its base times the rate rounded half up to cents, the IVA base includes
+ * the concept's IEPS, and the invoice totals are the sums of the rounded concept values.
+ * All arithmetic is exact, on the {@link ConceptTable} cent columns; the only allocation per
+ * invoice is the returned {@link InvoiceTotals}.
+ */
+public final class TaxCalculator {
+
+    private final long defaultIvaRateMicros;
+
+    /**
+     * @param defaultIvaRate IVA rate for business units that do not set one, e.g. 0.16
+     */
+    public TaxCalculator(BigDecimal defaultIvaRate) {
+        this.defaultIvaRateMicros = defaultIvaRate.setScale(6, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Validates the concepts and computes their taxes and the invoice totals.
+     * Taxes are computed even when validation fails, so the result always describes the table.
+     *
+     * @param concepts The mapped concepts; their IEPS and IVA columns are filled in
+     * @param plan The business unit's compiled mapping plan, holding its tax rates
+     * @return The totals and validation result
+     */
+    public InvoiceTotals calculate(ConceptTable concepts, MappingPlan plan) {
+        long ivaRate = plan.getIvaRateMicros() < 0 ? defaultIvaRateMicros : plan.getIvaRateMicros();
+        long iepsRate = plan.getIepsRateMicros();
+
+        int invalid = concepts.countInvalidImportes();
+        long subTotal = concepts.sumImportes();
+        long ieps = iepsRate > 0 ? concepts.computeIeps(iepsRate) : 0;
+        long iva = concepts.computeIva(ivaRate);
+
+        return new InvoiceTotals(subTotal, ieps, iva, iepsRate, ivaRate,
+                invalid, invalid == 0 ? -1 : concepts.firstInvalidImporte());
+    }
+}
@@ -0,0 +1,50 @@
+package org.flechaamarilla.ticket;
+
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Ticket source reading {@code <directory>/<businessUnitId>/<tokenTicket>.json}
+ */
+@ApplicationScoped
+@Slf4j
+public class FileTicketSource implements TicketSource {
+
+    @Inject
+    @ConfigProperty(name = "invoice.tickets.file.directory", defaultValue = "tickets")
+    Path directory;
+
+    @Override
+    public CompletableFuture<byte[]> fetch(Long businessUnitId, String tokenTicket) {
+        if (tokenTicket == null || tokenTicket.isBlank()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Path unitDirectory = directory.resolve(String.valueOf(businessUnitId)).normalize();
+        Path file = unitDirectory.resolve(tokenTicket + ".json").normalize();
+        if (!file.getParent().equals(unitDirectory)) {
+            // Tokens come from clients; never let one escape its business unit's directory
+            log.warn("Rejected ticket token with a path: {}", tokenTicket);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return Files.readAllBytes(file);
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, Infrastructure.getDefaultWorkerPool());
+    }
+}
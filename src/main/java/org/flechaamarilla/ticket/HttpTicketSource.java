@@ -0,0 +1,75 @@
+package org.flechaamarilla.ticket;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Ticket source calling an HTTP ticket service.
+ * Uses one shared {@link HttpClient}, which pools keep-alive connections (and multiplexes
+ * over HTTP/2 when the server supports it) and completes requests asynchronously.
+ */
+@ApplicationScoped
+public class HttpTicketSource implements TicketSource {
+
+    /**
+     * URL with {@code {businessUnitId}} and {@code {tokenTicket}} placeholders
+     */
+    @Inject
+    @ConfigProperty(name = "invoice.tickets.http.url-template",
+            defaultValue = "http://localhost:8081/tickets/{businessUnitId}/{tokenTicket}")
+    String urlTemplate;
+
+    @Inject
+    @ConfigProperty(name = "invoice.tickets.http.connect-timeout", defaultValue = "PT2S")
+    Duration connectTimeout;
+
+    @Inject
+    @ConfigProperty(name = "invoice.tickets.http.request-timeout", defaultValue = "PT5S")
+    Duration requestTimeout;
+
+    private HttpClient httpClient;
+
+    @PostConstruct
+    void init() {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> fetch(Long businessUnitId, String tokenTicket) {
+        URI uri = URI.create(urlTemplate
+                .replace("{businessUnitId}", String.valueOf(businessUnitId))
+                .replace("{tokenTicket}", URLEncoder.encode(tokenTicket, StandardCharsets.UTF_8)));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() == 404) {
+                        return null;
+                    }
+                    if (response.statusCode() / 100 != 2) {
+                        throw new IllegalStateException(new IOException(
+                                "Ticket service returned " + response.statusCode() + " for " + uri));
+                    }
+                    return response.body();
+                });
+    }
+}
@@ -0,0 +1,48 @@
+package org.flechaamarilla.ticket;
+
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Ticket source reading the ticket JSON from a table in the application's pooled datasource.
+ * The query takes the business unit ID and token as parameters and returns the ticket
+ * in its first column (bytea, text or jsonb).
+ */
+@ApplicationScoped
+public class JdbcTicketSource implements TicketSource {
+
+    @Inject
+    DataSource dataSource;
+
+    @Inject
+    @ConfigProperty(name = "invoice.tickets.jdbc.query",
+            defaultValue = "SELECT payload FROM tickets WHERE business_unit_id = ? AND token = ?")
+    String query;
+
+    @Override
+    public CompletableFuture<byte[]> fetch(Long businessUnitId, String tokenTicket) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(query)) {
+                statement.setLong(1, businessUnitId);
+                statement.setString(2, tokenTicket);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    // Raw column bytes, so the JSON is never decoded into a String
+                    return resultSet.next() ? resultSet.getBytes(1) : null;
+                }
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, Infrastructure.getDefaultWorkerPool());
+    }
+}
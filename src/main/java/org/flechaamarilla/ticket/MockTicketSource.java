@@ -0,0 +1,210 @@
+package org.flechaamarilla.ticket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Ticket source serving sample tickets from memory, for the MVP and local development
+ */
+@ApplicationScoped
+@Slf4j
+public class MockTicketSource implements TicketSource {
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    // For the MVP, we'll store some sample data in memory
+    private Map<Long, Map<String, byte[]>> mockTickets;
+
+    @PostConstruct
+    void init() {
+        mockTickets = new HashMap<>();
+        initMockTickets().forEach((businessUnitId, tickets) -> {
+            Map<String, byte[]> encoded = new HashMap<>();
+            tickets.forEach((token, json) -> encoded.put(token, json.getBytes(StandardCharsets.UTF_8)));
+            mockTickets.put(businessUnitId, encoded);
+        });
+    }
+
+    @Override
+    public CompletableFuture<byte[]> fetch(Long businessUnitId, String tokenTicket) {
+        Map<String, byte[]> businessTickets = mockTickets.get(businessUnitId);
+        if (businessTickets == null) {
+            log.error("No tickets found for business unit: {}", businessUnitId);
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.completedFuture(businessTickets.get(tokenTicket));
+    }
+
+    /**
+     * Initializes mock ticket data for the MVP
+     * Each business unit has different field names to simulate the real scenario
+     *
+     * @return A map of business unit IDs to ticket tokens and data
+     */
+    private Map<Long, Map<String, String>> initMockTickets() {
+        Map<Long, Map<String, String>> result = new HashMap<>();
+
+        try {
+            // Business Unit 1 - Standard field names
+            Map<String, String> bu1Tickets = new HashMap<>();
+            bu1Tickets.put("ticket-123", createTicketData1());
+            result.put(1L, bu1Tickets);
+
+            // Business Unit 2 - Different field names
+            Map<String, String> bu2Tickets = new HashMap<>();
+            bu2Tickets.put("ticket-456", createTicketData2());
+            result.put(2L, bu2Tickets);
+
+            // Business Unit 3 - Yet another set of field names
+            Map<String, String> bu3Tickets = new HashMap<>();
+            bu3Tickets.put("ticket-789", createTicketData3());
+            result.put(3L, bu3Tickets);
+
+            return result;
+        } catch (Exception e) {
+            log.error("Error initializing mock ticket data", e);
+            // Return an empty map as fallback
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Creates sample ticket data for business unit 1
+     */
+    private String createTicketData1() {
+        try {
+            if (objectMapper == null) {
+                log.error("ObjectMapper is null in createTicketData1");
+                return "{}";
+            }
+
+            ObjectNode root = objectMapper.createObjectNode();
+            root.put("ticketId", "123456");
+            root.put("fecha", "2023-04-23");
+
+            ArrayNode items = objectMapper.createArrayNode();
+
+            ObjectNode item1 = objectMapper.createObjectNode();
+            item1.put("claveProdServ", "10101501");
+            item1.put("descripcion", "Servicio de consultoría");
+            item1.put("cantidad", 1);
+            item1.put("unidad", "Servicio");
+            item1.put("valorUnitario", 5000.0);
+            item1.put("importe", 5000.0);
+            items.add(item1);
+
+            ObjectNode item2 = objectMapper.createObjectNode();
+            item2.put("claveProdServ", "10101501");
+            item2.put("descripcion", "Desarrollo de software");
+            item2.put("cantidad", 2);
+            item2.put("unidad", "Hora");
+            item2.put("valorUnitario", 1000.0);
+            item2.put("importe", 2000.0);
+            items.add(item2);
+
+            root.set("items", items);
+
+            return objectMapper.writeValueAsString(root);
+        } catch (Exception e) {
+            log.error("Error creating mock ticket data", e);
+            return "{}";
+        }
+    }
+
+    /**
+     * Creates sample ticket data for business unit 2 with different field names
+     */
+    private String createTicketData2() {
+        try {
+            if (objectMapper == null) {
+                log.error("ObjectMapper is null in createTicketData2");
+                return "{}";
+            }
+
+            ObjectNode root = objectMapper.createObjectNode();
+            root.put("id", "456789");
+            root.put("date", "2023-04-23");
+
+            ArrayNode products = objectMapper.createArrayNode();
+
+            ObjectNode product1 = objectMapper.createObjectNode();
+            product1.put("productCode", "10101501");
+            product1.put("productName", "Servicio de consultoría");
+            product1.put("qty", 1);
+            product1.put("unit", "Servicio");
+            product1.put("price", 5000.0);
+            product1.put("total", 5000.0);
+            products.add(product1);
+
+            ObjectNode product2 = objectMapper.createObjectNode();
+            product2.put("productCode", "10101501");
+            product2.put("productName", "Desarrollo de software");
+            product2.put("qty", 2);
+            product2.put("unit", "Hora");
+            product2.put("price", 1000.0);
+            product2.put("total", 2000.0);
+            products.add(product2);
+
+            root.set("products", products);
+
+            return objectMapper.writeValueAsString(root);
+        } catch (Exception e) {
+            log.error("Error creating mock ticket data", e);
+            return "{}";
+        }
+    }
+
+    /**
+     * Creates sample ticket data for business unit 3 with yet another set of field names
+     */
+    private String createTicketData3() {
+        try {
+            if (objectMapper == null) {
+                log.error("ObjectMapper is null in createTicketData3");
+                return "{}";
+            }
+
+            ObjectNode root = objectMapper.createObjectNode();
+            root.put("folio", "789012");
+            root.put("fechaEmision", "2023-04-23");
+
+            ArrayNode lineas = objectMapper.createArrayNode();
+
+            ObjectNode linea1 = objectMapper.createObjectNode();
+            linea1.put("claveProducto", "10101501");
+            linea1.put("concepto", "Servicio de consultoría");
+            linea1.put("cantidadProducto", 1);
+            linea1.put("unidadMedida", "Servicio");
+            linea1.put("precioUnitario", 5000.0);
+            linea1.put("precioTotal", 5000.0);
+            lineas.add(linea1);
+
+            ObjectNode linea2 = objectMapper.createObjectNode();
+            linea2.put("claveProducto", "10101501");
+            linea2.put("concepto", "Desarrollo de software");
+            linea2.put("cantidadProducto", 2);
+            linea2.put("unidadMedida", "Hora");
+            linea2.put("precioUnitario", 1000.0);
+            linea2.put("precioTotal", 2000.0);
+            lineas.add(linea2);
+
+            root.set("lineas", lineas);
+
+            return objectMapper.writeValueAsString(root);
+        } catch (Exception e) {
+            log.error("Error creating mock ticket data", e);
+            return "{}";
+        }
+    }
+}
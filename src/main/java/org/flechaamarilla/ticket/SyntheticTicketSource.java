@@ -0,0 +1,70 @@
+package org.flechaamarilla.ticket;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.flechaamarilla.utils.SyntheticTickets;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ticket source generating tickets from their token, for load tests and capacity planning.
+ * A token {@code <style>:<lines>:<seed>} (see {@link #token}) yields a deterministic ticket of
+ * {@code lines} items in a {@link SyntheticTickets.Style}; any other token is not found.
+ * {@code invoice.tickets.synthetic.latency} delays every answer to stand in for a remote source.
+ */
+@ApplicationScoped
+public class SyntheticTicketSource implements TicketSource {
+
+    private static final int MAX_LINES = 10_000;
+
+    @Inject
+    @ConfigProperty(name = "invoice.tickets.synthetic.latency", defaultValue = "PT0S")
+    Duration latency;
+
+    @Override
+    public CompletableFuture<byte[]> fetch(Long businessUnitId, String tokenTicket) {
+        byte[] ticket = generate(tokenTicket);
+        if (latency.isZero() || ticket == null) {
+            return CompletableFuture.completedFuture(ticket);
+        }
+        return CompletableFuture.supplyAsync(() -> ticket,
+                CompletableFuture.delayedExecutor(latency.toNanos(), TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Builds the token of a synthetic ticket
+     *
+     * @param style The field-naming style of the ticket's business unit
+     * @param lines Number of line items
+     * @param seed Random seed, which also makes the token unique
+     * @return The token
+     */
+    public static String token(SyntheticTickets.Style style, int lines, long seed) {
+        return style.name() + ":" + lines + ":" + seed;
+    }
+
+    private static byte[] generate(String tokenTicket) {
+        if (tokenTicket == null) {
+            return null;
+        }
+        String[] parts = tokenTicket.split(":");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            SyntheticTickets.Style style = SyntheticTickets.Style.valueOf(parts[0]);
+            int lines = Integer.parseInt(parts[1]);
+            long seed = Long.parseLong(parts[2]);
+            if (lines < 0 || lines > MAX_LINES) {
+                return null;
+            }
+            return SyntheticTickets.ticket(style, lines, seed).getBytes(StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
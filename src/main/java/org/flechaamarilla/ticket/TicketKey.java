@@ -0,0 +1,10 @@
+package org.flechaamarilla.ticket;
+
+/**
+ * Cache key of a ticket
+ *
+ * @param businessUnitId The business unit ID
+ * @param tokenTicket The ticket token
+ */
+public record TicketKey(Long businessUnitId, String tokenTicket) {
+}
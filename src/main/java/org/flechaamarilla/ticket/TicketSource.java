@@ -0,0 +1,21 @@
+package org.flechaamarilla.ticket;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where ticket data is fetched from. Implementations must not block the calling
+ * thread; blocking I/O is moved to a worker pool.
+ * Selected with {@code invoice.tickets.source} and fronted by the cache in
+ * {@link org.flechaamarilla.service.TicketService}.
+ */
+public interface TicketSource {
+
+    /**
+     * Fetches the raw ticket of a business unit
+     *
+     * @param businessUnitId The business unit ID
+     * @param tokenTicket The ticket token
+     * @return A future with the ticket as UTF-8 encoded JSON, completed with null if the ticket does not exist
+     */
+    CompletableFuture<byte[]> fetch(Long businessUnitId, String tokenTicket);
+}
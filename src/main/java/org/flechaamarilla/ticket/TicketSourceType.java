@@ -0,0 +1,32 @@
+package org.flechaamarilla.ticket;
+
+/**
+ * Available {@link TicketSource} implementations
+ */
+public enum TicketSourceType {
+
+    /**
+     * In-memory sample tickets
+     */
+    MOCK,
+
+    /**
+     * JSON files under a local directory
+     */
+    FILE,
+
+    /**
+     * An HTTP ticket service
+     */
+    HTTP,
+
+    /**
+     * A table in the application's datasource
+     */
+    JDBC,
+
+    /**
+     * Tickets generated from their token, for load tests
+     */
+    SYNTHETIC
+}
@@ -50,6 +50,9 @@ public class DataInitializer {
         bu1.setEmitterName("Empresa Estándar S.A. de C.V.");
         bu1.setDefaultCurrency("MXN");
         bu1.setSeries("A");
+        bu1.setItemsPath("/items");
+        bu1.setTicketIdPath("/ticketId");
+        bu1.setTicketDatePath("/fecha");
         bu1.persist();
 
         // Business Unit 2 - Different field names
@@ -60,6 +63,9 @@ public class DataInitializer {
         bu2.setEmitterName("Empresa Diferente S.A. de C.V.");
         bu2.setDefaultCurrency("MXN");
         bu2.setSeries("B");
+        bu2.setItemsPath("/products");
+        bu2.setTicketIdPath("/id");
+        bu2.setTicketDatePath("/date");
         bu2.persist();
 
         // Business Unit 3 - Yet another set of field names
@@ -70,6 +76,9 @@ public class DataInitializer {
         bu3.setEmitterName("Empresa Alternativa S.A. de C.V.");
         bu3.setDefaultCurrency("MXN");
         bu3.setSeries("C");
+        bu3.setItemsPath("/lineas");
+        bu3.setTicketIdPath("/folio");
+        bu3.setTicketDatePath("/fechaEmision");
         bu3.persist();
 
         // Create field mappings for each business unit
@@ -0,0 +1,124 @@
+package org.flechaamarilla.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic tickets of any size in the three field-naming styles used by the
+ * sample business units (see {@code MockTicketSource} and {@link DataInitializer}).
+ * Output is deterministic for a given seed, so runs can be compared.
+ */
+public final class SyntheticTickets {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final String[] DESCRIPTIONS = {
+            "Boleto sencillo", "Boleto redondo", "Servicio de paquetería", "Equipaje adicional",
+            "Servicio de consultoría", "Desarrollo de software", "Seguro de viajero", "Alimentos a bordo"
+    };
+
+    private static final String[] UNITS = {"Servicio", "Pieza", "Hora", "Kilogramo"};
+
+    /**
+     * Field-naming styles, in the standard field order claveProdServ, descripcion,
+     * cantidad, unidad, valorUnitario, importe
+     */
+    public enum Style {
+        STANDARD("items", "ticketId", "fecha",
+                "claveProdServ", "descripcion", "cantidad", "unidad", "valorUnitario", "importe"),
+        ENGLISH("products", "id", "date",
+                "productCode", "productName", "qty", "unit", "price", "total"),
+        SPANISH("lineas", "folio", "fechaEmision",
+                "claveProducto", "concepto", "cantidadProducto", "unidadMedida", "precioUnitario", "precioTotal");
+
+        private static final String[] STANDARD_FIELDS =
+                {"claveProdServ", "descripcion", "cantidad", "unidad", "valorUnitario", "importe"};
+
+        private final String itemsField;
+        private final String ticketIdField;
+        private final String dateField;
+        private final String[] sourceFields;
+
+        Style(String itemsField, String ticketIdField, String dateField, String... sourceFields) {
+            this.itemsField = itemsField;
+            this.ticketIdField = ticketIdField;
+            this.dateField = dateField;
+            this.sourceFields = sourceFields;
+        }
+
+        public String getItemsField() {
+            return itemsField;
+        }
+
+        public String getTicketIdField() {
+            return ticketIdField;
+        }
+
+        public String getDateField() {
+            return dateField;
+        }
+
+        /**
+         * @return The standard field names, in the order of {@link #getSourceField(int)}
+         */
+        public static List<String> standardFields() {
+            return List.of(STANDARD_FIELDS);
+        }
+
+        /**
+         * @param index Position in {@link #standardFields()}
+         * @return This style's name for that standard field
+         */
+        public String getSourceField(int index) {
+            return sourceFields[index];
+        }
+    }
+
+    private SyntheticTickets() {
+    }
+
+    /**
+     * Generates a ticket
+     *
+     * @param style The field-naming style
+     * @param lines Number of line items
+     * @param seed Random seed
+     * @return The ticket JSON
+     */
+    public static String ticket(Style style, int lines, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringWriter out = new StringWriter(64 + lines * 160);
+
+        try (JsonGenerator gen = JSON_FACTORY.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeStringField(style.ticketIdField, Long.toString(100000 + random.nextInt(900000)));
+            gen.writeStringField(style.dateField, "2024-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10));
+            gen.writeArrayFieldStart(style.itemsField);
+            for (int i = 0; i < lines; i++) {
+                int quantity = 1 + random.nextInt(5);
+                double price = (100 + random.nextInt(500_000)) / 100.0;
+
+                gen.writeStartObject();
+                gen.writeStringField(style.sourceFields[0], Integer.toString(78111800 + random.nextInt(100)));
+                gen.writeStringField(style.sourceFields[1], DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]);
+                gen.writeNumberField(style.sourceFields[2], quantity);
+                gen.writeStringField(style.sourceFields[3], UNITS[random.nextInt(UNITS.length)]);
+                gen.writeNumberField(style.sourceFields[4], price);
+                gen.writeNumberField(style.sourceFields[5], Math.round(quantity * price * 100) / 100.0);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return out.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package org.flechaamarilla.loadtest;
+
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs the application without external services: an embedded PostgreSQL process (no container)
+ * for both the JDBC and reactive datasources, and in-memory stand-ins for every RabbitMQ channel
+ */
+public class EmbeddedInfrastructure implements QuarkusTestResourceLifecycleManager {
+
+    private EmbeddedPostgres postgres;
+
+    @Override
+    public Map<String, String> start() {
+        try {
+            postgres = EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start embedded PostgreSQL", e);
+        }
+
+        Map<String, String> config = new HashMap<>();
+        config.put("quarkus.datasource.jdbc.url", "jdbc:postgresql://localhost:" + postgres.getPort() + "/postgres");
+        config.put("quarkus.datasource.reactive.url", "postgresql://localhost:" + postgres.getPort() + "/postgres");
+        config.put("quarkus.datasource.username", "postgres");
+        config.put("quarkus.datasource.password", "postgres");
+        config.putAll(InMemoryConnector.switchIncomingChannelsToInMemory("invoice-requests-in", "mapping-changes-in"));
+        config.putAll(InMemoryConnector.switchOutgoingChannelsToInMemory(
+                "invoice-data", "invoice-requests-out", "invoice-retries", "invoice-dead-letters", "mapping-changes-out"));
+        return config;
+    }
+
+    @Override
+    public void stop() {
+        InMemoryConnector.clear();
+        if (postgres != null) {
+            try {
+                postgres.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package org.flechaamarilla.loadtest;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.flechaamarilla.messaging.MessagingCodec;
+import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.model.FieldMapping;
+import org.flechaamarilla.model.InvoiceRequest;
+import org.flechaamarilla.startup.WarmupService;
+import org.flechaamarilla.ticket.SyntheticTicketSource;
+import org.flechaamarilla.utils.SyntheticFixtures;
+import org.flechaamarilla.utils.SyntheticTickets;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test of the invoice request consumer, run with {@code ./gradlew loadTest}.
+ * <p>
+ * Creates {@code loadtest.business-units} synthetic business units across the three field-naming
+ * styles, then pushes requests into {@code invoice-requests-in} at {@code loadtest.rate} per
+ * second: first for {@code loadtest.warmup}, unmeasured, then for {@code loadtest.duration}.
+ * Each request asks for a unique synthetic ticket of {@code loadtest.items.min} to
+ * {@code loadtest.items.max} lines. At most {@code loadtest.max-in-flight} requests are
+ * unacknowledged at once, as the broker prefetch would allow.
+ * <p>
+ * Latency runs from the moment a request was due to be sent to its acknowledgement, which
+ * happens once its invoice is published, so a consumer that falls behind shows up as latency
+ * rather than as a lower send rate. Any {@code invoice.*} property, such as
+ * {@code invoice.consumer.mode}, can be overridden the same way.
+ */
+@QuarkusTest
+@TestProfile(LoadTestProfile.class)
+@Tag("loadtest")
+class InvoicePipelineLoadTest {
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    MessagingCodec messagingCodec;
+
+    @Inject
+    WarmupService warmupService;
+
+    @Inject
+    @ConfigProperty(name = "loadtest.rate", defaultValue = "500")
+    double rate;
+
+    @Inject
+    @ConfigProperty(name = "loadtest.duration", defaultValue = "PT30S")
+    Duration duration;
+
+    @Inject
+    @ConfigProperty(name = "loadtest.warmup", defaultValue = "PT10S")
+    Duration warmup;
+
+    @Inject
+    @ConfigProperty(name = "loadtest.business-units", defaultValue = "1000")
+    int businessUnits;
+
+    @Inject
+    @ConfigProperty(name = "loadtest.items.min", defaultValue = "1")
+    int minItems;
+
+    @Inject
+    @ConfigProperty(name = "loadtest.items.max", defaultValue = "20")
+    int maxItems;
+
+    @Inject
+    @ConfigProperty(name = "loadtest.max-in-flight", defaultValue = "500")
+    int maxInFlight;
+
+    @Inject
+    @ConfigProperty(name = "loadtest.drain-timeout", defaultValue = "PT60S")
+    Duration drainTimeout;
+
+    @Inject
+    @ConfigProperty(name = "invoice.consumer.mode", defaultValue = "SINGLE")
+    String consumerMode;
+
+    @Test
+    void run() throws Exception {
+        List<SyntheticUnit> units = createBusinessUnits();
+        while (!warmupService.isDone()) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+
+        runPhase(units, warmup, 0);
+        clearSinks();
+        Report report = runPhase(units, duration, 1L << 32);
+        report.print();
+    }
+
+    /**
+     * A synthetic business unit and the style of its tickets
+     */
+    private record SyntheticUnit(Long id, SyntheticTickets.Style style) {
+    }
+
+    private List<SyntheticUnit> createBusinessUnits() {
+        SyntheticTickets.Style[] styles = SyntheticTickets.Style.values();
+        List<SyntheticUnit> units = new ArrayList<>(businessUnits);
+        int chunk = 500;
+        for (int from = 0; from < businessUnits; from += chunk) {
+            int first = from;
+            int last = Math.min(from + chunk, businessUnits);
+            QuarkusTransaction.requiringNew().run(() -> {
+                for (int i = first; i < last; i++) {
+                    SyntheticTickets.Style style = styles[i % styles.length];
+                    BusinessUnit unit = SyntheticFixtures.businessUnit(style, "Load test " + i, "LT" + i);
+                    unit.persist();
+                    for (FieldMapping mapping : SyntheticFixtures.mappings(style)) {
+                        mapping.setBusinessUnit(unit);
+                        mapping.persist();
+                    }
+                    units.add(new SyntheticUnit(unit.id, style));
+                }
+            });
+        }
+        return units;
+    }
+
+    private Report runPhase(List<SyntheticUnit> units, Duration length, long seedBase) throws Exception {
+        InMemorySource<Message<String>> requests = connector.source("invoice-requests-in");
+        int total = (int) Math.max(1, rate * length.toNanos() / TimeUnit.SECONDS.toNanos(1));
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        LatencyRecorder recorder = new LatencyRecorder(total);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        SplittableRandom random = new SplittableRandom(seedBase);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            SyntheticUnit unit = units.get(random.nextInt(units.size()));
+            int lines = minItems + random.nextInt(Math.max(maxItems - minItems, 0) + 1);
+            InvoiceRequest request = new InvoiceRequest();
+            request.setRfc("XAXX010101000");
+            request.setNombre("Load test");
+            request.setUsoCfdi("G03");
+            request.setFormaPago("01");
+            request.setUnidadNegocio(unit.id());
+            request.setTokenTicket(SyntheticTicketSource.token(unit.style(), lines, seedBase + i));
+
+            inFlight.acquire();
+            requests.send(Message.of(messagingCodec.toJson(request))
+                    .withAck(() -> {
+                        recorder.record(System.nanoTime() - due);
+                        inFlight.release();
+                        return CompletableFuture.completedFuture(null);
+                    })
+                    .withNack(failure -> {
+                        recorder.failure();
+                        inFlight.release();
+                        return CompletableFuture.completedFuture(null);
+                    }));
+        }
+
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        while (recorder.completed() + recorder.failed() < total && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        return new Report(total, recorder, elapsedNanos,
+                connector.sink("invoice-data").received().size(),
+                connector.sink("invoice-retries").received().size(),
+                connector.sink("invoice-dead-letters").received().size());
+    }
+
+    private void clearSinks() {
+        connector.sink("invoice-data").clear();
+        connector.sink("invoice-retries").clear();
+        connector.sink("invoice-dead-letters").clear();
+    }
+
+    /**
+     * Outcome of the measured phase
+     */
+    private final class Report {
+
+        final int sent;
+        final LatencyRecorder recorder;
+        final long elapsedNanos;
+        final int published;
+        final int retried;
+        final int deadLettered;
+
+        Report(int sent, LatencyRecorder recorder, long elapsedNanos, int published, int retried, int deadLettered) {
+            this.sent = sent;
+            this.recorder = recorder;
+            this.elapsedNanos = elapsedNanos;
+            this.published = published;
+            this.retried = retried;
+            this.deadLettered = deadLettered;
+        }
+
+        void print() {
+            long[] latencies = recorder.sorted();
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("%nInvoice pipeline load test: mode %s, %d business units, %d-%d items, target %.0f req/s%n",
+                    consumerMode, businessUnits, minItems, maxItems, rate);
+            System.out.printf("  sent %d, acknowledged %d, rejected %d, unfinished %d%n",
+                    sent, recorder.completed(), recorder.failed(), sent - recorder.completed() - recorder.failed());
+            System.out.printf("  invoices published %d, retried %d, dead-lettered %d%n", published, retried, deadLettered);
+            System.out.printf("  throughput %.1f req/s over %.1f s%n", recorder.completed() / seconds, seconds);
+            System.out.printf("  latency ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n%n",
+                    LatencyRecorder.percentileMillis(latencies, 50),
+                    LatencyRecorder.percentileMillis(latencies, 90),
+                    LatencyRecorder.percentileMillis(latencies, 99),
+                    LatencyRecorder.percentileMillis(latencies, 99.9),
+                    LatencyRecorder.percentileMillis(latencies, 100));
+        }
+    }
+}
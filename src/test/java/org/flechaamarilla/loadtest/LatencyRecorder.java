@@ -0,0 +1,59 @@
+package org.flechaamarilla.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records end-to-end latencies into a preallocated array, safe for concurrent acknowledgements
+ */
+final class LatencyRecorder {
+
+    private final AtomicLongArray latencies;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    LatencyRecorder(int capacity) {
+        this.latencies = new AtomicLongArray(capacity);
+    }
+
+    void record(long nanos) {
+        int index = count.getAndIncrement();
+        if (index < latencies.length()) {
+            latencies.set(index, nanos);
+        }
+    }
+
+    void failure() {
+        failures.incrementAndGet();
+    }
+
+    int completed() {
+        return count.get();
+    }
+
+    int failed() {
+        return failures.get();
+    }
+
+    /**
+     * @return Sorted copy of the recorded latencies, in nanoseconds
+     */
+    long[] sorted() {
+        int size = Math.min(count.get(), latencies.length());
+        long[] values = new long[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = latencies.get(i);
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+    }
+}
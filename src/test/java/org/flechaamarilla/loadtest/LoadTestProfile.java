@@ -0,0 +1,30 @@
+package org.flechaamarilla.loadtest;
+
+import io.quarkus.test.junit.QuarkusTestProfile;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration of the load test: embedded infrastructure, synthetic tickets and no payload logging
+ */
+public class LoadTestProfile implements QuarkusTestProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+        return Map.of(
+                "invoice.tickets.source", "SYNTHETIC",
+                "invoice.logging.payload-level", "OFF",
+                "quarkus.log.category.\"org.flechaamarilla\".level", "WARN");
+    }
+
+    @Override
+    public List<TestResourceEntry> testResources() {
+        return List.of(new TestResourceEntry(EmbeddedInfrastructure.class));
+    }
+
+    @Override
+    public String getConfigProfile() {
+        return "loadtest";
+    }
+}
@@ -0,0 +1,162 @@
+package org.flechaamarilla.mapping;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.model.ConceptTable;
+import org.flechaamarilla.model.FieldMapping;
+import org.flechaamarilla.model.StandardInvoice;
+import org.flechaamarilla.utils.SyntheticFixtures;
+import org.flechaamarilla.utils.SyntheticTickets;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The tree and streaming transformers must map every ticket to the same invoice
+ */
+class TicketTransformerParityTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    // Item fields in varying order, a repeated key, nested values the plan skips and a header override
+    private static final String NESTED_TICKET = """
+            {
+              "id": "unit-path",
+              "fecha": "2024-01-01",
+              "meta": {"ticket": "T-100", "date": "2024-03-15"},
+              "store": {"branch": "Centro"},
+              "data": {
+                "lines": [
+                  {
+                    "product": {"code": "78111800", "name": "Cafe"},
+                    "qty": 1,
+                    "qty": 3,
+                    "unit": "PZA",
+                    "price": {"amount": 10.5, "total": 31.5},
+                    "extras": [{"product": {"code": "ignored"}}, 2]
+                  },
+                  {
+                    "price": {"total": 7.25, "amount": 7.25},
+                    "unit": "KG",
+                    "tags": {"product": {"code": "ignored"}},
+                    "qty": 1,
+                    "product": {"name": "Azucar", "code": "50161500"}
+                  },
+                  {
+                    "product": {"code": null},
+                    "qty": "2.5",
+                    "price": {"amount": 4}
+                  }
+                ]
+              }
+            }
+            """;
+
+    private static FieldMapping mapping(String source, String standard, MappingScope scope, String transform) {
+        FieldMapping mapping = new FieldMapping();
+        mapping.setSourceFieldName(source);
+        mapping.setStandardFieldName(standard);
+        mapping.setScope(scope);
+        mapping.setTransform(transform);
+        return mapping;
+    }
+
+    private static MappingPlan nestedPlan() {
+        List<FieldMapping> mappings = new ArrayList<>();
+        mappings.add(mapping("product.code", "claveProdServ", null, null));
+        mappings.add(mapping("/product/name", "descripcion", null, null));
+        // The same source twice: a rename and a transform that reads the renamed field
+        mappings.add(mapping("product.code", "descripcion", null, "concat(descripcion, ' ', value)"));
+        mappings.add(mapping("qty", "cantidad", null, null));
+        mappings.add(mapping("unit", "unidad", null, "map(value, 'PZA', 'H87', 'KG', 'KGM')"));
+        mappings.add(mapping("price.amount", "valorUnitario", null, null));
+        mappings.add(mapping("price.total", "importe", null, null));
+        mappings.add(mapping("meta.ticket", "ticketId", MappingScope.HEADER, null));
+        mappings.add(mapping("/meta/date", "fechaTicket", MappingScope.HEADER, null));
+        mappings.add(mapping("store.branch", "sucursal", MappingScope.HEADER, null));
+
+        BusinessUnit businessUnit = SyntheticFixtures.businessUnit(SyntheticTickets.Style.STANDARD, "Nested", "N");
+        businessUnit.id = 1L;
+        businessUnit.setItemsPath("/data/lines");
+        businessUnit.setTicketIdPath("/id");
+        businessUnit.setTicketDatePath("/fecha");
+        return MappingPlan.compile(businessUnit, mappings);
+    }
+
+    private static StandardInvoice tree(byte[] ticket, MappingPlan plan) throws IOException {
+        StandardInvoice invoice = new StandardInvoice();
+        new TreeTicketTransformer(OBJECT_MAPPER).transform(ticket, plan, invoice);
+        return invoice;
+    }
+
+    private static StandardInvoice streaming(byte[] ticket, MappingPlan plan) throws IOException {
+        StandardInvoice invoice = new StandardInvoice();
+        new StreamingTicketTransformer(OBJECT_MAPPER.getFactory()).transform(ticket, plan, invoice);
+        return invoice;
+    }
+
+    private static void assertSameInvoice(StandardInvoice expected, StandardInvoice actual) {
+        assertEquals(expected.getTicketId(), actual.getTicketId());
+        assertEquals(expected.getFechaTicket(), actual.getFechaTicket());
+        assertEquals(expected.getSucursal(), actual.getSucursal());
+        assertEquals(expected.getConceptos(), actual.getConceptos());
+    }
+
+    @Test
+    void nestedItemsMapTheSameBothWays() throws IOException {
+        byte[] ticket = NESTED_TICKET.getBytes(StandardCharsets.UTF_8);
+        MappingPlan plan = nestedPlan();
+
+        StandardInvoice tree = tree(ticket, plan);
+        assertSameInvoice(tree, streaming(ticket, plan));
+
+        ConceptTable concepts = tree.getConceptos();
+        assertEquals(3, concepts.size());
+        assertEquals("78111800", concepts.getClaveProdServ(0));
+        assertEquals("Cafe 78111800", concepts.getDescripcion(0));
+        assertEquals("Azucar 50161500", concepts.getDescripcion(1));
+        assertEquals("H87", concepts.getUnidad(0));
+        assertEquals("KGM", concepts.getUnidad(1));
+        assertEquals(ConceptTable.toMicros(10.5), concepts.getValorUnitarioMicros(0));
+        assertEquals(725, concepts.getImporteCents(1));
+        assertEquals(ConceptTable.toMicros(2.5), concepts.getCantidadMicros(2));
+    }
+
+    @Test
+    void theLastOfARepeatedKeyWinsBothWays() throws IOException {
+        byte[] ticket = NESTED_TICKET.getBytes(StandardCharsets.UTF_8);
+        MappingPlan plan = nestedPlan();
+
+        assertEquals(ConceptTable.toMicros(3), tree(ticket, plan).getConceptos().getCantidadMicros(0));
+        assertEquals(ConceptTable.toMicros(3), streaming(ticket, plan).getConceptos().getCantidadMicros(0));
+    }
+
+    @Test
+    void headerMappingsOverrideTheUnitPathsBothWays() throws IOException {
+        byte[] ticket = NESTED_TICKET.getBytes(StandardCharsets.UTF_8);
+        MappingPlan plan = nestedPlan();
+
+        for (StandardInvoice invoice : List.of(tree(ticket, plan), streaming(ticket, plan))) {
+            assertEquals("T-100", invoice.getTicketId());
+            assertEquals("2024-03-15", invoice.getFechaTicket());
+            assertEquals("Centro", invoice.getSucursal());
+        }
+    }
+
+    @Test
+    void syntheticTicketsMapTheSameBothWays() throws IOException {
+        for (SyntheticTickets.Style style : SyntheticTickets.Style.values()) {
+            MappingPlan plan = SyntheticFixtures.plan(style, 1);
+            byte[] ticket = SyntheticTickets.ticket(style, 50, 42).getBytes(StandardCharsets.UTF_8);
+
+            StandardInvoice tree = tree(ticket, plan);
+            assertEquals(50, tree.getConceptos().size());
+            assertSameInvoice(tree, streaming(ticket, plan));
+        }
+    }
+}
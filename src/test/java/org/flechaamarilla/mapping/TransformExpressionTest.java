@@ -0,0 +1,139 @@
+package org.flechaamarilla.mapping;
+
+import org.flechaamarilla.model.ConceptTable;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransformExpressionTest {
+
+    private static double number(String expression, String value) {
+        return TransformExpression.compile(expression).numberForm().evaluate(new ConceptTable(), 0, value);
+    }
+
+    private static String text(String expression, String value) {
+        return TransformExpression.compile(expression).textForm().evaluate(new ConceptTable(), 0, value);
+    }
+
+    private static String error(String expression) {
+        return assertThrows(IllegalArgumentException.class, () -> TransformExpression.compile(expression)).getMessage();
+    }
+
+    @Test
+    void multiplicationBindsTighterThanAddition() {
+        assertEquals(7.0, number("1 + 2 * 3", null));
+        assertEquals(9.0, number("(1 + 2) * 3", null));
+        assertEquals(1.0, number("8 / 4 / 2", null));
+        assertEquals(4.0, number("10 - 4 - 2", null));
+    }
+
+    @Test
+    void unaryMinusAppliesToTheOperandOnly() {
+        assertEquals(-6.0, number("-2 * 3", null));
+        assertEquals(2.0, number("--2", null));
+        assertEquals(1.0, number("3 + -2", null));
+        assertEquals(-12.5, number("-value", "12.5"));
+    }
+
+    @Test
+    void literalsAreFoldedIntoConstants() {
+        // Widths must be literals, so these only compile if the arithmetic was folded
+        assertEquals("0042", text("lpad(value, 2 + 2, '0')", "42"));
+        assertEquals("bc", text("substr(value, -(-1))", "abc"));
+        // Folded constants are never evaluated against a concept
+        assertEquals("ABC", TransformExpression.compile("upper(concat('a', 'bc'))").textForm().evaluate(null, -1, null));
+        assertEquals(7.0, TransformExpression.compile("1 + 2 * 3").numberForm().evaluate(null, -1, null));
+    }
+
+    @Test
+    void mapKeepsUnmatchedTextUnlessGivenADefault() {
+        assertEquals("H87", text("map(value, 'PZA', 'H87', 'KG', 'KGM')", "PZA"));
+        assertEquals("LT", text("map(value, 'PZA', 'H87', 'KG', 'KGM')", "LT"));
+        assertEquals("XNA", text("map(value, 'PZA', 'H87', 'KG', 'KGM', 'XNA')", "LT"));
+        assertEquals("KGM", text("map(value, 'PZA', 'H87', 'KG', 'KGM', 'XNA')", "KG"));
+    }
+
+    @Test
+    void doubledQuoteEscapesAQuote() {
+        assertEquals("O'Brien", text("'O''Brien'", null));
+        assertEquals("''", text("concat('''', '''')", null));
+        assertTrue(error("'O''Brien").contains("unterminated text literal"));
+    }
+
+    @Test
+    void wrongArityIsReported() {
+        assertTrue(error("trim(value, value)").contains("wrong number of arguments for trim(): expected 1, got 2"));
+        assertTrue(error("lpad(value)").contains("wrong number of arguments for lpad(): expected 2 to 3, got 1"));
+        assertTrue(error("map(value, 'a')").contains("wrong number of arguments for map(): expected at least 3, got 2"));
+        assertTrue(error("concat()").contains("wrong number of arguments for concat(): expected at least 1, got 0"));
+    }
+
+    @Test
+    void widthsDigitsAndTablesMustBeLiterals() {
+        assertTrue(error("lpad(value, cantidad, '0')").contains("lpad() needs a literal number here"));
+        assertTrue(error("lpad(value, 8, value)").contains("lpad() needs a literal here"));
+        assertTrue(error("lpad(value, 8, '00')").contains("lpad() pads with a single character"));
+        assertTrue(error("round(value, cantidad)").contains("round() needs a literal number here"));
+        assertTrue(error("map(value, unidad, 'H87')").contains("map() needs a literal here"));
+        assertTrue(error("substr(value, '1')").contains("substr() needs a literal number here"));
+    }
+
+    @Test
+    void errorsNameTheExpressionAndPosition() {
+        String message = error("upper(valor)");
+        assertTrue(message.contains("upper(valor)"), message);
+        assertTrue(message.contains("position 7"), message);
+        assertTrue(error("frobnicate(value)").contains("unknown function 'frobnicate'"));
+        assertTrue(error("1 +").contains("unexpected end of expression"));
+        assertThrows(IllegalArgumentException.class, () -> TransformExpression.compile(" "));
+    }
+
+    @Test
+    void nonFiniteResultsBecomeZero() {
+        assertEquals(0, TransformExpression.toCents(Double.NaN));
+        assertEquals(0, TransformExpression.toCents(Double.POSITIVE_INFINITY));
+        assertEquals(0, TransformExpression.toCents(Double.NEGATIVE_INFINITY));
+        assertEquals(0, TransformExpression.toMicros(Double.NaN));
+        assertEquals(0, TransformExpression.toMicros(Double.POSITIVE_INFINITY));
+        assertEquals(0, TransformExpression.toMicros(Double.NEGATIVE_INFINITY));
+        assertEquals(1234, TransformExpression.toCents(12.34));
+        assertEquals(12_345_678, TransformExpression.toMicros(12.345678));
+    }
+
+    @Test
+    void divisionByZeroMapsToZero() {
+        ConceptTable concepts = new ConceptTable();
+        int row = concepts.addRow();
+        concepts.setImporteCents(row, 999);
+        ConceptField.IMPORTE.bind(TransformExpression.compile("value / 0")).apply(concepts, row, "10");
+        assertEquals(0, concepts.getImporteCents(row));
+    }
+
+    @Test
+    void unitPriceTransformsKeepSixDecimals() {
+        ConceptTable concepts = new ConceptTable();
+        int row = concepts.addRow();
+        ConceptField.VALOR_UNITARIO.bind(TransformExpression.compile("value / 3")).apply(concepts, row, "1");
+        assertEquals(333_333, concepts.getValorUnitarioMicros(row));
+        ConceptField.CANTIDAD.bind(TransformExpression.compile("value * 1.5")).apply(concepts, row, "0.333334");
+        assertEquals(500_001, concepts.getCantidadMicros(row));
+    }
+
+    @Test
+    void expressionsReadTheMappedFields() {
+        ConceptTable concepts = new ConceptTable();
+        int row = concepts.addRow();
+        concepts.setCantidadMicros(row, ConceptTable.toMicros(3));
+        concepts.setValorUnitarioMicros(row, ConceptTable.toMicros(0.333333));
+        concepts.setUnidad(row, "Pieza");
+        ConceptField.IMPORTE.bind(TransformExpression.compile("round(cantidad * valorUnitario, 2)")).apply(concepts, row, "");
+        assertEquals(100, concepts.getImporteCents(row));
+
+        TransformExpression expression = TransformExpression.compile("concat(lower(unidad), '-', value)");
+        assertFalse(expression.isNumeric());
+        assertEquals("pieza-7", expression.textForm().evaluate(concepts, row, "7"));
+    }
+}
@@ -0,0 +1,157 @@
+package org.flechaamarilla.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConceptTableTest {
+
+    private static int addConcept(ConceptTable concepts, double cantidad, double valorUnitario, double importe) {
+        int row = concepts.addRow();
+        concepts.setCantidadMicros(row, ConceptTable.toMicros(cantidad));
+        concepts.setValorUnitarioMicros(row, ConceptTable.toMicros(valorUnitario));
+        concepts.setImporteCents(row, ConceptTable.toCents(importe));
+        return row;
+    }
+
+    @Test
+    void lineAmountRoundsOnlyTheProduct() {
+        // 0.333333 would be 0.33 in cents, and 3 * 0.33 = 0.99
+        assertEquals(100, ConceptTable.lineAmountCents(ConceptTable.toMicros(3), ConceptTable.toMicros(0.333333)));
+        assertEquals(2525, ConceptTable.lineAmountCents(ConceptTable.toMicros(2.5), ConceptTable.toMicros(10.10)));
+        assertEquals(12_345_679, ConceptTable.lineAmountCents(ConceptTable.toMicros(1000), ConceptTable.toMicros(123.456789)));
+    }
+
+    @Test
+    void lineAmountRoundsHalfAwayFromZero() {
+        assertEquals(1, ConceptTable.lineAmountCents(ConceptTable.toMicros(1), ConceptTable.toMicros(0.005)));
+        assertEquals(0, ConceptTable.lineAmountCents(ConceptTable.toMicros(1), ConceptTable.toMicros(0.004999)));
+        assertEquals(-1, ConceptTable.lineAmountCents(ConceptTable.toMicros(-1), ConceptTable.toMicros(0.005)));
+    }
+
+    @Test
+    void lineAmountPastALongIsStillExact() {
+        // 100 * 100,000.123456 in millionths squared overflows a long
+        assertEquals(1_000_001_235L,
+                ConceptTable.lineAmountCents(ConceptTable.toMicros(100), ConceptTable.toMicros(100_000.123456)));
+        assertEquals(99_999_999_990_000L,
+                ConceptTable.lineAmountCents(ConceptTable.toMicros(999_999.9999), ConceptTable.toMicros(1_000_000)));
+    }
+
+    @Test
+    void importeWithinACentIsValid() {
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, 3, 0.333333, 1.00);
+        addConcept(concepts, 3, 0.333333, 0.99);
+        addConcept(concepts, 3, 0.333333, 1.01);
+
+        assertEquals(0, concepts.countInvalidImportes());
+        assertEquals(-1, concepts.firstInvalidImporte());
+    }
+
+    @Test
+    void importeOffByMoreThanACentIsInvalid() {
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, 1000, 1.23, 1230.00);
+        addConcept(concepts, 1000, 1.23, 1230.02);
+        addConcept(concepts, 1000, 1.23, 1229.98);
+
+        assertEquals(2, concepts.countInvalidImportes());
+        assertEquals(1, concepts.firstInvalidImporte());
+    }
+
+    @Test
+    void toleranceDoesNotGrowWithQuantity() {
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, 10_000, 1.00, 10_000.50);
+
+        assertEquals(1, concepts.countInvalidImportes());
+    }
+
+    @Test
+    void conceptsWithoutQuantityOrUnitPriceAreNotChecked() {
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, 0, 0, 150.00);
+        addConcept(concepts, 0, 12.50, 150.00);
+        addConcept(concepts, 2, 0, 150.00);
+
+        assertEquals(0, concepts.countInvalidImportes());
+    }
+
+    @Test
+    void negativeValuesAreInvalid() {
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, -1, 10, 10);
+        addConcept(concepts, 1, -10, 10);
+        addConcept(concepts, 0, 0, -10);
+
+        assertEquals(3, concepts.countInvalidImportes());
+        assertEquals(0, concepts.firstInvalidImporte());
+    }
+
+    @Test
+    void fractionalQuantitiesAreKept() {
+        ConceptTable concepts = new ConceptTable();
+        int row = addConcept(concepts, 1.5, 10.00, 15.00);
+        addConcept(concepts, 0.25, 3.99, 1.00);
+
+        assertEquals(1_500_000, concepts.getCantidadMicros(row));
+        assertEquals(0, concepts.countInvalidImportes());
+    }
+
+    @Test
+    void taxesAreRoundedHalfUpPerConcept() {
+        ConceptTable concepts = new ConceptTable();
+        // 16% of 0.28 is 0.0448: each concept's IVA rounds to 0.04, the total is their sum
+        addConcept(concepts, 1, 0.28, 0.28);
+        addConcept(concepts, 1, 0.28, 0.28);
+        // 16% of 0.03 is 0.0048, and of 31.25 exactly 5.00
+        addConcept(concepts, 1, 0.03, 0.03);
+        addConcept(concepts, 1, 31.25, 31.25);
+
+        assertEquals(4 + 4 + 0 + 500, concepts.computeIva(160_000));
+        assertEquals(4, concepts.getIvaCents(0));
+        assertEquals(0, concepts.getIvaCents(2));
+        assertEquals(500, concepts.getIvaCents(3));
+    }
+
+    @Test
+    void halfACentRoundsUp() {
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, 1, 0.01, 0.01);
+        addConcept(concepts, 1, 0.03, 0.03);
+
+        // 50% of 1 and 3 cents: 0.5 and 1.5 cents
+        assertEquals(1 + 2, concepts.computeIeps(500_000));
+        assertEquals(1, concepts.getIepsCents(0));
+        assertEquals(2, concepts.getIepsCents(1));
+    }
+
+    @Test
+    void ivaBaseIncludesIeps() {
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, 1, 100.00, 100.00);
+        addConcept(concepts, 3, 0.333333, 1.00);
+
+        // IEPS 8%: 8.00 and 0.08; IVA 16% of 108.00 and of 1.08 (0.1728)
+        assertEquals(800 + 8, concepts.computeIeps(80_000));
+        assertEquals(1728 + 17, concepts.computeIva(160_000));
+        assertEquals(10_100, concepts.sumImportes());
+    }
+
+    @Test
+    void serializesSixDecimalsAndWholeQuantities() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, 2, 0.333333, 0.67);
+        addConcept(concepts, 1.5, 10.00, 15.00);
+
+        String json = objectMapper.writeValueAsString(concepts);
+        assertTrue(json.contains("\"cantidad\":2,"), json);
+        assertTrue(json.contains("\"valorUnitario\":0.333333"), json);
+        assertTrue(json.contains("\"cantidad\":1.5,"), json);
+        assertEquals(concepts, objectMapper.readValue(json, ConceptTable.class));
+    }
+}
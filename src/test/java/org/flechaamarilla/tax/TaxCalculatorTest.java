@@ -0,0 +1,98 @@
+package org.flechaamarilla.tax;
+
+import org.flechaamarilla.mapping.MappingPlan;
+import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.model.ConceptTable;
+import org.flechaamarilla.model.StandardInvoice;
+import org.flechaamarilla.utils.SyntheticFixtures;
+import org.flechaamarilla.utils.SyntheticTickets;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaxCalculatorTest {
+
+    private final TaxCalculator calculator = new TaxCalculator(new BigDecimal("0.16"));
+
+    private static MappingPlan plan(String ivaRate, String iepsRate) {
+        BusinessUnit businessUnit = SyntheticFixtures.businessUnit(SyntheticTickets.Style.STANDARD, "Taxes", "T");
+        businessUnit.id = 1L;
+        businessUnit.setIvaRate(ivaRate == null ? null : new BigDecimal(ivaRate));
+        businessUnit.setIepsRate(iepsRate == null ? null : new BigDecimal(iepsRate));
+        return MappingPlan.compile(businessUnit, List.of());
+    }
+
+    private static void addConcept(ConceptTable concepts, double cantidad, double valorUnitario, double importe) {
+        int row = concepts.addRow();
+        concepts.setCantidadMicros(row, ConceptTable.toMicros(cantidad));
+        concepts.setValorUnitarioMicros(row, ConceptTable.toMicros(valorUnitario));
+        concepts.setImporteCents(row, ConceptTable.toCents(importe));
+    }
+
+    @Test
+    void totalsAreSumsOfRoundedConceptTaxes() {
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, 1, 0.28, 0.28);
+        addConcept(concepts, 1, 0.28, 0.28);
+        addConcept(concepts, 3, 0.333333, 1.00);
+
+        InvoiceTotals totals = calculator.calculate(concepts, plan(null, null));
+
+        assertTrue(totals.isValid());
+        assertEquals(156, totals.subTotalCents());
+        // 0.0448 + 0.0448 + 0.16 rounded per concept, not 0.2496 on the subtotal
+        assertEquals(4 + 4 + 16, totals.ivaCents());
+        assertEquals(0, totals.iepsCents());
+        assertEquals(156 + 24, totals.totalCents());
+        assertEquals(160_000, totals.ivaRateMicros());
+    }
+
+    @Test
+    void unitRatesOverrideTheDefault() {
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, 2, 50.00, 100.00);
+
+        InvoiceTotals totals = calculator.calculate(concepts, plan("0.08", "0.265"));
+
+        assertEquals(2650, totals.iepsCents());
+        // IVA on the amount plus its IEPS: 8% of 126.50
+        assertEquals(1012, totals.ivaCents());
+        assertEquals(10_000 + 2650 + 1012, totals.totalCents());
+    }
+
+    @Test
+    void invalidConceptsAreReportedWithTheirTaxes() {
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, 1, 10.00, 10.00);
+        addConcept(concepts, 2, 10.00, 25.00);
+        addConcept(concepts, 0, 0, 5.00);
+
+        InvoiceTotals totals = calculator.calculate(concepts, plan(null, null));
+
+        assertFalse(totals.isValid());
+        assertEquals(1, totals.invalidConcepts());
+        assertEquals(1, totals.firstInvalidConcept());
+        assertEquals(160 + 400 + 80, totals.ivaCents());
+    }
+
+    @Test
+    void appliesTotalsAtInvoiceScale() {
+        ConceptTable concepts = new ConceptTable();
+        addConcept(concepts, 1, 100.00, 100.00);
+        StandardInvoice invoice = new StandardInvoice();
+
+        calculator.calculate(concepts, plan(null, null)).applyTo(invoice);
+
+        assertEquals(new BigDecimal("100.00"), invoice.getSubTotal());
+        assertEquals(new BigDecimal("0.160000"), invoice.getTasaIva());
+        assertEquals(new BigDecimal("16.00"), invoice.getTotalIva());
+        assertEquals(new BigDecimal("116.00"), invoice.getTotal());
+        assertNull(invoice.getTasaIeps());
+    }
+}
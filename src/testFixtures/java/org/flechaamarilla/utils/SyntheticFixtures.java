@@ -0,0 +1,71 @@
+package org.flechaamarilla.utils;
+
+import org.flechaamarilla.mapping.MappingPlan;
+import org.flechaamarilla.model.BusinessUnit;
+import org.flechaamarilla.model.FieldMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Business units, field mappings and mapping plans matching the {@link SyntheticTickets} styles,
+ * for the benchmarks and tests
+ */
+public final class SyntheticFixtures {
+
+    private SyntheticFixtures() {
+    }
+
+    /**
+     * Builds the field mappings of a style, not attached to any business unit
+     *
+     * @param style The field-naming style
+     * @return Mappings from the style's field names to the standard ones
+     */
+    public static List<FieldMapping> mappings(SyntheticTickets.Style style) {
+        List<String> standardFields = SyntheticTickets.Style.standardFields();
+        List<FieldMapping> mappings = new ArrayList<>(standardFields.size());
+        for (int i = 0; i < standardFields.size(); i++) {
+            FieldMapping mapping = new FieldMapping();
+            mapping.setSourceFieldName(style.getSourceField(i));
+            mapping.setStandardFieldName(standardFields.get(i));
+            mappings.add(mapping);
+        }
+        return mappings;
+    }
+
+    /**
+     * Builds an unsaved business unit configured for a style
+     *
+     * @param style The field-naming style
+     * @param name Unique business unit name
+     * @param series Invoice series
+     * @return The business unit
+     */
+    public static BusinessUnit businessUnit(SyntheticTickets.Style style, String name, String series) {
+        BusinessUnit businessUnit = new BusinessUnit();
+        businessUnit.setName(name);
+        businessUnit.setDescription("Synthetic business unit with " + style.name().toLowerCase() + " field names");
+        businessUnit.setRfcEmitter("XAXX010101000");
+        businessUnit.setEmitterName("Empresa Sintética S.A. de C.V.");
+        businessUnit.setDefaultCurrency("MXN");
+        businessUnit.setSeries(series);
+        businessUnit.setItemsPath("/" + style.getItemsField());
+        businessUnit.setTicketIdPath("/" + style.getTicketIdField());
+        businessUnit.setTicketDatePath("/" + style.getDateField());
+        return businessUnit;
+    }
+
+    /**
+     * Compiles a mapping plan for a style without touching the database
+     *
+     * @param style The field-naming style
+     * @param businessUnitId ID to give the business unit
+     * @return The compiled plan
+     */
+    public static MappingPlan plan(SyntheticTickets.Style style, long businessUnitId) {
+        BusinessUnit businessUnit = businessUnit(style, "Synthetic " + businessUnitId, "S");
+        businessUnit.id = businessUnitId;
+        return MappingPlan.compile(businessUnit, mappings(style));
+    }
+}